@@ -0,0 +1,133 @@
+package com.chatapp.benchmark;
+
+import com.chatapp.message.config.EncodedPayload;
+import com.chatapp.message.config.EncodedPayloadMessageConverter;
+import com.chatapp.message.config.JacksonConfig;
+import com.chatapp.message.dto.MessageDTO;
+import com.chatapp.message.model.Message;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.CompositeMessageConverter;
+import org.springframework.messaging.converter.DefaultContentTypeResolver;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.util.MimeTypeUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 群聊消息广播到每个成员会话的开销对比
+ * perSessionEncoding：把 MessageDTO 直接交给 SimpMessagingTemplate，每个会话目的地各自经
+ * MappingJackson2MessageConverter 序列化一次（引入 EncodedPayload 之前的广播方式）
+ * encodeOnce：先编码为 EncodedPayload，所有会话共用同一份JSON字节（WebSocketBroadcaster 当前路径）
+ *
+ * 运行：mvn -Pbenchmarks -pl benchmarks -am package -DskipTests
+ *      java -jar benchmarks/target/benchmarks.jar GroupBroadcastBenchmark -prof gc
+ * gc.alloc.rate.norm 即每次广播的分配字节数
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GroupBroadcastBenchmark {
+
+    @Param({"500"})
+    private int members;
+
+    private ObjectMapper objectMapper;
+    private SimpMessagingTemplate jacksonTemplate;
+    private SimpMessagingTemplate encodedTemplate;
+    private List<String> destinations;
+    private MessageDTO payload;
+    private org.springframework.messaging.Message<?> lastSent;
+
+    @Setup
+    public void setup() {
+        objectMapper = new JacksonConfig().objectMapper();
+
+        // 与 WebSocketConfig.configureMessageConverters 相同的转换器配置，通道只保留最后一条消息不做投递
+        MessageChannel channel = (message, timeout) -> {
+            lastSent = message;
+            return true;
+        };
+        jacksonTemplate = template(channel, jacksonConverter());
+        encodedTemplate = template(channel, new CompositeMessageConverter(
+                List.of(encodedConverter(), jacksonConverter())));
+
+        destinations = new ArrayList<>(members);
+        for (int i = 0; i < members; i++) {
+            destinations.add("/queue/messages-user" + (10000 + i));
+        }
+
+        Message message = new Message();
+        message.setId("652f1c2e9b1e8a3d4c5b6a79");
+        message.setSenderId(10001L);
+        message.setReceiverId(20001L);
+        message.setContent("今晚八点开会，记得带上上周的评审材料，会议室在三楼东侧。");
+        message.setContentType(Message.ContentType.TEXT);
+        message.setMessageType(Message.MessageType.GROUP);
+        message.setStatus(Message.MessageStatus.SENT);
+        message.setCreateTime(LocalDateTime.of(2024, 5, 20, 20, 0, 0));
+        message.setUpdateTime(message.getCreateTime());
+        payload = MessageDTO.fromEntity(message);
+    }
+
+    @Benchmark
+    public Object perSessionEncoding() {
+        for (String destination : destinations) {
+            jacksonTemplate.convertAndSend(destination, payload);
+        }
+        return lastSent;
+    }
+
+    @Benchmark
+    public Object encodeOnce() {
+        EncodedPayload encoded = EncodedPayload.encode(objectMapper, payload);
+        for (String destination : destinations) {
+            encodedTemplate.convertAndSend(destination, encoded);
+        }
+        return lastSent;
+    }
+
+    private static SimpMessagingTemplate template(MessageChannel channel, MessageConverter converter) {
+        SimpMessagingTemplate template = new SimpMessagingTemplate(channel);
+        template.setMessageConverter(converter);
+        return template;
+    }
+
+    private MappingJackson2MessageConverter jacksonConverter() {
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(objectMapper);
+        converter.setContentTypeResolver(resolver());
+        return converter;
+    }
+
+    private static EncodedPayloadMessageConverter encodedConverter() {
+        EncodedPayloadMessageConverter converter = new EncodedPayloadMessageConverter();
+        converter.setContentTypeResolver(resolver());
+        return converter;
+    }
+
+    private static DefaultContentTypeResolver resolver() {
+        DefaultContentTypeResolver resolver = new DefaultContentTypeResolver();
+        resolver.setDefaultMimeType(MimeTypeUtils.APPLICATION_JSON);
+        return resolver;
+    }
+}
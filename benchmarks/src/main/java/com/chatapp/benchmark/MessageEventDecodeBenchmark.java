@@ -0,0 +1,87 @@
+package com.chatapp.benchmark;
+
+import com.chatapp.event.MessageEvent;
+import com.chatapp.event.TypedJsonMessageConverter;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 通知服务消费新消息事件时的解码开销对比
+ * stringThenReadValue：监听方法以 String 接收消息体，再调用 ObjectMapper.readValue 解析为 MessageEvent
+ * （改用专用容器工厂之前的解码方式）
+ * typedConverter：TypedJsonMessageConverter 用预先绑定的 ObjectReader 直接从字节反序列化（当前路径）
+ *
+ * 运行：mvn -Pbenchmarks -pl benchmarks -am package -DskipTests
+ *      java -jar benchmarks/target/benchmarks.jar MessageEventDecodeBenchmark -prof gc
+ * gc.alloc.rate.norm 即每条事件的分配字节数
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageEventDecodeBenchmark {
+
+    // 消息正文长度，覆盖普通短消息和长文本
+    @Param({"32", "2048"})
+    private int contentLength;
+
+    private ObjectMapper objectMapper;
+    private TypedJsonMessageConverter<MessageEvent> converter;
+    private Message message;
+
+    @Setup
+    public void setup() {
+        // 与通知服务中 Spring Boot 自动配置的 ObjectMapper 行为一致
+        objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        converter = new TypedJsonMessageConverter<>(MessageEvent.class, objectMapper);
+
+        MessageEvent event = MessageEvent.builder()
+                .messageId("652f1c2e9b1e8a3d4c5b6a79")
+                .senderId(10001L)
+                .senderName("用户10001")
+                .receiverId(10002L)
+                .messageType("PRIVATE")
+                .contentType("TEXT")
+                .content("消".repeat(contentLength))
+                .createTime(LocalDateTime.of(2026, 10, 18, 12, 0))
+                .build();
+        // 与消息服务发件箱中继发布的消息体一致
+        message = converter.toMessage(event, new MessageProperties());
+    }
+
+    @Benchmark
+    public MessageEvent stringThenReadValue() throws IOException {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        return objectMapper.readValue(body, MessageEvent.class);
+    }
+
+    @Benchmark
+    public MessageEvent typedConverter() {
+        return converter.fromMessage(message);
+    }
+}
@@ -0,0 +1,16 @@
+package com.chatapp.event;
+
+/**
+ * 服务间共用的交换机、队列和路由键
+ */
+public final class EventQueues {
+
+    public static final String CHAT_EXCHANGE = "chat.exchange";
+
+    // 新消息通知：消息服务 -> 通知服务
+    public static final String NOTIFICATION_QUEUE = "chat.notification.queue";
+    public static final String NOTIFICATION_ROUTING_KEY = "notification.send";
+
+    private EventQueues() {
+    }
+}
@@ -0,0 +1,53 @@
+package com.chatapp.event;
+
+import com.fasterxml.jackson.annotation.JsonAlias;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+/**
+ * 新消息事件，消息服务发布、通知服务消费
+ * 字段与消息服务的 MessageDTO 保持兼容，未声明的字段在反序列化时忽略。
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class MessageEvent {
+
+    @JsonAlias("id")
+    private String messageId;
+
+    private Long senderId;
+
+    private String senderName;
+
+    private Long receiverId;
+
+    private String receiverName;
+
+    // PRIVATE 或 GROUP
+    private String messageType;
+
+    private String contentType;
+
+    // 消息正文可能很长或为密文，不输出到日志
+    @ToString.Exclude
+    private String content;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime createTime;
+
+    @JsonIgnore
+    public boolean isPrivate() {
+        return "PRIVATE".equals(messageType);
+    }
+}
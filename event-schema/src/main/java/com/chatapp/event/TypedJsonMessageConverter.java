@@ -0,0 +1,65 @@
+package com.chatapp.event;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+import java.io.IOException;
+
+/**
+ * 固定目标类型的JSON消息转换器
+ * 启动时预先绑定 ObjectReader/ObjectWriter，消费时直接从消息体字节反序列化，
+ * 不经过中间 String，也不按 __TypeId__ 头推断类型。ObjectReader 不可变，可在监听线程间共享。
+ */
+public class TypedJsonMessageConverter<T> implements MessageConverter {
+
+    private final Class<T> type;
+    private final ObjectReader reader;
+    private final ObjectWriter writer;
+
+    public TypedJsonMessageConverter(Class<T> type) {
+        this(type, new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES));
+    }
+
+    public TypedJsonMessageConverter(Class<T> type, ObjectMapper objectMapper) {
+        this.type = type;
+        this.reader = objectMapper.readerFor(type);
+        this.writer = objectMapper.writerFor(type);
+    }
+
+    @Override
+    public Message toMessage(Object object, MessageProperties messageProperties) {
+        if (!type.isInstance(object)) {
+            throw new MessageConversionException("不支持的消息类型: " + object.getClass().getName()
+                    + ", 期望: " + type.getName());
+        }
+        try {
+            byte[] body = writer.writeValueAsBytes(object);
+            messageProperties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+            messageProperties.setContentEncoding("UTF-8");
+            messageProperties.setContentLength(body.length);
+            return new Message(body, messageProperties);
+        } catch (IOException e) {
+            throw new MessageConversionException("序列化消息失败: " + type.getSimpleName(), e);
+        }
+    }
+
+    @Override
+    public T fromMessage(Message message) {
+        try {
+            return reader.readValue(message.getBody());
+        } catch (IOException e) {
+            throw new MessageConversionException("解析消息失败: " + type.getSimpleName(), e);
+        }
+    }
+}
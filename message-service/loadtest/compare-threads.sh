@@ -0,0 +1,64 @@
+#!/usr/bin/env bash
+# 平台线程池与虚拟线程执行模式的压测对比
+# 依次以两种模式启动 message-service（java21 构建），各跑一遍 message-service.js，
+# 结果写入 summary-platform.json 和 summary-virtual.json。
+#
+# 前置条件：Mongo、RabbitMQ、Eureka、user-service 已启动（如 docker-compose up），本机已安装 k6 和 JDK 21。
+# 用法：./compare-threads.sh [RATE] [DURATION]
+set -euo pipefail
+
+RATE="${1:-400}"
+DURATION="${2:-2m}"
+PORT="${PORT:-8083}"
+BASE_URL="http://localhost:${PORT}"
+SCRIPT_DIR="$(cd "$(dirname "$0")" && pwd)"
+SERVICE_DIR="$(dirname "$SCRIPT_DIR")"
+ROOT_DIR="$(dirname "$SERVICE_DIR")"
+
+# 平台线程模式下Tomcat线程数保持Spring Boot默认值（200），与虚拟线程模式在同一构建下对比
+# 从根项目构建，-am 同时构建 message-service 依赖的 event-schema 模块
+echo "构建 message-service（java21 配置）"
+mvn -q -f "$ROOT_DIR/pom.xml" -pl message-service -am -P java21 package -DskipTests
+JAR="$(ls "$SERVICE_DIR"/target/message-service-*.jar | grep -v '\.original$' | head -n 1)"
+
+run_mode() {
+    local mode="$1"
+    local enabled="$2"
+    echo "启动 message-service: mode=${mode}"
+    java -Djdk.tracePinnedThreads=short -jar "$JAR" \
+        --server.port="$PORT" \
+        --message.virtual-threads.enabled="$enabled" \
+        > "$SCRIPT_DIR/service-${mode}.log" 2>&1 &
+    local pid=$!
+
+    local healthy=false
+    for _ in $(seq 1 60); do
+        if curl -sf "$BASE_URL/actuator/health" > /dev/null; then
+            healthy=true
+            break
+        fi
+        sleep 2
+    done
+    if [ "$healthy" != true ]; then
+        echo "message-service 在 120 秒内未就绪（mode=${mode}），日志见 service-${mode}.log" >&2
+        kill "$pid" 2>/dev/null || true
+        wait "$pid" 2>/dev/null || true
+        exit 1
+    fi
+
+    # 预热，避免JIT和连接池初始化影响结果
+    k6 run -q -e BASE_URL="$BASE_URL" -e MODE="warmup" -e RATE=50 -e DURATION=30s \
+        "$SCRIPT_DIR/message-service.js" > /dev/null || true
+    (cd "$SCRIPT_DIR" && k6 run -e BASE_URL="$BASE_URL" -e MODE="$mode" -e RATE="$RATE" -e DURATION="$DURATION" \
+        message-service.js) || true
+
+    kill "$pid"
+    wait "$pid" 2>/dev/null || true
+    rm -f "$SCRIPT_DIR/summary-warmup.json"
+}
+
+run_mode platform false
+run_mode virtual true
+
+echo "被钉住的虚拟线程调用栈（如有）见 service-virtual.log 中的 'pinned' 记录"
+grep -c "onPinned\|<== monitors" "$SCRIPT_DIR/service-virtual.log" || true
@@ -0,0 +1,128 @@
+// message-service 阻塞请求路径压测（k6）
+// 用于对比平台线程池与虚拟线程执行模式（message.virtual-threads.enabled）下的吞吐和延迟。
+// 固定到达速率：请求处理线程不足时排队时间会直接体现在延迟里，而不是被k6的VU数量掩盖。
+//
+// 单独运行：
+//   k6 run -e BASE_URL=http://localhost:8083 -e MODE=platform message-service.js
+// 两种模式对比见同目录的 compare-threads.sh
+//
+// 环境变量：
+//   BASE_URL   message-service地址，默认 http://localhost:8083（直连服务，不经过网关）
+//   MODE       结果标签，platform 或 virtual，决定输出文件名 summary-<MODE>.json
+//   RATE       每秒请求数，默认 400
+//   DURATION   持续时间，默认 2m
+//   USERS      参与压测的用户ID数量，从 USER_ID_BASE 开始连续编号，默认 200
+//   USER_ID_BASE 起始用户ID，默认 1
+//   GROUP_ID   群聊历史查询使用的群ID，默认 1
+
+import http from 'k6/http';
+import { check } from 'k6';
+import { Trend } from 'k6/metrics';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8083';
+const MODE = __ENV.MODE || 'platform';
+const RATE = parseInt(__ENV.RATE || '400', 10);
+const DURATION = __ENV.DURATION || '2m';
+const USERS = parseInt(__ENV.USERS || '200', 10);
+const USER_ID_BASE = parseInt(__ENV.USER_ID_BASE || '1', 10);
+const GROUP_ID = __ENV.GROUP_ID || '1';
+
+// 按接口分别统计，便于看出是哪条阻塞路径先饱和
+const sendDuration = new Trend('send_message_duration', true);
+const historyDuration = new Trend('private_history_duration', true);
+const groupDuration = new Trend('group_history_duration', true);
+const unreadDuration = new Trend('unread_duration', true);
+
+export const options = {
+    scenarios: {
+        mixed: {
+            executor: 'constant-arrival-rate',
+            rate: RATE,
+            timeUnit: '1s',
+            duration: DURATION,
+            preAllocatedVUs: Math.max(50, RATE),
+            maxVUs: RATE * 4,
+        },
+    },
+    tags: { mode: MODE },
+    thresholds: {
+        http_req_failed: ['rate<0.01'],
+    },
+    summaryTrendStats: ['avg', 'med', 'p(90)', 'p(95)', 'p(99)', 'max'],
+};
+
+function randomUser() {
+    return USER_ID_BASE + Math.floor(Math.random() * USERS);
+}
+
+function randomPeer(userId) {
+    const peer = randomUser();
+    return peer === userId ? USER_ID_BASE + ((peer - USER_ID_BASE + 1) % USERS) : peer;
+}
+
+export default function () {
+    const userId = randomUser();
+    const friendId = randomPeer(userId);
+    const roll = Math.random();
+
+    if (roll < 0.3) {
+        // 发送私聊消息：Mongo写入、用户服务RestTemplate调用、RabbitMQ发送
+        const res = http.post(`${BASE_URL}/api/v1/messages`, JSON.stringify({
+            receiverId: friendId,
+            content: `压测消息 ${__VU}-${__ITER}`,
+            contentType: 'TEXT',
+            messageType: 'PRIVATE',
+        }), {
+            headers: { 'Content-Type': 'application/json', 'X-User-ID': String(userId) },
+            tags: { name: 'send' },
+        });
+        sendDuration.add(res.timings.duration);
+        check(res, { 'send 201': (r) => r.status === 201 });
+    } else if (roll < 0.7) {
+        // 私聊历史（游标分页）
+        const res = http.get(`${BASE_URL}/api/v1/messages/private/history?userId=${userId}&friendId=${friendId}&size=50`,
+            { tags: { name: 'private_history' } });
+        historyDuration.add(res.timings.duration);
+        check(res, { 'history 200': (r) => r.status === 200 });
+    } else if (roll < 0.85) {
+        // 群聊历史
+        const res = http.get(`${BASE_URL}/api/v1/messages/group/${GROUP_ID}/list?size=50`,
+            { tags: { name: 'group_history' } });
+        groupDuration.add(res.timings.duration);
+        check(res, { 'group 200': (r) => r.status === 200 });
+    } else {
+        // 未读消息
+        const res = http.get(`${BASE_URL}/api/v1/messages/unread/${userId}`,
+            { tags: { name: 'unread' } });
+        unreadDuration.add(res.timings.duration);
+        check(res, { 'unread 200': (r) => r.status === 200 });
+    }
+}
+
+export function handleSummary(data) {
+    const out = {};
+    out[`summary-${MODE}.json`] = JSON.stringify(data, null, 2);
+    out.stdout = textSummary(data);
+    return out;
+}
+
+function textSummary(data) {
+    const lines = [`\n模式: ${MODE}, 目标速率: ${RATE}/s, 持续: ${DURATION}`];
+    const reqs = data.metrics.http_reqs;
+    const failed = data.metrics.http_req_failed;
+    const dropped = data.metrics.dropped_iterations;
+    lines.push(`  实际吞吐: ${reqs ? reqs.values.rate.toFixed(1) : 0}/s`);
+    lines.push(`  失败率: ${failed ? (failed.values.rate * 100).toFixed(2) : 0}%`);
+    lines.push(`  丢弃的迭代（VU不足）: ${dropped ? dropped.values.count : 0}`);
+    for (const name of ['http_req_duration', 'send_message_duration', 'private_history_duration',
+        'group_history_duration', 'unread_duration']) {
+        const metric = data.metrics[name];
+        if (!metric) {
+            continue;
+        }
+        const v = metric.values;
+        lines.push(`  ${name}: avg=${v.avg.toFixed(1)}ms p95=${v['p(95)'].toFixed(1)}ms `
+            + `p99=${v['p(99)'].toFixed(1)}ms max=${v.max.toFixed(1)}ms`);
+    }
+    return lines.join('\n') + '\n';
+}
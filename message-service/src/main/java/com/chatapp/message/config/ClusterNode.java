@@ -0,0 +1,24 @@
+package com.chatapp.message.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+/**
+ * 当前消息服务实例的节点标识
+ * 多实例部署时用于区分跨节点广播的来源，每次启动生成新的ID
+ */
+@Component
+public class ClusterNode {
+
+    private final String nodeId;
+
+    public ClusterNode(@Value("${spring.application.name:message-service}") String applicationName) {
+        this.nodeId = applicationName + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+}
@@ -0,0 +1,50 @@
+package com.chatapp.message.config;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * 已序列化为JSON的WebSocket消息载荷
+ * 经 SimpMessagingTemplate 发送时由 EncodedPayloadMessageConverter 原样放入消息体，
+ * 不再经过Jackson转换器，同一条消息广播给多个目的地时只序列化一次。
+ */
+public final class EncodedPayload {
+
+    private final byte[] json;
+
+    private EncodedPayload(byte[] json) {
+        this.json = json;
+    }
+
+    /**
+     * 使用给定的ObjectMapper序列化载荷，已经是编码载荷时直接返回
+     */
+    public static EncodedPayload encode(ObjectMapper objectMapper, Object payload) {
+        if (payload instanceof EncodedPayload) {
+            return (EncodedPayload) payload;
+        }
+        try {
+            return new EncodedPayload(objectMapper.writeValueAsBytes(payload));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("WebSocket消息序列化失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 包装已经是JSON的字节，如其他节点广播过来的消息体
+     */
+    public static EncodedPayload wrap(byte[] json) {
+        return new EncodedPayload(json);
+    }
+
+    /**
+     * JSON字节，调用方不应修改
+     */
+    public byte[] getJson() {
+        return json;
+    }
+
+    public int size() {
+        return json.length;
+    }
+}
@@ -0,0 +1,32 @@
+package com.chatapp.message.config;
+
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.AbstractMessageConverter;
+import org.springframework.util.MimeTypeUtils;
+
+/**
+ * EncodedPayload 的消息转换器
+ * 把已序列化的JSON字节直接作为消息载荷，不复制也不重新序列化，其他类型交给后面的转换器处理
+ */
+public class EncodedPayloadMessageConverter extends AbstractMessageConverter {
+
+    public EncodedPayloadMessageConverter() {
+        super(MimeTypeUtils.APPLICATION_JSON);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return EncodedPayload.class == clazz;
+    }
+
+    @Override
+    protected boolean canConvertFrom(org.springframework.messaging.Message<?> message, Class<?> targetClass) {
+        // 只用于出站，入站消息仍由Jackson转换器处理
+        return false;
+    }
+
+    @Override
+    protected Object convertToInternal(Object payload, MessageHeaders headers, Object conversionHint) {
+        return ((EncodedPayload) payload).getJson();
+    }
+}
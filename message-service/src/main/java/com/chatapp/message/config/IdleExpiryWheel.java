@@ -0,0 +1,66 @@
+package com.chatapp.message.config;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 空闲过期时间轮
+ * 把到期时间（epoch毫秒）按 tick 散列到固定数量的槽位，每次推进只处理走过的槽位，
+ * 成本与到期条目数成正比，而不是与全部条目数成正比。
+ * 槽位数 × tick 应大于最长超时时间；超出一圈的条目会提前取出，由调用方检查后重新放入。
+ */
+class IdleExpiryWheel<T> {
+
+    private final long tickMillis;
+    private final List<Set<T>> slots;
+
+    // 最近一次处理过的tick
+    private volatile long currentTick;
+
+    IdleExpiryWheel(long tickMillis, int slotCount, long nowMillis) {
+        this.tickMillis = tickMillis;
+        this.slots = new ArrayList<>(slotCount);
+        for (int i = 0; i < slotCount; i++) {
+            slots.add(ConcurrentHashMap.newKeySet());
+        }
+        this.currentTick = nowMillis / tickMillis;
+    }
+
+    /**
+     * 在到期时间所在的槽位放入条目，已过期的条目放到下一个tick
+     */
+    void schedule(T item, long deadlineMillis) {
+        long tick = Math.max(deadlineMillis / tickMillis, currentTick + 1);
+        slotOf(tick).add(item);
+    }
+
+    /**
+     * 推进到当前时间，返回走过的槽位中的所有条目
+     */
+    List<T> advance(long nowMillis) {
+        long targetTick = nowMillis / tickMillis;
+        long fromTick = currentTick + 1;
+        if (targetTick - fromTick >= slots.size()) {
+            // 落后超过一圈时每个槽位只需处理一次
+            fromTick = targetTick - slots.size() + 1;
+        }
+
+        List<T> due = new ArrayList<>();
+        for (long tick = fromTick; tick <= targetTick; tick++) {
+            Iterator<T> iterator = slotOf(tick).iterator();
+            while (iterator.hasNext()) {
+                due.add(iterator.next());
+                iterator.remove();
+            }
+        }
+        currentTick = Math.max(currentTick, targetTick);
+        return due;
+    }
+
+    private Set<T> slotOf(long tick) {
+        return slots.get((int) (tick % slots.size()));
+    }
+}
@@ -0,0 +1,30 @@
+package com.chatapp.message.config;
+
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+
+import java.io.IOException;
+
+/**
+ * 带发送缓冲区上限的WebSocket会话
+ * 缓冲区超限时按配置的策略丢弃最早的消息（DROP）或关闭会话（TERMINATE），发送超时的会话总是被关闭
+ */
+class LimitedWebSocketSession extends ConcurrentWebSocketSessionDecorator {
+
+    private final OutboundSessionMonitor monitor;
+
+    LimitedWebSocketSession(WebSocketSession delegate, int sendTimeLimit, int bufferSizeLimit,
+                            OverflowStrategy overflowStrategy, OutboundSessionMonitor monitor) {
+        super(delegate, sendTimeLimit, bufferSizeLimit, overflowStrategy);
+        this.monitor = monitor;
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+        if (getBufferSize() + message.getPayloadLength() > getBufferSizeLimit()) {
+            monitor.recordOverflow();
+        }
+        super.sendMessage(message);
+    }
+}
@@ -0,0 +1,113 @@
+package com.chatapp.message.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * WebSocket出站会话监控
+ * 定期采样每个会话发送缓冲区中积压的字节数，通过actuator暴露以下指标：
+ * chat.websocket.outbound.queued.bytes（所有会话合计）、chat.websocket.outbound.queued.bytes.max（单个会话最大值）、
+ * chat.websocket.outbound.session.queued.bytes（单个会话积压分布）、
+ * chat.websocket.outbound.overflow（缓冲区超限次数）、chat.websocket.outbound.slow.closed（因发送过慢被关闭的会话数）、
+ * chat.websocket.outbound.rejected（出站线程池队列已满而被拒绝的消息数，每个采样周期汇总打印一次警告）
+ */
+@Component
+@Slf4j
+public class OutboundSessionMonitor {
+
+    private final ConcurrentMap<String, ConcurrentWebSocketSessionDecorator> sessions = new ConcurrentHashMap<>();
+
+    private final AtomicLong totalQueuedBytes = new AtomicLong();
+    private final AtomicLong maxQueuedBytes = new AtomicLong();
+
+    private final DistributionSummary sessionQueuedBytes;
+    private final Counter overflowCounter;
+    private final Counter slowClosedCounter;
+    private final Counter rejectedCounter;
+
+    // 上次采样以来被出站线程池拒绝的消息数
+    private final AtomicLong rejectedSinceSample = new AtomicLong();
+
+    public OutboundSessionMonitor(MeterRegistry meterRegistry) {
+        Gauge.builder("chat.websocket.outbound.sessions", sessions, ConcurrentMap::size)
+                .description("持有出站缓冲区的WebSocket会话数")
+                .register(meterRegistry);
+        Gauge.builder("chat.websocket.outbound.queued.bytes", totalQueuedBytes, AtomicLong::get)
+                .description("所有会话发送缓冲区中积压的字节数")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("chat.websocket.outbound.queued.bytes.max", maxQueuedBytes, AtomicLong::get)
+                .description("积压最多的单个会话的字节数")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.sessionQueuedBytes = DistributionSummary.builder("chat.websocket.outbound.session.queued.bytes")
+                .description("单个会话发送缓冲区积压的字节数")
+                .baseUnit("bytes")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.overflowCounter = Counter.builder("chat.websocket.outbound.overflow")
+                .description("消息进入已超限的发送缓冲区的次数")
+                .register(meterRegistry);
+        this.slowClosedCounter = Counter.builder("chat.websocket.outbound.slow.closed")
+                .description("因发送超时或缓冲区超限被关闭的会话数")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("chat.websocket.outbound.rejected")
+                .description("出站线程池队列已满而被拒绝投递的消息数")
+                .register(meterRegistry);
+    }
+
+    public ConcurrentWebSocketSessionDecorator track(ConcurrentWebSocketSessionDecorator session) {
+        sessions.put(session.getId(), session);
+        return session;
+    }
+
+    public void untrack(String sessionId, CloseStatus closeStatus) {
+        sessions.remove(sessionId);
+        if (CloseStatus.SESSION_NOT_RELIABLE.equals(closeStatus)) {
+            slowClosedCounter.increment();
+            log.warn("慢速WebSocket会话已被关闭: sessionId={}", sessionId);
+        }
+    }
+
+    public void recordOverflow() {
+        overflowCounter.increment();
+    }
+
+    public void recordRejected() {
+        rejectedCounter.increment();
+        rejectedSinceSample.incrementAndGet();
+    }
+
+    /**
+     * 采样所有会话的发送缓冲区
+     */
+    @Scheduled(fixedDelayString = "${message.websocket.outbound.metrics-interval-ms:10000}")
+    public void sample() {
+        long total = 0;
+        long max = 0;
+        for (ConcurrentWebSocketSessionDecorator session : sessions.values()) {
+            long queued = session.getBufferSize();
+            sessionQueuedBytes.record(queued);
+            total += queued;
+            max = Math.max(max, queued);
+        }
+        totalQueuedBytes.set(total);
+        maxQueuedBytes.set(max);
+
+        long rejected = rejectedSinceSample.getAndSet(0);
+        if (rejected > 0) {
+            log.warn("出站线程池队列已满，上个采样周期内拒绝投递 {} 条消息，当前积压 {} 字节", rejected, total);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.chatapp.message.config;
 
+import com.chatapp.event.EventQueues;
 import org.springframework.amqp.core.*;
 import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
@@ -15,19 +16,27 @@ import org.springframework.context.annotation.Configuration;
 public class RabbitMQConfig {
 
     // 交换机名称
-    public static final String CHAT_EXCHANGE = "chat.exchange";
+    public static final String CHAT_EXCHANGE = EventQueues.CHAT_EXCHANGE;
+    public static final String USER_EXCHANGE = "user.exchange";
+    public static final String GROUP_EXCHANGE = "group.exchange";
     
     // 队列名称
     public static final String MESSAGE_QUEUE = "chat.message.queue";
-    public static final String NOTIFICATION_QUEUE = "chat.notification.queue";
+    public static final String NOTIFICATION_QUEUE = EventQueues.NOTIFICATION_QUEUE;
     public static final String MESSAGE_DELIVERY_QUEUE = "chat.message.delivery.queue";
     public static final String BATCH_UPDATE_QUEUE = "chat.batch.update.queue";
     
     // 路由键
     public static final String MESSAGE_ROUTING_KEY = "message.send";
-    public static final String NOTIFICATION_ROUTING_KEY = "notification.send";
+    public static final String NOTIFICATION_ROUTING_KEY = EventQueues.NOTIFICATION_ROUTING_KEY;
     public static final String DELIVERY_ROUTING_KEY = "message.delivery";
     public static final String BATCH_UPDATE_ROUTING_KEY = "message.batch.update";
+    public static final String PRIVATE_MESSAGE_ROUTING_KEY = "message.send.private";
+    public static final String GROUP_MESSAGE_ROUTING_KEY = "message.send.group";
+    public static final String WS_FANOUT_ROUTING_KEY = "ws.fanout";
+    public static final String PRESENCE_ROUTING_KEY = "presence.event";
+    public static final String USER_STATUS_BATCH_ROUTING_KEY = "user.status.batch";
+    public static final String GROUP_MEMBERSHIP_CHANGED_ROUTING_KEY = "group.membership.changed";
 
     /**
      * 声明主题交换机
@@ -0,0 +1,136 @@
+package com.chatapp.message.config;
+
+import com.chatapp.message.mq.WebSocketFanoutEvent;
+import com.chatapp.message.service.PresenceService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * WebSocket消息广播器
+ * 先投递给本节点的订阅者，再通过 chat.exchange 广播给其他节点，由各节点投递给自己持有的会话。
+ * 客户端连接到任意实例都能收到消息，不依赖负载均衡的会话粘滞。
+ * 每条消息只序列化一次（EncodedPayload），同一份JSON字节发送给所有目标会话并作为跨节点广播的消息体。
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class WebSocketBroadcaster {
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final WebSocketUserRegistry userRegistry;
+    private final RabbitTemplate rabbitTemplate;
+    private final ClusterNode clusterNode;
+    private final PresenceService presenceService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${message.websocket.cluster.enabled:true}")
+    private boolean clusterEnabled;
+
+    /**
+     * 发送到话题目的地（如群聊话题）
+     */
+    public void sendToTopic(String destination, Object payload) {
+        EncodedPayload encoded = EncodedPayload.encode(objectMapper, payload);
+        messagingTemplate.convertAndSend(destination, encoded);
+        publish(WebSocketFanoutEvent.TargetType.TOPIC, destination, null, encoded);
+    }
+
+    /**
+     * 发送到用户的所有会话队列
+     */
+    public void sendToUserSessions(Collection<String> userIds, Object payload) {
+        EncodedPayload encoded = EncodedPayload.encode(objectMapper, payload);
+        deliverToUserSessions(userIds, encoded);
+        if (anyMayBeOnlineElsewhere(userIds)) {
+            publish(WebSocketFanoutEvent.TargetType.USER_SESSIONS, null, userIds, encoded);
+        }
+    }
+
+    /**
+     * 发送到Spring用户目的地（/user/{userId}/...）
+     */
+    public void sendToUser(String userId, String destination, Object payload) {
+        EncodedPayload encoded = EncodedPayload.encode(objectMapper, payload);
+        messagingTemplate.convertAndSendToUser(userId, destination, encoded);
+        if (presenceService.mayBeOnlineElsewhere(userId)) {
+            publish(WebSocketFanoutEvent.TargetType.USER, destination, List.of(userId), encoded);
+        }
+    }
+
+    /**
+     * 投递其他节点广播过来的消息，只投递给本节点上的订阅者
+     */
+    public void deliverRemote(WebSocketFanoutEvent event) {
+        if (clusterNode.getNodeId().equals(event.getOriginNodeId())) {
+            // 本节点发布的消息已在发送时投递
+            return;
+        }
+
+        EncodedPayload encoded = EncodedPayload.wrap(event.getPayload());
+        switch (event.getTargetType()) {
+            case TOPIC:
+                messagingTemplate.convertAndSend(event.getDestination(), encoded);
+                break;
+            case USER_SESSIONS:
+                deliverToUserSessions(event.getUserIds(), encoded);
+                break;
+            case USER:
+                for (String userId : event.getUserIds()) {
+                    messagingTemplate.convertAndSendToUser(userId, event.getDestination(), encoded);
+                }
+                break;
+            default:
+                log.warn("未知的广播目标类型: {}", event);
+        }
+    }
+
+    // 只有确定目标用户都只连接在本节点上时才跳过跨节点广播，在线状态未知或刚变化时照常广播
+    private boolean anyMayBeOnlineElsewhere(Collection<String> userIds) {
+        for (String userId : userIds) {
+            if (presenceService.mayBeOnlineElsewhere(userId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void deliverToUserSessions(Collection<String> userIds, EncodedPayload encoded) {
+        // 所有会话共用同一份载荷，发送时只生成消息头
+        for (String userId : userIds) {
+            for (String destination : userRegistry.getUserSessionDestinations(userId)) {
+                try {
+                    messagingTemplate.convertAndSend(destination, encoded);
+                    log.debug("消息已发送到用户会话: userId={}, destination={}", userId, destination);
+                } catch (Exception e) {
+                    log.error("发送消息到用户会话失败: userId={}, destination={}", userId, destination, e);
+                }
+            }
+        }
+    }
+
+    private void publish(WebSocketFanoutEvent.TargetType targetType, String destination,
+                         Collection<String> userIds, EncodedPayload encoded) {
+        if (!clusterEnabled) {
+            return;
+        }
+
+        WebSocketFanoutEvent event = new WebSocketFanoutEvent(clusterNode.getNodeId(), targetType, destination,
+                userIds != null ? new ArrayList<>(userIds) : null, encoded.getJson());
+        try {
+            rabbitTemplate.send(RabbitMQConfig.CHAT_EXCHANGE, RabbitMQConfig.WS_FANOUT_ROUTING_KEY, event.toMessage());
+        } catch (AmqpException e) {
+            // 本节点的订阅者已收到，其他节点的订阅者可通过历史消息接口补齐
+            log.error("跨节点广播失败: {}, error={}", event, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.chatapp.message.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.support.AbstractSubscribableChannel;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.config.annotation.DelegatingWebSocketMessageBrokerConfiguration;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.messaging.SubProtocolWebSocketHandler;
+
+/**
+ * STOMP消息代理基础配置
+ * 代替 @EnableWebSocketMessageBroker，仍然汇总所有 WebSocketMessageBrokerConfigurer（见 WebSocketConfig），
+ * 另外替换会话装饰方式，使慢速客户端的发送缓冲区可以按策略丢弃消息，并登记到出站会话监控中。
+ */
+@Configuration
+public class WebSocketBrokerConfiguration extends DelegatingWebSocketMessageBrokerConfiguration {
+
+    @Autowired
+    private OutboundSessionMonitor sessionMonitor;
+
+    @Value("${message.websocket.outbound.overflow-strategy:DROP}")
+    private ConcurrentWebSocketSessionDecorator.OverflowStrategy overflowStrategy;
+
+    @Override
+    @Bean
+    public WebSocketHandler subProtocolWebSocketHandler(
+            AbstractSubscribableChannel clientInboundChannel, AbstractSubscribableChannel clientOutboundChannel) {
+        return new SubProtocolWebSocketHandler(clientInboundChannel, clientOutboundChannel) {
+
+            @Override
+            protected WebSocketSession decorateSession(WebSocketSession session) {
+                return sessionMonitor.track(new LimitedWebSocketSession(
+                        session, getSendTimeLimit(), getSendBufferSizeLimit(), overflowStrategy, sessionMonitor));
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                sessionMonitor.untrack(session.getId(), closeStatus);
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+}
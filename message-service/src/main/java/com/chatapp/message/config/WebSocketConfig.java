@@ -2,21 +2,26 @@ package com.chatapp.message.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.messaging.converter.DefaultContentTypeResolver;
 import org.springframework.messaging.converter.MappingJackson2MessageConverter;
 import org.springframework.messaging.converter.MessageConverter;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.util.MimeTypeUtils;
-import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
+/**
+ * STOMP端点、代理与通道配置，由 WebSocketBrokerConfiguration 汇总生效
+ */
 @Configuration
-@EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     @Autowired
@@ -25,9 +30,34 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     @Autowired
     private WebSocketUserSessionHandler userSessionHandler;
 
+    @Autowired
+    private OutboundSessionMonitor outboundSessionMonitor;
+
+    @Value("${message.websocket.outbound.core-pool-size:8}")
+    private int outboundCorePoolSize;
+
+    @Value("${message.websocket.outbound.max-pool-size:32}")
+    private int outboundMaxPoolSize;
+
+    @Value("${message.websocket.outbound.queue-capacity:10000}")
+    private int outboundQueueCapacity;
+
+    @Value("${message.websocket.outbound.keep-alive-seconds:60}")
+    private int outboundKeepAliveSeconds;
+
+    @Value("${message.websocket.outbound.send-time-limit-ms:10000}")
+    private int sendTimeLimitMs;
+
+    @Value("${message.websocket.outbound.send-buffer-size-limit:524288}")
+    private int sendBufferSizeLimit;
+
+    @Value("${message.websocket.inbound.message-size-limit:65536}")
+    private int inboundMessageSizeLimit;
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry registry) {
-        // 启用简单消息代理，用于将消息广播到客户端
+        // 启用简单消息代理，用于将消息广播到本节点的客户端
+        // 多实例部署时由WebSocketBroadcaster经chat.exchange把消息转发到其他节点的简单代理
         registry.enableSimpleBroker("/topic", "/queue");
         
         // 指定消息被发送到的前缀
@@ -35,6 +65,9 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         
         // 配置用户目的地前缀，用于点对点消息
         registry.setUserDestinationPrefix("/user");
+
+        // 出站通道使用线程池时，保证同一会话的消息按发布顺序发送
+        registry.setPreservePublishOrder(true);
     }
 
     @Override
@@ -51,12 +84,48 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         registration.interceptors(userSessionHandler);
     }
 
+    /**
+     * 出站线程池：队列有上限，慢速客户端只占用各自的发送缓冲区，不会长期占住线程。
+     * 过载时（线程数已达上限且队列已满）新的出站消息被拒绝、不会投递到对应会话，
+     * 拒绝次数计入 chat.websocket.outbound.rejected 并按采样周期打印警告；
+     * 拒绝仍以 RejectedExecutionException 通知发送方，与默认策略的行为一致。
+     */
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("clientOutboundChannel-");
+        executor.setRejectedExecutionHandler((task, pool) -> {
+            outboundSessionMonitor.recordRejected();
+            throw new RejectedExecutionException("WebSocket出站线程池队列已满: active=" + pool.getActiveCount()
+                    + ", queued=" + pool.getQueue().size());
+        });
+        registration.taskExecutor(executor)
+                .corePoolSize(outboundCorePoolSize)
+                .maxPoolSize(outboundMaxPoolSize)
+                .queueCapacity(outboundQueueCapacity)
+                .keepAliveSeconds(outboundKeepAliveSeconds);
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        // 出站：单次发送超时或发送缓冲区超限的会话按 message.websocket.outbound.overflow-strategy 处理
+        // 入站：客户端发来的单个STOMP帧大小上限
+        registration.setSendTimeLimit(sendTimeLimitMs)
+                .setSendBufferSizeLimit(sendBufferSizeLimit)
+                .setMessageSizeLimit(inboundMessageSizeLimit);
+    }
+
     @Override
     public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
         // 配置自定义的消息转换器，使用我们配置的ObjectMapper
         DefaultContentTypeResolver resolver = new DefaultContentTypeResolver();
         resolver.setDefaultMimeType(MimeTypeUtils.APPLICATION_JSON);
         
+        // 已序列化的载荷直接透传，放在Jackson转换器之前
+        EncodedPayloadMessageConverter encodedConverter = new EncodedPayloadMessageConverter();
+        encodedConverter.setContentTypeResolver(resolver);
+        messageConverters.add(encodedConverter);
+        
         MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
         converter.setObjectMapper(objectMapper);
         converter.setContentTypeResolver(resolver);
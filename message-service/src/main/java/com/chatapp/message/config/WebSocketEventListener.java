@@ -1,5 +1,6 @@
 package com.chatapp.message.config;
 
+import com.chatapp.message.mq.UserStatusPublisher;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.event.EventListener;
@@ -8,13 +9,6 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.socket.messaging.SessionConnectEvent;
 import org.springframework.web.socket.messaging.SessionConnectedEvent;
 import org.springframework.web.socket.messaging.SessionDisconnectEvent;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpMethod;
-import org.springframework.http.MediaType;
-import org.springframework.util.LinkedMultiValueMap;
-import org.springframework.util.MultiValueMap;
 
 @Component
 @Slf4j
@@ -23,10 +17,8 @@ public class WebSocketEventListener {
     @Autowired
     private WebSocketUserRegistry userRegistry;
     
-    private final RestTemplate restTemplate = new RestTemplate();
-    
-    // 用户服务的基础URL
-    private static final String USER_SERVICE_URL = "http://localhost:8081";
+    @Autowired
+    private UserStatusPublisher userStatusPublisher;
 
     @EventListener
     public void handleWebSocketConnectListener(SessionConnectEvent event) {
@@ -67,7 +59,7 @@ public class WebSocketEventListener {
             userRegistry.addUserSession(userId.toString(), sessionId);
             
             // 自动设置用户为在线状态
-            updateUserStatus(userId.toString(), "ONLINE");
+            userStatusPublisher.markOnline(userId.toString());
         }
         
         log.info("WebSocket连接已建立: sessionId={}, userId={}, username={}", sessionId, userId, username);
@@ -97,33 +89,10 @@ public class WebSocketEventListener {
         
         // 检查用户是否还有其他活跃会话，如果没有则设置为离线
         if (userId != null && !userRegistry.isUserOnline(userId)) {
-            updateUserStatus(userId, "OFFLINE");
+            userStatusPublisher.markOffline(userId);
             log.info("用户已离线: userId={}", userId);
         }
         
         log.info("WebSocket连接断开: sessionId={}, userId={}", sessionId, userId);
     }
-    
-    /**
-     * 更新用户状态
-     */
-    private void updateUserStatus(String userId, String status) {
-        try {
-            String url = USER_SERVICE_URL + "/api/v1/users/" + userId + "/status";
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
-            
-            MultiValueMap<String, String> params = new LinkedMultiValueMap<>();
-            params.add("status", status);
-            
-            HttpEntity<MultiValueMap<String, String>> request = new HttpEntity<>(params, headers);
-            
-            restTemplate.exchange(url, HttpMethod.POST, request, String.class);
-            log.info("自动更新用户状态成功: userId={}, status={}", userId, status);
-            
-        } catch (Exception e) {
-            log.error("自动更新用户状态失败: userId={}, status={}, error={}", userId, status, e.getMessage());
-        }
-    }
-} 
\ No newline at end of file
+}
\ No newline at end of file
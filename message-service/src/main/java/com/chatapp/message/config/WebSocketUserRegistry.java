@@ -1,47 +1,79 @@
 package com.chatapp.message.config;
 
+import com.chatapp.message.mq.UserStatusPublisher;
+import com.chatapp.message.service.PresenceService;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpMethod;
-import org.springframework.http.MediaType;
-import org.springframework.util.LinkedMultiValueMap;
-import org.springframework.util.MultiValueMap;
 import org.springframework.scheduling.annotation.Scheduled;
 
+import javax.annotation.PostConstruct;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
-import java.time.LocalDateTime;
-import java.util.Map;
-import java.util.Iterator;
 
 @Component
+@RequiredArgsConstructor
 @Slf4j
 public class WebSocketUserRegistry {
     
+    // 空闲检查时间轮每格的时长（毫秒）
+    private static final long EXPIRY_TICK_MILLIS = 1000;
+    
+    // 每个会话独立的消息队列前缀
+    private static final String SESSION_QUEUE_PREFIX = "/queue/messages-";
+    
+    private final PresenceService presenceService;
+    private final UserStatusPublisher userStatusPublisher;
+    
+    // 用户离线超时时间（毫秒）
+    @Value("${message.presence.idle-timeout-ms:300000}")
+    private long idleTimeoutMillis;
+    
     // 用户ID -> 会话ID的映射
     private final ConcurrentMap<String, Set<String>> userSessions = new ConcurrentHashMap<>();
     
     // 会话ID -> 用户ID的映射
     private final ConcurrentMap<String, String> sessionUsers = new ConcurrentHashMap<>();
     
+    // 用户ID -> 会话队列目的地的映射，在会话建立时生成，发送消息时不再拼接字符串
+    private final ConcurrentMap<String, Set<String>> userDestinations = new ConcurrentHashMap<>();
+    
     // 用户ID -> 最后活跃时间的映射
-    private final ConcurrentMap<String, LocalDateTime> userLastActive = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ActivityState> userLastActive = new ConcurrentHashMap<>();
     
-    private final RestTemplate restTemplate = new RestTemplate();
-    private static final String USER_SERVICE_URL = "http://localhost:8081";
+    // 按到期时间排列的活跃记录，心跳只更新时间戳，到期时再检查是否需要顺延
+    private IdleExpiryWheel<ActivityState> expiryWheel;
     
-    // 用户离线超时时间（分钟）
-    private static final int OFFLINE_TIMEOUT_MINUTES = 5;
+    @PostConstruct
+    public void initExpiryWheel() {
+        int slotCount = (int) (idleTimeoutMillis / EXPIRY_TICK_MILLIS) + 2;
+        expiryWheel = new IdleExpiryWheel<>(EXPIRY_TICK_MILLIS, slotCount, System.currentTimeMillis());
+    }
     
     public void addUserSession(String userId, String sessionId) {
         log.info("添加用户会话映射: userId={}, sessionId={}", userId, sessionId);
-        userSessions.computeIfAbsent(userId, k -> new CopyOnWriteArraySet<>()).add(sessionId);
         sessionUsers.put(sessionId, userId);
+        boolean[] firstSession = new boolean[1];
+        userSessions.compute(userId, (k, sessions) -> {
+            if (sessions == null) {
+                sessions = new CopyOnWriteArraySet<>();
+                // 用户在本节点的第一个会话
+                presenceService.localUserOnline(userId);
+                firstSession[0] = true;
+            }
+            if (sessions.add(sessionId)) {
+                userDestinations.computeIfAbsent(userId, key -> new CopyOnWriteArraySet<>())
+                        .add(SESSION_QUEUE_PREFIX + sessionId);
+            }
+            return sessions;
+        });
+        if (firstSession[0]) {
+            // 在 CONNECTED 返回前同步广播上线，不在 compute 中执行MQ发送
+            presenceService.publishLocalChanges();
+        }
         
         // 更新最后活跃时间
         updateUserLastActive(userId);
@@ -51,15 +83,24 @@ public class WebSocketUserRegistry {
         String userId = sessionUsers.remove(sessionId);
         if (userId != null) {
             log.info("移除用户会话映射: userId={}, sessionId={}", userId, sessionId);
-            Set<String> sessions = userSessions.get(userId);
-            if (sessions != null) {
+            userSessions.computeIfPresent(userId, (k, sessions) -> {
                 sessions.remove(sessionId);
-                if (sessions.isEmpty()) {
-                    userSessions.remove(userId);
-                    // 用户所有会话都断开时，移除最后活跃时间记录
-                    userLastActive.remove(userId);
+                if (!sessions.isEmpty()) {
+                    Set<String> destinations = userDestinations.get(userId);
+                    if (destinations != null) {
+                        destinations.remove(SESSION_QUEUE_PREFIX + sessionId);
+                    }
+                    return sessions;
                 }
-            }
+                userDestinations.remove(userId);
+                // 用户在本节点的所有会话都断开时，移除最后活跃时间记录
+                ActivityState state = userLastActive.remove(userId);
+                if (state != null) {
+                    state.removed = true;
+                }
+                presenceService.localUserOffline(userId);
+                return null;
+            });
         }
     }
     
@@ -67,88 +108,108 @@ public class WebSocketUserRegistry {
         return userSessions.getOrDefault(userId, Set.of());
     }
     
+    /**
+     * 获取用户在本节点上所有会话的队列目的地
+     */
+    public Set<String> getUserSessionDestinations(String userId) {
+        return userDestinations.getOrDefault(userId, Set.of());
+    }
+    
     public String getSessionUser(String sessionId) {
         return sessionUsers.get(sessionId);
     }
     
+    /**
+     * 用户是否在任意节点上在线
+     */
     public boolean isUserOnline(String userId) {
-        Set<String> sessions = userSessions.get(userId);
-        return sessions != null && !sessions.isEmpty();
+        return presenceService.isUserOnline(userId);
     }
     
     /**
      * 更新用户最后活跃时间
      */
     public void updateUserLastActive(String userId) {
-        userLastActive.put(userId, LocalDateTime.now());
-        log.debug("更新用户最后活跃时间: userId={}, time={}", userId, LocalDateTime.now());
+        long now = System.currentTimeMillis();
+        ActivityState state = userLastActive.get(userId);
+        if (state == null) {
+            state = userLastActive.computeIfAbsent(userId, k -> {
+                ActivityState created = new ActivityState(userId, now);
+                expiryWheel.schedule(created, now + idleTimeoutMillis);
+                return created;
+            });
+        }
+        state.lastActive = now;
+        log.debug("更新用户最后活跃时间: userId={}, time={}", userId, now);
     }
     
     /**
-     * 获取所有在线用户
+     * 获取所有节点上的在线用户
      */
     public Set<String> getAllOnlineUsers() {
-        return userSessions.keySet();
+        return presenceService.getOnlineUsers();
     }
     
     /**
-     * 定时任务：检查并清理长时间未活跃的用户
-     * 每2分钟执行一次
+     * 定时任务：推进时间轮，清理到期且确实未活跃的用户
+     * 每次只处理走过的槽位，期间有过心跳的用户按新的到期时间重新放入
      */
-    @Scheduled(fixedRate = 120000) // 2分钟
-    public void cleanupInactiveUsers() {
-        LocalDateTime cutoffTime = LocalDateTime.now().minusMinutes(OFFLINE_TIMEOUT_MINUTES);
+    @Scheduled(fixedDelay = EXPIRY_TICK_MILLIS)
+    public void expireInactiveUsers() {
+        long now = System.currentTimeMillis();
+        for (ActivityState state : expiryWheel.advance(now)) {
+            if (state.removed) {
+                continue;
+            }
+            long deadline = state.lastActive + idleTimeoutMillis;
+            if (deadline > now) {
+                expiryWheel.schedule(state, deadline);
+            } else {
+                expire(state, now);
+            }
+        }
+    }
+    
+    private void expire(ActivityState state, long now) {
+        String userId = state.userId;
+        // 只移除仍然有效的记录，用户断开后重新连接时会有新的记录
+        if (!userLastActive.remove(userId, state)) {
+            return;
+        }
+        state.removed = true;
+        log.info("检测到用户长时间未活跃: userId={}, 空闲时间={}ms", userId, now - state.lastActive);
         
-        Iterator<Map.Entry<String, LocalDateTime>> iterator = userLastActive.entrySet().iterator();
-        while (iterator.hasNext()) {
-            Map.Entry<String, LocalDateTime> entry = iterator.next();
-            String userId = entry.getKey();
-            LocalDateTime lastActive = entry.getValue();
-            
-            // 如果用户超过5分钟未活跃
-            if (lastActive.isBefore(cutoffTime)) {
-                log.info("检测到用户长时间未活跃: userId={}, lastActive={}", userId, lastActive);
-                
-                // 移除所有会话
-                Set<String> sessions = userSessions.get(userId);
-                if (sessions != null) {
-                    for (String sessionId : sessions) {
-                        sessionUsers.remove(sessionId);
-                    }
-                    userSessions.remove(userId);
+        // 移除本节点上的所有会话
+        userSessions.compute(userId, (k, sessions) -> {
+            if (sessions != null) {
+                for (String sessionId : sessions) {
+                    sessionUsers.remove(sessionId);
                 }
-                
-                // 移除活跃时间记录
-                iterator.remove();
-                
-                // 设置用户为离线状态
-                updateUserStatus(userId, "OFFLINE");
-                
-                log.info("已清理非活跃用户: userId={}", userId);
             }
+            userDestinations.remove(userId);
+            presenceService.localUserOffline(userId);
+            return null;
+        });
+        
+        // 用户在其他节点上仍有连接时不设置离线
+        if (!presenceService.isUserOnline(userId)) {
+            userStatusPublisher.markOffline(userId);
         }
+        
+        log.info("已清理非活跃用户: userId={}", userId);
     }
     
     /**
-     * 更新用户状态
+     * 用户在本节点上的活跃记录
      */
-    private void updateUserStatus(String userId, String status) {
-        try {
-            String url = USER_SERVICE_URL + "/api/v1/users/" + userId + "/status";
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
-            
-            MultiValueMap<String, String> params = new LinkedMultiValueMap<>();
-            params.add("status", status);
-            
-            HttpEntity<MultiValueMap<String, String>> request = new HttpEntity<>(params, headers);
-            
-            restTemplate.exchange(url, HttpMethod.POST, request, String.class);
-            log.info("自动更新用户状态成功: userId={}, status={}", userId, status);
-            
-        } catch (Exception e) {
-            log.error("自动更新用户状态失败: userId={}, status={}, error={}", userId, status, e.getMessage());
+    private static class ActivityState {
+        private final String userId;
+        private volatile long lastActive;
+        private volatile boolean removed;
+        
+        ActivityState(String userId, long lastActive) {
+            this.userId = userId;
+            this.lastActive = lastActive;
         }
     }
-} 
\ No newline at end of file
+}
@@ -1,21 +1,39 @@
 package com.chatapp.message.controller;
 
+import com.chatapp.message.dto.ChunkedUploadInitRequest;
+import com.chatapp.message.model.UploadSession;
+import com.chatapp.message.service.AttachmentStore;
+import com.chatapp.message.service.ChunkedUploadService;
+import com.chatapp.message.service.ThumbnailService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
+import javax.validation.Valid;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 文件上传控制器
@@ -26,17 +44,16 @@ import java.util.UUID;
 @Slf4j
 public class FileController {
 
-    private static final String UPLOAD_DIR = "uploads/";
     private static final long MAX_FILE_SIZE = 50 * 1024 * 1024; // 50MB
-    
-    static {
-        // 创建上传目录
-        try {
-            Files.createDirectories(Paths.get(UPLOAD_DIR));
-        } catch (IOException e) {
-            log.error("创建上传目录失败", e);
-        }
-    }
+
+    private final ChunkedUploadService chunkedUploadService;
+    private final AttachmentStore attachmentStore;
+    private final ThumbnailService thumbnailService;
+
+    // 扩展名 -> 内置映射中的内容类型，避免每次查看图片都查找；需要探测文件的扩展名不缓存
+    private final Cache<String, MediaType> contentTypeCache = Caffeine.newBuilder()
+            .maximumSize(1000)
+            .build();
 
     @PostMapping("/upload")
     public ResponseEntity<Map<String, Object>> uploadFile(
@@ -56,35 +73,14 @@ public class FileController {
         }
         
         try {
-            // 生成唯一文件名
+            // 按内容哈希保存，相同内容的文件只保存一份
             String originalFilename = file.getOriginalFilename();
-            String extension = "";
-            if (originalFilename != null && originalFilename.contains(".")) {
-                extension = originalFilename.substring(originalFilename.lastIndexOf("."));
-            }
-            String filename = UUID.randomUUID().toString() + extension;
-            
-            // 保存文件
-            Path targetPath = Paths.get(UPLOAD_DIR + filename);
-            Files.copy(file.getInputStream(), targetPath, StandardCopyOption.REPLACE_EXISTING);
-            
-            // 构建文件信息
-            Map<String, Object> fileInfo = new HashMap<>();
-            fileInfo.put("filename", filename);
-            fileInfo.put("originalName", originalFilename);
-            fileInfo.put("size", file.getSize());
-            fileInfo.put("contentType", file.getContentType());
-            fileInfo.put("url", "/api/v1/files/download/" + filename);
-            fileInfo.put("uploadTime", System.currentTimeMillis());
-            fileInfo.put("uploaderId", userId);
+            String filename = attachmentStore.store(file.getInputStream(), originalFilename, userId);
+            thumbnailService.generateAsync(filename);
             
             log.info("用户 {} 上传文件成功: {}", userId, filename);
-            
-            Map<String, Object> resultMap = new HashMap<>();
-            resultMap.put("success", true);
-            resultMap.put("message", "文件上传成功");
-            resultMap.put("file", fileInfo);
-            return ResponseEntity.ok(resultMap);
+            return ResponseEntity.ok(uploadResult(
+                    fileInfo(filename, originalFilename, file.getSize(), file.getContentType(), userId)));
             
         } catch (IOException e) {
             log.error("文件上传失败", e);
@@ -95,46 +91,170 @@ public class FileController {
         }
     }
     
+    /**
+     * 创建分片上传，返回上传ID和分片大小
+     */
+    @PostMapping("/uploads")
+    public ResponseEntity<Map<String, Object>> initChunkedUpload(
+            @Valid @RequestBody ChunkedUploadInitRequest request,
+            @RequestHeader("X-User-ID") Long userId) {
+        return ResponseEntity.ok(uploadStatus(chunkedUploadService.initUpload(userId, request)));
+    }
+    
+    /**
+     * 查询分片上传进度，断线重连后客户端只需上传缺失的分片
+     */
+    @GetMapping("/uploads/{uploadId}")
+    public ResponseEntity<Map<String, Object>> getChunkedUpload(
+            @PathVariable String uploadId,
+            @RequestHeader("X-User-ID") Long userId) {
+        return ResponseEntity.ok(uploadStatus(chunkedUploadService.getUpload(uploadId, userId)));
+    }
+    
+    /**
+     * 上传一个分片，请求体为分片的原始字节，写入位置为 index * chunkSize
+     */
+    @PutMapping("/uploads/{uploadId}/chunks/{index}")
+    public ResponseEntity<Map<String, Object>> uploadChunk(
+            @PathVariable String uploadId,
+            @PathVariable int index,
+            @RequestHeader("X-Chunk-Checksum") String checksum,
+            @RequestHeader("X-User-ID") Long userId,
+            InputStream body) {
+        return ResponseEntity.ok(uploadStatus(
+                chunkedUploadService.writeChunk(uploadId, userId, index, checksum, body)));
+    }
+    
+    /**
+     * 完成分片上传，返回与普通上传相同的文件信息
+     */
+    @PostMapping("/uploads/{uploadId}/complete")
+    public ResponseEntity<Map<String, Object>> completeChunkedUpload(
+            @PathVariable String uploadId,
+            @RequestHeader("X-User-ID") Long userId) {
+        UploadSession session = chunkedUploadService.getUpload(uploadId, userId);
+        String filename = chunkedUploadService.completeUpload(uploadId, userId);
+        thumbnailService.generateAsync(filename);
+        return ResponseEntity.ok(uploadResult(
+                fileInfo(filename, session.getOriginalName(), session.getSize(), session.getContentType(), userId)));
+    }
+    
+    /**
+     * 下载文件
+     * 以流的方式输出，支持 Range 请求（206）和 ETag/Last-Modified 条件请求（304）
+     */
     @GetMapping("/download/{filename}")
-    public ResponseEntity<byte[]> downloadFile(@PathVariable String filename) {
+    public ResponseEntity<Resource> downloadFile(@PathVariable String filename) {
+        return serveFile(attachmentStore.resolve(filename), filename,
+                ContentDisposition.attachment().filename(filename).build(), null);
+    }
+    
+    /**
+     * 查看图片，与下载相同的流式输出，以内联方式展示
+     * 带 w 参数时返回最接近该宽度的缩略图；缩略图尚未生成时先返回原图，并且只允许短时间缓存
+     */
+    @GetMapping("/image/{filename}")
+    public ResponseEntity<Resource> getImage(
+            @PathVariable String filename,
+            @RequestParam(value = "w", required = false) Integer width) {
+        if (width == null || width <= 0) {
+            return serveFile(attachmentStore.resolve(filename), filename, ContentDisposition.inline().build(), null);
+        }
+        Path thumbnail = thumbnailService.resolve(filename, width);
+        if (thumbnail != null) {
+            return serveFile(thumbnail, thumbnail.getFileName().toString(), ContentDisposition.inline().build(),
+                    CacheControl.maxAge(30, TimeUnit.DAYS).cachePublic());
+        }
+        return serveFile(attachmentStore.resolve(filename), filename, ContentDisposition.inline().build(),
+                CacheControl.maxAge(60, TimeUnit.SECONDS));
+    }
+    
+    /**
+     * 流式返回文件
+     * Range 请求由Spring按 ResourceRegion 分段输出，条件请求在返回前根据响应中的 ETag/Last-Modified 判断，
+     * 文件内容以固定大小的缓冲区写出，不会整体读入堆内存
+     */
+    private ResponseEntity<Resource> serveFile(Path filePath, String filename, ContentDisposition disposition,
+                                               CacheControl cacheControl) {
+        if (filePath == null) {
+            return ResponseEntity.notFound().build();
+        }
+        
         try {
-            Path filePath = Paths.get(UPLOAD_DIR + filename);
-            
-            if (!Files.exists(filePath)) {
+            BasicFileAttributes attributes = Files.readAttributes(filePath, BasicFileAttributes.class);
+            if (!attributes.isRegularFile()) {
                 return ResponseEntity.notFound().build();
             }
+            long lastModified = attributes.lastModifiedTime().toMillis();
             
-            byte[] data = Files.readAllBytes(filePath);
-            
-            return ResponseEntity.ok()
-                    .header("Content-Disposition", "attachment; filename=\"" + filename + "\"")
-                    .body(data);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (cacheControl != null) {
+                response.cacheControl(cacheControl);
+            }
+            return response
+                    .contentType(contentTypeOf(filename, filePath))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, disposition.toString())
+                    .eTag(Long.toHexString(lastModified) + "-" + Long.toHexString(attributes.size()))
+                    .lastModified(lastModified)
+                    .body(new FileSystemResource(filePath));
                     
         } catch (IOException e) {
-            log.error("文件下载失败: {}", filename, e);
+            log.error("文件读取失败: {}", filename, e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
     
-    @GetMapping("/image/{filename}")
-    public ResponseEntity<byte[]> getImage(@PathVariable String filename) {
+    private Map<String, Object> fileInfo(String filename, String originalName, long size, String contentType, Long userId) {
+        Map<String, Object> fileInfo = new HashMap<>();
+        fileInfo.put("filename", filename);
+        fileInfo.put("originalName", originalName);
+        fileInfo.put("size", size);
+        fileInfo.put("contentType", contentType);
+        fileInfo.put("url", "/api/v1/files/download/" + filename);
+        fileInfo.put("uploadTime", System.currentTimeMillis());
+        fileInfo.put("uploaderId", userId);
+        return fileInfo;
+    }
+    
+    private Map<String, Object> uploadResult(Map<String, Object> fileInfo) {
+        Map<String, Object> resultMap = new HashMap<>();
+        resultMap.put("success", true);
+        resultMap.put("message", "文件上传成功");
+        resultMap.put("file", fileInfo);
+        return resultMap;
+    }
+    
+    private Map<String, Object> uploadStatus(UploadSession session) {
+        List<Integer> received = new ArrayList<>(session.getReceivedChunks());
+        Collections.sort(received);
+        Map<String, Object> status = new HashMap<>();
+        status.put("uploadId", session.getId());
+        status.put("size", session.getSize());
+        status.put("chunkSize", session.getChunkSize());
+        status.put("totalChunks", session.getTotalChunks());
+        status.put("receivedChunks", received);
+        return status;
+    }
+    
+    /**
+     * 按对外文件名的扩展名查找内容类型（内容寻址的文件在磁盘上没有扩展名），先查内置映射，找不到时才探测文件
+     */
+    private MediaType contentTypeOf(String name, Path filePath) {
+        int dot = name.lastIndexOf('.');
+        if (dot < 0) {
+            return MediaType.APPLICATION_OCTET_STREAM;
+        }
+        String extension = name.substring(dot + 1).toLowerCase(Locale.ROOT);
+        MediaType mapped = contentTypeCache.get(extension, ext -> MediaTypeFactory.getMediaType(name).orElse(null));
+        if (mapped != null) {
+            return mapped;
+        }
+        // 映射中没有的扩展名逐个探测文件，探测结果只对这个文件成立，不放入按扩展名的缓存
         try {
-            Path filePath = Paths.get(UPLOAD_DIR + filename);
-            
-            if (!Files.exists(filePath)) {
-                return ResponseEntity.notFound().build();
-            }
-            
-            byte[] data = Files.readAllBytes(filePath);
-            String contentType = Files.probeContentType(filePath);
-            
-            return ResponseEntity.ok()
-                    .header("Content-Type", contentType != null ? contentType : "application/octet-stream")
-                    .body(data);
-                    
-        } catch (IOException e) {
-            log.error("图片获取失败: {}", filename, e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+            String probed = Files.probeContentType(filePath);
+            return probed != null ? MediaType.parseMediaType(probed) : MediaType.APPLICATION_OCTET_STREAM;
+        } catch (IOException | IllegalArgumentException e) {
+            return MediaType.APPLICATION_OCTET_STREAM;
         }
     }
     
@@ -144,15 +264,12 @@ public class FileController {
             @RequestHeader("X-User-ID") Long userId) {
         
         try {
-            Path filePath = Paths.get(UPLOAD_DIR + filename);
-            
-            if (!Files.exists(filePath)) {
+            // 只释放该用户上传时的引用，最后一个引用释放时才真正删除文件，仍被消息引用的文件保留
+            if (!attachmentStore.delete(filename, userId)) {
                 Map<String, Object> errorMap = new HashMap<>();
-                errorMap.put("error", "文件不存在");
+                errorMap.put("error", "文件不存在或已删除");
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorMap);
             }
-            
-            Files.delete(filePath);
             log.info("用户 {} 删除文件: {}", userId, filename);
             
             Map<String, Object> resultMap = new HashMap<>();
@@ -1,5 +1,6 @@
 package com.chatapp.message.controller;
 
+import com.chatapp.message.dto.MessageCursorPage;
 import com.chatapp.message.dto.MessageDTO;
 import com.chatapp.message.dto.MessageQueryParams;
 import com.chatapp.message.dto.MessageRequest;
@@ -131,6 +132,20 @@ public class MessageController {
         }
     }
     
+    /**
+     * 基于游标获取私聊历史记录（向前翻页，不统计总数），size 必须大于0，超过100时按100返回
+     */
+    @GetMapping("/private/history")
+    public ResponseEntity<MessageCursorPage> getPrivateMessagesHistory(@RequestParam("userId") Long userId,
+                                                                       @RequestParam("friendId") Long friendId,
+                                                                       @RequestParam(value = "before", required = false) String before,
+                                                                       @RequestParam(defaultValue = "50") int size) {
+        log.info("基于游标查询用户 {} 和用户 {} 的私聊历史, 游标: {}, 大小: {}", userId, friendId, before, size);
+        
+        MessageCursorPage messages = messageService.getPrivateMessagesBefore(userId, friendId, before, size);
+        return ResponseEntity.ok(messages);
+    }
+    
     /**
      * 获取群聊历史记录（分页）
      */
@@ -0,0 +1,35 @@
+package com.chatapp.message.dto;
+
+import lombok.Data;
+
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Pattern;
+import javax.validation.constraints.Positive;
+
+/**
+ * 创建分片上传请求DTO
+ */
+@Data
+public class ChunkedUploadInitRequest {
+    
+    @NotBlank(message = "文件名不能为空")
+    private String filename;
+    
+    private String contentType;
+    
+    @NotNull(message = "文件大小不能为空")
+    @Positive(message = "文件大小必须大于0")
+    private Long size;
+    
+    /**
+     * 期望的分片大小，为空时使用服务端默认值
+     */
+    private Integer chunkSize;
+    
+    /**
+     * 整个文件的SHA-256（十六进制），可选，提供时完成上传前校验整个文件
+     */
+    @Pattern(regexp = "[0-9a-fA-F]{64}", message = "sha256格式不正确")
+    private String sha256;
+}
@@ -0,0 +1,34 @@
+package com.chatapp.message.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 基于游标的消息分页结果
+ * 不统计总数，客户端通过nextCursor继续向前翻页
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageCursorPage {
+
+    /**
+     * 本页消息，按时间正序排列（最早的在前面）
+     */
+    private List<MessageDTO> messages;
+
+    /**
+     * 下一页游标（用作下次请求的before参数），没有更早的消息时为null
+     */
+    private String nextCursor;
+
+    /**
+     * 是否还有更早的消息
+     */
+    private boolean hasMore;
+}
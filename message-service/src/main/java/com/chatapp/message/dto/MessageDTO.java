@@ -93,6 +93,7 @@ public class MessageDTO {
                 .id(this.id)
                 .senderId(this.senderId)
                 .receiverId(this.receiverId)
+                .conversationKey(Message.conversationKeyOf(messageTypeEnum, this.senderId, this.receiverId))
                 .content(this.content)
                 .contentType(contentTypeEnum)
                 .messageType(messageTypeEnum)
@@ -0,0 +1,126 @@
+package com.chatapp.message.job;
+
+import com.chatapp.message.model.Message;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.List;
+
+/**
+ * 会话键回填任务
+ * 为历史消息补充 conversationKey 字段，按 _id 顺序分页扫描一遍，不会重复扫描已处理的区间。
+ * 全部回填完成后写入 job_markers 标记，多实例和重启后不再执行；回填完成前历史查询同时匹配旧的收发方条件。
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ConversationKeyBackfillJob {
+
+    public static final String MARKER_ID = "conversation-key-backfill";
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${message.backfill.conversation-key.enabled:true}")
+    private boolean enabled;
+
+    @Value("${message.backfill.conversation-key.batch-size:500}")
+    private int batchSize;
+
+    private volatile boolean completed = false;
+
+    @PostConstruct
+    public void init() {
+        completed = JobMarkers.isDone(mongoTemplate, MARKER_ID);
+    }
+
+    /**
+     * 所有消息是否都已有会话键（可能由其他实例完成）
+     */
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    /**
+     * 启动30秒后开始回填，每轮从头按 _id 扫描一遍缺失会话键的消息；
+     * 关闭回填的实例也会读取标记，以便得知其他实例已经完成
+     */
+    @Scheduled(initialDelay = 30000, fixedDelay = 300000)
+    public void backfill() {
+        if (completed) {
+            return;
+        }
+        if (JobMarkers.isDone(mongoTemplate, MARKER_ID)) {
+            completed = true;
+            return;
+        }
+        if (!enabled) {
+            return;
+        }
+
+        long total = 0;
+        try {
+            // 新写入的消息都带会话键，扫描到末尾即说明全部回填完成
+            String lastId = null;
+            List<Message> batch;
+            do {
+                batch = nextBatch(lastId);
+                if (!batch.isEmpty()) {
+                    total += backfillBatch(batch);
+                    lastId = batch.get(batch.size() - 1).getId();
+                }
+            } while (batch.size() >= batchSize);
+
+            JobMarkers.markDone(mongoTemplate, MARKER_ID);
+            completed = true;
+            log.info("会话键回填完成，本轮共更新 {} 条消息", total);
+        } catch (Exception e) {
+            log.error("会话键回填失败，已更新 {} 条消息，下次调度继续: {}", total, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 按 _id 升序取 lastId 之后缺少会话键的下一批消息，走 _id 索引区间，每批只扫描新的区间
+     */
+    private List<Message> nextBatch(String lastId) {
+        Criteria criteria = Criteria.where("conversationKey").exists(false);
+        if (lastId != null) {
+            criteria.and("id").gt(lastId);
+        }
+        Query query = new Query(criteria).with(Sort.by(Sort.Direction.ASC, "id")).limit(batchSize);
+        query.fields().include("senderId").include("receiverId").include("messageType");
+        return mongoTemplate.find(query, Message.class);
+    }
+
+    /**
+     * 回填一批消息
+     *
+     * @return 本批处理的消息数量
+     */
+    private int backfillBatch(List<Message> messages) {
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Message.class);
+        int pending = 0;
+        for (Message message : messages) {
+            String conversationKey = Message.conversationKeyOf(
+                    message.getMessageType(), message.getSenderId(), message.getReceiverId());
+            // 缺少收发方的异常数据写入空字符串，避免被反复扫描
+            bulkOps.updateOne(
+                    new Query(Criteria.where("id").is(message.getId())),
+                    new Update().set("conversationKey", conversationKey != null ? conversationKey : ""));
+            pending++;
+        }
+        bulkOps.execute();
+
+        log.debug("会话键回填批次完成: {} 条", pending);
+        return pending;
+    }
+}
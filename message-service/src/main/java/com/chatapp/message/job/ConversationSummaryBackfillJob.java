@@ -0,0 +1,239 @@
+package com.chatapp.message.job;
+
+import com.chatapp.message.model.Conversation;
+import com.chatapp.message.model.Message;
+import com.chatapp.message.model.ReadWatermark;
+import com.chatapp.message.repository.ReadWatermarkRepository;
+import com.chatapp.message.service.impl.ConversationProjector;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 会话摘要回填任务
+ * 会话摘要只在新消息写入时由 ConversationProjector 维护，历史私聊没有摘要行，不会出现在最近聊天列表中。
+ * 本任务从 messages 按 (会话, 接收者) 聚合出最后一条消息和未读数，为收发双方补齐摘要行，完成后写入标记不再执行。
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ConversationSummaryBackfillJob {
+
+    public static final String MARKER_ID = "conversation-summary-backfill";
+
+    private final MongoTemplate mongoTemplate;
+    private final ConversationKeyBackfillJob conversationKeyBackfillJob;
+    private final ReadWatermarkRepository readWatermarkRepository;
+
+    @Value("${message.backfill.conversation-summary.enabled:true}")
+    private boolean enabled;
+
+    @Value("${message.backfill.conversation-summary.batch-size:500}")
+    private int batchSize;
+
+    private volatile boolean completed = false;
+
+    /**
+     * 在会话键回填之后执行，依赖 conversationKey 字段
+     */
+    @Scheduled(initialDelay = 60000, fixedDelay = 300000)
+    public void backfill() {
+        if (!enabled || completed) {
+            return;
+        }
+        if (JobMarkers.isDone(mongoTemplate, MARKER_ID)) {
+            completed = true;
+            return;
+        }
+        if (!conversationKeyBackfillJob.isCompleted()) {
+            log.debug("会话键回填尚未完成，会话摘要回填推迟到下次调度");
+            return;
+        }
+
+        long total = 0;
+        try {
+            total = backfillAll();
+            JobMarkers.markDone(mongoTemplate, MARKER_ID);
+            completed = true;
+            log.info("会话摘要回填完成，共处理 {} 个会话行", total);
+        } catch (Exception e) {
+            log.error("会话摘要回填失败，已处理 {} 个会话行，下次调度重新执行: {}", total, e.getMessage(), e);
+        }
+    }
+
+    private long backfillAll() {
+        // 按 (会话, 接收者) 分组：每组取最后一条消息，并统计尚未标记为已读的消息数
+        TypedAggregation<Message> aggregation = Aggregation.newAggregation(Message.class,
+                Aggregation.match(Criteria.where("messageType").is(Message.MessageType.PRIVATE)
+                        .and("conversationKey").ne("")),
+                Aggregation.sort(Sort.by(Sort.Direction.ASC, "conversationKey")
+                        .and(Sort.by(Sort.Direction.DESC, "createTime"))),
+                Aggregation.group("conversationKey", "receiverId")
+                        .first(Aggregation.ROOT).as("lastMessage")
+                        .sum(ConditionalOperators.when(ComparisonOperators.Ne.valueOf("status")
+                                        .notEqualToValue(Message.MessageStatus.READ.name()))
+                                .then(1).otherwise(0)).as("unread"),
+                Aggregation.sort(Sort.Direction.ASC, "_id.conversationKey"))
+                .withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+
+        // 分组结果按会话键排序，同一会话的两个方向相邻，攒齐整个会话后再为双方写入
+        long total = 0;
+        List<ConversationRow> rows = new ArrayList<>(batchSize * 2);
+        try (CloseableIterator<Document> results = mongoTemplate.aggregateStream(aggregation, Document.class)) {
+            Map<String, List<Document>> byConversation = new LinkedHashMap<>();
+            while (results.hasNext()) {
+                Document group = results.next();
+                String conversationKey = ((Document) group.get("_id")).getString("conversationKey");
+                if (!byConversation.containsKey(conversationKey) && byConversation.size() >= batchSize) {
+                    total += writeRows(toRows(byConversation, rows));
+                    byConversation.clear();
+                    rows.clear();
+                }
+                byConversation.computeIfAbsent(conversationKey, k -> new ArrayList<>(2)).add(group);
+            }
+            total += writeRows(toRows(byConversation, rows));
+        }
+        return total;
+    }
+
+    /**
+     * 每个会话为双方各生成一行：最后一条消息取两个方向中较新的一条，未读数只计对方发给自己的消息
+     */
+    private List<ConversationRow> toRows(Map<String, List<Document>> byConversation, List<ConversationRow> rows) {
+        for (List<Document> groups : byConversation.values()) {
+            Message last = null;
+            Map<Long, Integer> unreadByReceiver = new HashMap<>();
+            for (Document group : groups) {
+                Message message = mongoTemplate.getConverter().read(Message.class, (Document) group.get("lastMessage"));
+                if (last == null || message.getCreateTime().isAfter(last.getCreateTime())) {
+                    last = message;
+                }
+                unreadByReceiver.put(message.getReceiverId(), group.getInteger("unread", 0));
+            }
+            if (last == null || last.getSenderId() == null || last.getReceiverId() == null
+                    || last.getSenderId() == 0L || last.getCreateTime() == null) {
+                continue;
+            }
+            String preview = ConversationProjector.previewOf(last);
+            rows.add(new ConversationRow(last.getSenderId(), last.getReceiverId(), last.getConversationKey(),
+                    preview, last.getCreateTime(), unreadByReceiver.getOrDefault(last.getSenderId(), 0)));
+            if (!last.getSenderId().equals(last.getReceiverId())) {
+                rows.add(new ConversationRow(last.getReceiverId(), last.getSenderId(), last.getConversationKey(),
+                        preview, last.getCreateTime(), unreadByReceiver.getOrDefault(last.getReceiverId(), 0)));
+            }
+        }
+        return rows;
+    }
+
+    private int writeRows(List<ConversationRow> rows) {
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        applyWatermarks(rows);
+
+        LocalDateTime now = LocalDateTime.now();
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Conversation.class);
+        for (ConversationRow row : rows) {
+            // 已由新消息创建的摘要行保留其最后消息；未读数以消息集合为准直接覆盖，重复执行结果相同
+            Update update = new Update()
+                    .setOnInsert("lastMessageContent", row.preview)
+                    .setOnInsert("lastMessageTime", row.lastMessageTime)
+                    .setOnInsert("createTime", now)
+                    .set("unreadCount", row.unread)
+                    .set("unread", row.unread > 0)
+                    .set("updateTime", now);
+            bulkOps.upsert(
+                    new Query(Criteria.where("userId").is(row.userId).and("friendId").is(row.friendId)),
+                    update);
+        }
+        bulkOps.execute();
+        log.debug("会话摘要回填批次完成: {} 行", rows.size());
+        return rows.size();
+    }
+
+    /**
+     * 上线后已通过水位标记已读的会话，只统计水位之后的消息
+     */
+    private void applyWatermarks(List<ConversationRow> rows) {
+        List<Long> userIds = rows.stream().filter(row -> row.unread > 0)
+                .map(row -> row.userId).distinct().collect(Collectors.toList());
+        if (userIds.isEmpty()) {
+            return;
+        }
+        List<String> keys = rows.stream().map(row -> row.conversationKey).distinct().collect(Collectors.toList());
+        keys.add(ReadWatermark.ALL_CONVERSATIONS);
+
+        Map<String, LocalDateTime> watermarks = new HashMap<>();
+        for (ReadWatermark watermark : readWatermarkRepository.findByUserIdInAndConversationKeyIn(userIds, keys)) {
+            if (watermark.getLastReadTime() != null) {
+                watermarks.put(watermark.getUserId() + ":" + watermark.getConversationKey(), watermark.getLastReadTime());
+            }
+        }
+        if (watermarks.isEmpty()) {
+            return;
+        }
+
+        for (ConversationRow row : rows) {
+            if (row.unread == 0) {
+                continue;
+            }
+            LocalDateTime watermark = later(watermarks.get(row.userId + ":" + row.conversationKey),
+                    watermarks.get(row.userId + ":" + ReadWatermark.ALL_CONVERSATIONS));
+            if (watermark != null) {
+                row.unread = (int) mongoTemplate.count(new Query(Criteria.where("conversationKey").is(row.conversationKey)
+                        .and("receiverId").is(row.userId)
+                        .and("createTime").gt(watermark)
+                        .and("status").ne(Message.MessageStatus.READ)), Message.class);
+            }
+        }
+    }
+
+    private static LocalDateTime later(LocalDateTime a, LocalDateTime b) {
+        if (a == null) {
+            return b;
+        }
+        return b == null || a.isAfter(b) ? a : b;
+    }
+
+    private static class ConversationRow {
+        private final Long userId;
+        private final Long friendId;
+        private final String conversationKey;
+        private final String preview;
+        private final LocalDateTime lastMessageTime;
+        private int unread;
+
+        ConversationRow(Long userId, Long friendId, String conversationKey, String preview,
+                        LocalDateTime lastMessageTime, int unread) {
+            this.userId = userId;
+            this.friendId = friendId;
+            this.conversationKey = conversationKey;
+            this.preview = preview;
+            this.lastMessageTime = lastMessageTime;
+            this.unread = unread;
+        }
+    }
+}
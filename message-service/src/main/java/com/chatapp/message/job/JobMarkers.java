@@ -0,0 +1,29 @@
+package com.chatapp.message.job;
+
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.Date;
+
+/**
+ * 一次性任务的完成标记，保存在 job_markers 集合中，多实例和重启后都不会重复执行
+ */
+final class JobMarkers {
+
+    static final String COLLECTION = "job_markers";
+
+    private JobMarkers() {
+    }
+
+    static boolean isDone(MongoTemplate mongoTemplate, String markerId) {
+        return mongoTemplate.exists(new Query(Criteria.where("_id").is(markerId)), COLLECTION);
+    }
+
+    static void markDone(MongoTemplate mongoTemplate, String markerId) {
+        mongoTemplate.upsert(new Query(Criteria.where("_id").is(markerId)),
+                new Update().set("completedAt", new Date()), Document.class, COLLECTION);
+    }
+}
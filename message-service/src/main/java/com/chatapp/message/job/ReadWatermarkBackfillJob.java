@@ -0,0 +1,109 @@
+package com.chatapp.message.job;
+
+import com.chatapp.message.model.Message;
+import com.chatapp.message.model.ReadWatermark;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Date;
+
+/**
+ * 已读水位回填任务
+ * 未读状态改为由已读水位推导后，历史消息只有 status=READ 而没有水位。
+ * 本任务按 (接收者, 会话) 取已读消息的最大创建时间作为初始水位，$max 写入，不会回退上线后推进的水位；
+ * 完成后写入标记不再执行。
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ReadWatermarkBackfillJob {
+
+    public static final String MARKER_ID = "read-watermark-backfill";
+
+    private final MongoTemplate mongoTemplate;
+    private final ConversationKeyBackfillJob conversationKeyBackfillJob;
+
+    @Value("${message.backfill.read-watermark.enabled:true}")
+    private boolean enabled;
+
+    @Value("${message.backfill.read-watermark.batch-size:500}")
+    private int batchSize;
+
+    private volatile boolean completed = false;
+
+    @Scheduled(initialDelay = 30000, fixedDelay = 300000)
+    public void backfill() {
+        if (!enabled || completed) {
+            return;
+        }
+        if (JobMarkers.isDone(mongoTemplate, MARKER_ID)) {
+            completed = true;
+            return;
+        }
+        if (!conversationKeyBackfillJob.isCompleted()) {
+            log.debug("会话键回填尚未完成，已读水位回填推迟到下次调度");
+            return;
+        }
+
+        long total = 0;
+        try {
+            TypedAggregation<Message> aggregation = Aggregation.newAggregation(Message.class,
+                    Aggregation.match(Criteria.where("messageType").is(Message.MessageType.PRIVATE)
+                            .and("status").is(Message.MessageStatus.READ)
+                            .and("conversationKey").ne("")),
+                    Aggregation.group("receiverId", "conversationKey").max("createTime").as("lastReadTime"))
+                    .withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+
+            LocalDateTime now = LocalDateTime.now();
+            BulkOperations bulkOps = null;
+            int pending = 0;
+            try (CloseableIterator<Document> results = mongoTemplate.aggregateStream(aggregation, Document.class)) {
+                while (results.hasNext()) {
+                    Document group = results.next();
+                    Document id = (Document) group.get("_id");
+                    Date lastReadTime = group.getDate("lastReadTime");
+                    if (id.get("receiverId") == null || lastReadTime == null) {
+                        continue;
+                    }
+                    if (bulkOps == null) {
+                        bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ReadWatermark.class);
+                    }
+                    bulkOps.upsert(
+                            new Query(Criteria.where("userId").is(((Number) id.get("receiverId")).longValue())
+                                    .and("conversationKey").is(id.getString("conversationKey"))),
+                            new Update().max("lastReadTime", lastReadTime).setOnInsert("updateTime", now));
+                    if (++pending >= batchSize) {
+                        bulkOps.execute();
+                        total += pending;
+                        pending = 0;
+                        bulkOps = null;
+                    }
+                }
+            }
+            if (bulkOps != null) {
+                bulkOps.execute();
+                total += pending;
+            }
+
+            JobMarkers.markDone(mongoTemplate, MARKER_ID);
+            completed = true;
+            log.info("已读水位回填完成，共写入 {} 条水位", total);
+        } catch (Exception e) {
+            log.error("已读水位回填失败，已写入 {} 条水位，下次调度重新执行: {}", total, e.getMessage(), e);
+        }
+    }
+}
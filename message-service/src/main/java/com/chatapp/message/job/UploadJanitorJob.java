@@ -0,0 +1,38 @@
+package com.chatapp.message.job;
+
+import com.chatapp.message.service.ChunkedUploadService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * 分片上传清理任务
+ * 删除超过有效期仍未完成的上传会话及其临时文件、分片暂存文件，以及早于有效期的遗留分片暂存文件
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class UploadJanitorJob {
+
+    private final ChunkedUploadService chunkedUploadService;
+
+    @Value("${message.upload.session-ttl:24h}")
+    private Duration sessionTtl;
+
+    @Scheduled(initialDelay = 60000, fixedDelayString = "${message.upload.janitor-interval-ms:600000}")
+    public void expireAbandonedUploads() {
+        try {
+            int expired = chunkedUploadService.expireStaleUploads(LocalDateTime.now().minus(sessionTtl));
+            if (expired > 0) {
+                log.info("已清理 {} 个过期的分片上传", expired);
+            }
+        } catch (Exception e) {
+            log.error("清理过期分片上传失败: {}", e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.chatapp.message.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+
+/**
+ * 按内容寻址存储的附件
+ * 以文件内容的SHA-256为主键，refCount 为上传者数与引用该文件的消息数之和，降为0时删除文件
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "attachment_blobs")
+public class AttachmentBlob {
+    /**
+     * 文件内容的SHA-256（十六进制）
+     */
+    @Id
+    private String id;
+    
+    private long size;
+    
+    private long refCount;
+    
+    /**
+     * 上传过该内容的用户，每个用户只持有一次上传引用
+     */
+    private Set<Long> uploaders;
+    
+    /**
+     * 每次增减引用时递增，删除文件前据此确认期间没有新的上传或引用
+     */
+    private long generation;
+    
+    private LocalDateTime createTime;
+    
+    private LocalDateTime updateTime;
+}
@@ -20,7 +20,8 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @CompoundIndexes({
-    @CompoundIndex(name = "userId_friendId", def = "{'userId': 1, 'friendId': 1}", unique = true)
+    @CompoundIndex(name = "userId_friendId", def = "{'userId': 1, 'friendId': 1}", unique = true),
+    @CompoundIndex(name = "userId_lastMessageTime", def = "{'userId': 1, 'lastMessageTime': -1}")
 })
 public class Conversation {
     
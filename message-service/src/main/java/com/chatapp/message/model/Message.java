@@ -5,6 +5,9 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 
@@ -16,6 +19,12 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "messages")
+@CompoundIndexes({
+    // 会话历史查询：conversationKey 定位会话，(create_time, _id) 作为游标键
+    @CompoundIndex(name = "conversationKey_time_id", def = "{'conversationKey': 1, 'create_time': -1, '_id': -1}"),
+    // 未读消息查询：接收者的已读水位之后的消息
+    @CompoundIndex(name = "receiverId_time", def = "{'receiverId': 1, 'create_time': -1}")
+})
 public class Message {
     @Id
     private String id;
@@ -24,6 +33,12 @@ public class Message {
     
     private Long receiverId;
     
+    /**
+     * 会话键：私聊为 p_{较小用户ID}_{较大用户ID}，群聊为 g_{群组ID}
+     * 使两个方向的私聊消息落在同一个索引区间内
+     */
+    private String conversationKey;
+    
     private String content;
     
     private ContentType contentType;
@@ -42,6 +57,53 @@ public class Message {
     
     private List<String> attachments;
     
+    /**
+     * 发件箱标记：为true表示消息尚未投递到RabbitMQ，投递成功后该字段被移除
+     * 使用稀疏索引，索引中只包含待投递的消息
+     */
+    @Indexed(name = "outboxPending", sparse = true)
+    private Boolean outboxPending;
+    
+    /**
+     * 发件箱认领信息：多实例同时轮询时，只有认领成功的实例投递该消息，
+     * 认领超过租约时间仍未完成（实例崩溃）的消息可被其他实例重新认领
+     */
+    private String outboxClaimedBy;
+    
+    private LocalDateTime outboxClaimedAt;
+    
+    /**
+     * 计算私聊会话键，与发送方向无关
+     */
+    public static String privateConversationKey(Long userId1, Long userId2) {
+        long low = Math.min(userId1, userId2);
+        long high = Math.max(userId1, userId2);
+        return "p_" + low + "_" + high;
+    }
+    
+    /**
+     * 计算群聊会话键
+     */
+    public static String groupConversationKey(Long groupId) {
+        return "g_" + groupId;
+    }
+    
+    /**
+     * 根据消息类型和收发双方计算会话键
+     */
+    public static String conversationKeyOf(MessageType messageType, Long senderId, Long receiverId) {
+        if (receiverId == null) {
+            return null;
+        }
+        if (messageType == MessageType.GROUP) {
+            return groupConversationKey(receiverId);
+        }
+        if (senderId == null) {
+            return null;
+        }
+        return privateConversationKey(senderId, receiverId);
+    }
+    
     public enum ContentType {
         TEXT, IMAGE, FILE, AUDIO, VIDEO
     }
@@ -51,6 +113,30 @@ public class Message {
     }
     
     public enum MessageStatus {
-        SENDING, SENT, DELIVERED, READ, FAILED
+        SENDING, SENT, DELIVERED, READ, FAILED;
+        
+        /**
+         * 允许迁移到当前状态的前置状态，状态只前进不回退（如READ不会被降级为DELIVERED）
+         */
+        public List<MessageStatus> predecessors() {
+            switch (this) {
+                case SENT:
+                    return List.of(SENDING);
+                case DELIVERED:
+                case FAILED:
+                    return List.of(SENDING, SENT);
+                case READ:
+                    return List.of(SENDING, SENT, DELIVERED);
+                default:
+                    return List.of();
+            }
+        }
+        
+        /**
+         * 当前状态是否可以覆盖另一个状态
+         */
+        public boolean supersedes(MessageStatus other) {
+            return other == null || predecessors().contains(other);
+        }
     }
 } 
\ No newline at end of file
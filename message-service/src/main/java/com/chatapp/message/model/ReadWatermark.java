@@ -0,0 +1,44 @@
+package com.chatapp.message.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * 已读水位实体
+ * 记录用户在某个会话中已读到的时间点，早于或等于该时间的消息视为已读，
+ * 打开会话只需更新一条水位记录，不再批量改写消息状态。
+ */
+@Document(collection = "read_watermarks")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@CompoundIndexes({
+    @CompoundIndex(name = "userId_conversationKey", def = "{'userId': 1, 'conversationKey': 1}", unique = true)
+})
+public class ReadWatermark {
+    
+    /**
+     * 用户全部会话的水位使用的会话键（标记全部已读）
+     */
+    public static final String ALL_CONVERSATIONS = "*";
+    
+    @Id
+    private String id;
+    
+    private Long userId;
+    
+    private String conversationKey;
+    
+    private LocalDateTime lastReadTime;
+    
+    private LocalDateTime updateTime;
+}
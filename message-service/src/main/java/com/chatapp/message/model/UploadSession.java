@@ -0,0 +1,70 @@
+package com.chatapp.message.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+
+/**
+ * 分片上传会话
+ * 记录一次可续传上传的文件信息和已收到的分片，分片数据直接写入预分配的临时文件
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "upload_sessions")
+public class UploadSession {
+    @Id
+    private String id;
+    
+    private Long uploaderId;
+    
+    private String originalName;
+    
+    private String contentType;
+    
+    private long size;
+    
+    private int chunkSize;
+    
+    private int totalChunks;
+    
+    /**
+     * 客户端声明的整个文件的SHA-256，为空时只校验分片
+     */
+    private String sha256;
+    
+    /**
+     * 已写入并通过校验的分片序号
+     */
+    private Set<Integer> receivedChunks;
+    
+    private LocalDateTime createTime;
+    
+    /**
+     * 最后一次收到分片的时间，清理任务据此过期被放弃的上传
+     */
+    @Indexed(name = "updateTime")
+    private LocalDateTime updateTime;
+    
+    /**
+     * 分片序号对应的文件偏移量
+     */
+    public long offsetOf(int index) {
+        return (long) index * chunkSize;
+    }
+    
+    /**
+     * 分片序号对应的分片长度，最后一个分片可能不足 chunkSize
+     */
+    public int lengthOf(int index) {
+        return (int) Math.min(chunkSize, size - offsetOf(index));
+    }
+}
@@ -0,0 +1,78 @@
+package com.chatapp.message.mq;
+
+import com.chatapp.message.model.Message;
+import com.chatapp.message.service.MessageService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 送达/已读回执聚合器
+ * 在短时间窗口内缓存回执，每条消息只保留最高状态，然后按状态分组批量更新，
+ * 避免大群聊中每条回执都触发一次 findById + save。
+ * 缓冲区只在内存中，回执在进入缓冲区时已被确认（至多一次，见 {@link MessageConsumer}）。
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class DeliveryReceiptAggregator {
+
+    private final MessageService messageService;
+
+    @Value("${message.receipt.max-batch-size:1000}")
+    private int maxBatchSize;
+
+    // 消息ID -> 待写入的最高状态
+    private final ConcurrentHashMap<String, Message.MessageStatus> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 记录一条回执，只有状态前进时才覆盖已缓存的状态
+     */
+    public void record(String messageId, Message.MessageStatus status) {
+        pending.merge(messageId, status, (current, incoming) -> incoming.supersedes(current) ? incoming : current);
+    }
+
+    /**
+     * 按时间窗口批量写入缓存的回执
+     */
+    @Scheduled(fixedDelayString = "${message.receipt.flush-interval-ms:200}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        Map<Message.MessageStatus, List<String>> byStatus = new EnumMap<>(Message.MessageStatus.class);
+        for (String messageId : pending.keySet()) {
+            Message.MessageStatus status = pending.remove(messageId);
+            if (status != null) {
+                byStatus.computeIfAbsent(status, k -> new ArrayList<>()).add(messageId);
+            }
+        }
+
+        byStatus.forEach((status, messageIds) -> {
+            for (int from = 0; from < messageIds.size(); from += maxBatchSize) {
+                List<String> chunk = messageIds.subList(from, Math.min(from + maxBatchSize, messageIds.size()));
+                try {
+                    messageService.updateMessageStatusBatch(chunk, status);
+                } catch (Exception e) {
+                    log.error("批量写入 {} 条 {} 回执失败，重新放回缓冲区: {}", chunk.size(), status, e.getMessage());
+                    chunk.forEach(messageId -> record(messageId, status));
+                }
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+}
@@ -0,0 +1,55 @@
+package com.chatapp.message.mq;
+
+import java.util.List;
+
+/**
+ * 群成员变更事件（由关系服务发布）
+ */
+public class GroupMembershipChangedEvent {
+    private Long groupId;
+    private List<Long> userIds;
+    private String changeType;
+    private Long timestamp;
+
+    public Long getGroupId() {
+        return groupId;
+    }
+
+    public void setGroupId(Long groupId) {
+        this.groupId = groupId;
+    }
+
+    public List<Long> getUserIds() {
+        return userIds;
+    }
+
+    public void setUserIds(List<Long> userIds) {
+        this.userIds = userIds;
+    }
+
+    public String getChangeType() {
+        return changeType;
+    }
+
+    public void setChangeType(String changeType) {
+        this.changeType = changeType;
+    }
+
+    public Long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(Long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return "GroupMembershipChangedEvent{" +
+                "groupId=" + groupId +
+                ", userIds=" + (userIds != null ? userIds.size() : 0) +
+                ", changeType='" + changeType + '\'' +
+                ", timestamp=" + timestamp +
+                '}';
+    }
+}
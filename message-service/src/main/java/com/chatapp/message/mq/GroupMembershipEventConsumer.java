@@ -0,0 +1,36 @@
+package com.chatapp.message.mq;
+
+import com.chatapp.message.config.RabbitMQConfig;
+import com.chatapp.message.service.GroupMembershipService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.ExchangeTypes;
+import org.springframework.amqp.rabbit.annotation.Exchange;
+import org.springframework.amqp.rabbit.annotation.Queue;
+import org.springframework.amqp.rabbit.annotation.QueueBinding;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * 群成员变更事件消费者
+ * 加入/退出/解散群组后立即失效相关用户的群组缓存，最近聊天列表不必等到缓存过期；
+ * 每个服务实例使用独立的临时队列，保证所有实例的本地缓存都被失效
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class GroupMembershipEventConsumer {
+
+    private final GroupMembershipService groupMembershipService;
+
+    @RabbitListener(bindings = @QueueBinding(
+            value = @Queue(exclusive = "true", autoDelete = "true"),
+            exchange = @Exchange(value = RabbitMQConfig.GROUP_EXCHANGE, type = ExchangeTypes.TOPIC),
+            key = RabbitMQConfig.GROUP_MEMBERSHIP_CHANGED_ROUTING_KEY))
+    public void handleMembershipChanged(GroupMembershipChangedEvent event) {
+        log.debug("接收到群成员变更事件: {}", event);
+        if (event.getUserIds() != null) {
+            event.getUserIds().forEach(groupMembershipService::evict);
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package com.chatapp.message.mq;
 
 import com.chatapp.message.model.Message;
-import com.chatapp.message.service.MessageService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
@@ -9,28 +8,33 @@ import org.springframework.stereotype.Component;
 
 /**
  * 消息送达状态消费者
+ * <p>
+ * 投递语义为至多一次：回执交给 {@link DeliveryReceiptAggregator} 缓存后监听方法即返回，消息随即被确认，
+ * 实例在下一次批量写入（默认200毫秒）之前崩溃会丢失缓冲区中的回执；正常停止时会先写入缓冲区。
+ * 丢失的回执只影响单条消息的送达/已读状态显示，未读数由会话已读水位决定，不受影响，
+ * 因此不为每条回执持有未确认的投递直到批量写入完成。
  */
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class MessageConsumer {
 
-    private final MessageService messageService;
+    private final DeliveryReceiptAggregator receiptAggregator;
 
     @RabbitListener(queues = "chat.message.delivery.queue")
     public void handleDeliveryEvent(MessageDeliveryEvent event) {
-        log.info("接收到消息送达事件: {}", event);
+        log.debug("接收到消息送达事件: {}", event);
         
-        // 根据事件类型处理消息状态
+        // 根据事件类型记录回执，由聚合器合并后批量更新
         switch (event.getType()) {
             case DELIVERED:
-                messageService.updateMessageStatus(event.getMessageId(), Message.MessageStatus.DELIVERED);
+                receiptAggregator.record(event.getMessageId(), Message.MessageStatus.DELIVERED);
                 break;
             case READ:
-                messageService.updateMessageStatus(event.getMessageId(), Message.MessageStatus.READ);
+                receiptAggregator.record(event.getMessageId(), Message.MessageStatus.READ);
                 break;
             case FAILED:
-                messageService.updateMessageStatus(event.getMessageId(), Message.MessageStatus.FAILED);
+                receiptAggregator.record(event.getMessageId(), Message.MessageStatus.FAILED);
                 break;
             default:
                 log.warn("未知的送达事件类型: {}", event.getType());
@@ -0,0 +1,243 @@
+package com.chatapp.message.mq;
+
+import com.chatapp.event.MessageEvent;
+import com.chatapp.event.TypedJsonMessageConverter;
+import com.chatapp.message.config.ClusterNode;
+import com.chatapp.message.config.RabbitMQConfig;
+import com.chatapp.message.dto.MessageDTO;
+import com.chatapp.message.model.Message;
+import com.chatapp.message.service.UserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+/**
+ * 消息发件箱中继
+ * 定时拉取带有 outboxPending 标记的消息，先以条件更新认领（多实例下每条消息只由一个实例投递），
+ * 再按创建时间顺序投递到 chat.exchange（私聊消息同时发布 MessageEvent 到 notification.send），
+ * 收到 broker 的 publisher confirm 后才批量移除标记。
+ * 服务崩溃或未收到确认的消息会在租约过期或下次轮询时继续投递（至少一次语义）。
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MessageOutboxRelay {
+
+    private final MongoTemplate mongoTemplate;
+    private final RabbitTemplate rabbitTemplate;
+    private final ClusterNode clusterNode;
+    private final UserService userService;
+    private final ObjectMapper objectMapper;
+
+    private TypedJsonMessageConverter<MessageEvent> eventConverter;
+
+    @Value("${message.outbox.batch-size:200}")
+    private int batchSize;
+
+    @Value("${message.outbox.claim-lease:30s}")
+    private Duration claimLease;
+
+    @Value("${message.outbox.confirm-timeout:5s}")
+    private Duration confirmTimeout;
+
+    @PostConstruct
+    public void init() {
+        // 与通知服务的监听容器使用同一个事件转换器，直接按 MessageEvent 序列化
+        eventConverter = new TypedJsonMessageConverter<>(MessageEvent.class, objectMapper);
+    }
+
+    @Scheduled(fixedDelayString = "${message.outbox.poll-interval-ms:100}")
+    public void relay() {
+        int published;
+        do {
+            published = relayBatch();
+        } while (published >= batchSize);
+    }
+
+    /**
+     * 认领并投递一批待发送消息
+     *
+     * @return 本批确认投递的消息数量
+     */
+    private int relayBatch() {
+        List<Message> claimed = claimBatch();
+        if (claimed.isEmpty()) {
+            return 0;
+        }
+
+        // 私聊消息同时发布新消息事件给通知服务；发送者昵称只取缓存，中继不等待用户服务，未命中时由通知服务兜底
+        Map<Long, Map<String, Object>> senders = userService.getCachedUserBasicInfo(claimed.stream()
+                .filter(message -> message.getMessageType() == Message.MessageType.PRIVATE)
+                .map(Message::getSenderId)
+                .collect(Collectors.toSet()));
+
+        // 按顺序发送，发送失败时停止，剩余消息释放认领留到下次轮询
+        List<Message> sent = new ArrayList<>(claimed.size());
+        List<List<CorrelationData>> confirms = new ArrayList<>(claimed.size());
+        for (Message message : claimed) {
+            String routingKey = message.getMessageType() == Message.MessageType.PRIVATE
+                    ? RabbitMQConfig.PRIVATE_MESSAGE_ROUTING_KEY
+                    : RabbitMQConfig.GROUP_MESSAGE_ROUTING_KEY;
+            List<CorrelationData> correlations = new ArrayList<>(2);
+            try {
+                CorrelationData correlation = new CorrelationData(message.getId());
+                rabbitTemplate.convertAndSend(RabbitMQConfig.CHAT_EXCHANGE, routingKey,
+                        MessageDTO.fromEntity(message), correlation);
+                correlations.add(correlation);
+                if (message.getMessageType() == Message.MessageType.PRIVATE) {
+                    CorrelationData eventCorrelation = new CorrelationData(message.getId() + ":notification");
+                    rabbitTemplate.send(RabbitMQConfig.CHAT_EXCHANGE, RabbitMQConfig.NOTIFICATION_ROUTING_KEY,
+                            eventConverter.toMessage(eventOf(message, senders.get(message.getSenderId())),
+                                    new MessageProperties()),
+                            eventCorrelation);
+                    correlations.add(eventCorrelation);
+                }
+                sent.add(message);
+                confirms.add(correlations);
+            } catch (AmqpException e) {
+                log.error("发件箱消息投递失败，稍后重试: {}, error={}", message.getId(), e.getMessage());
+                break;
+            }
+        }
+
+        // 等待 broker 确认，消息和通知事件都确认成功后才移除发件箱标记
+        List<String> confirmedIds = new ArrayList<>(sent.size());
+        long deadline = System.nanoTime() + confirmTimeout.toNanos();
+        for (int i = 0; i < sent.size(); i++) {
+            boolean acked = true;
+            for (CorrelationData correlation : confirms.get(i)) {
+                acked &= awaitConfirm(correlation, deadline);
+            }
+            if (acked) {
+                confirmedIds.add(sent.get(i).getId());
+            }
+        }
+
+        if (!confirmedIds.isEmpty()) {
+            mongoTemplate.updateMulti(
+                    new Query(Criteria.where("id").in(confirmedIds)),
+                    new Update().unset("outboxPending").unset("outboxClaimedBy").unset("outboxClaimedAt"),
+                    Message.class);
+            log.info("发件箱已投递 {} 条消息到RabbitMQ, 交换机: {}", confirmedIds.size(), RabbitMQConfig.CHAT_EXCHANGE);
+        }
+
+        if (confirmedIds.size() < claimed.size()) {
+            List<String> unconfirmedIds = claimed.stream()
+                    .map(Message::getId)
+                    .filter(id -> !confirmedIds.contains(id))
+                    .collect(Collectors.toList());
+            mongoTemplate.updateMulti(
+                    new Query(Criteria.where("id").in(unconfirmedIds).and("outboxClaimedBy").is(clusterNode.getNodeId())),
+                    new Update().unset("outboxClaimedBy").unset("outboxClaimedAt"),
+                    Message.class);
+            log.warn("发件箱有 {} 条消息未确认投递，已释放认领等待重试", unconfirmedIds.size());
+            // 本轮不再继续拉取，等下一个轮询周期
+            return 0;
+        }
+
+        return confirmedIds.size();
+    }
+
+    /**
+     * 认领一批待投递消息：只认领未被认领或租约已过期的消息，
+     * 条件更新在单个文档上是原子的，两个实例不会同时认领到同一条消息
+     */
+    private List<Message> claimBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        Criteria claimable = Criteria.where("outboxPending").is(true).orOperator(
+                Criteria.where("outboxClaimedAt").exists(false),
+                Criteria.where("outboxClaimedAt").lt(now.minus(claimLease)));
+
+        Query candidatesQuery = new Query(claimable)
+                .with(Sort.by(Sort.Direction.ASC, "createTime"))
+                .limit(batchSize);
+        candidatesQuery.fields().include("id");
+        List<String> candidateIds = mongoTemplate.find(candidatesQuery, Message.class).stream()
+                .map(Message::getId)
+                .collect(Collectors.toList());
+        if (candidateIds.isEmpty()) {
+            return List.of();
+        }
+
+        // 以本次认领的唯一标记回查，只返回确实由本实例认领成功的消息
+        String claimToken = clusterNode.getNodeId() + ":" + UUID.randomUUID();
+        mongoTemplate.updateMulti(
+                new Query(new Criteria().andOperator(Criteria.where("id").in(candidateIds), claimable)),
+                new Update().set("outboxClaimedBy", claimToken).set("outboxClaimedAt", now),
+                Message.class);
+
+        List<Message> claimed = mongoTemplate.find(
+                new Query(Criteria.where("outboxClaimedBy").is(claimToken))
+                        .with(Sort.by(Sort.Direction.ASC, "createTime")),
+                Message.class);
+        if (!claimed.isEmpty()) {
+            // 回查后改回节点ID，便于释放认领和排查
+            mongoTemplate.updateMulti(
+                    new Query(Criteria.where("outboxClaimedBy").is(claimToken)),
+                    new Update().set("outboxClaimedBy", clusterNode.getNodeId()),
+                    Message.class);
+        }
+        return claimed;
+    }
+
+    /**
+     * 通知服务消费的新消息事件
+     */
+    private static MessageEvent eventOf(Message message, Map<String, Object> senderInfo) {
+        Object nickname = senderInfo != null ? senderInfo.get("nickname") : null;
+        return MessageEvent.builder()
+                .messageId(message.getId())
+                .senderId(message.getSenderId())
+                .senderName(nickname != null ? nickname.toString() : null)
+                .receiverId(message.getReceiverId())
+                .messageType(message.getMessageType().name())
+                .contentType(message.getContentType() != null ? message.getContentType().name() : null)
+                .content(message.getContent())
+                .createTime(message.getCreateTime())
+                .build();
+    }
+
+    private boolean awaitConfirm(CorrelationData correlation, long deadline) {
+        try {
+            long remaining = Math.max(0, deadline - System.nanoTime());
+            CorrelationData.Confirm confirm = correlation.getFuture().get(remaining, TimeUnit.NANOSECONDS);
+            if (!confirm.isAck()) {
+                log.error("发件箱消息被broker拒绝: {}, reason={}", correlation.getId(), confirm.getReason());
+            }
+            return confirm.isAck();
+        } catch (TimeoutException e) {
+            log.warn("等待发件箱消息确认超时: {}", correlation.getId());
+            return false;
+        } catch (ExecutionException e) {
+            log.error("等待发件箱消息确认失败: {}, error={}", correlation.getId(), e.getMessage());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
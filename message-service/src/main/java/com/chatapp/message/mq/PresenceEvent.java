@@ -0,0 +1,89 @@
+package com.chatapp.message.mq;
+
+import java.util.List;
+
+/**
+ * 节点间在线状态同步事件
+ */
+public class PresenceEvent {
+
+    public enum Type {
+        // 上个周期内本节点用户的上线/下线变化
+        DELTA,
+        // 节点租约心跳，携带最近一次变化的序号，接收方据此发现丢失的变化
+        HEARTBEAT,
+        // 节点本地在线用户的全量快照
+        SNAPSHOT,
+        // 请求目标节点（为空时为所有节点）发送全量快照
+        SYNC_REQUEST,
+        // 节点正常下线，其他节点立即移除它的所有用户
+        LEAVE
+    }
+
+    private Type type;
+    private String nodeId;
+    private String targetNodeId;
+    private long seq;
+    private List<String> online;
+    private List<String> offline;
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public String getTargetNodeId() {
+        return targetNodeId;
+    }
+
+    public void setTargetNodeId(String targetNodeId) {
+        this.targetNodeId = targetNodeId;
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public void setSeq(long seq) {
+        this.seq = seq;
+    }
+
+    public List<String> getOnline() {
+        return online;
+    }
+
+    public void setOnline(List<String> online) {
+        this.online = online;
+    }
+
+    public List<String> getOffline() {
+        return offline;
+    }
+
+    public void setOffline(List<String> offline) {
+        this.offline = offline;
+    }
+
+    @Override
+    public String toString() {
+        return "PresenceEvent{" +
+                "type=" + type +
+                ", nodeId='" + nodeId + '\'' +
+                ", targetNodeId='" + targetNodeId + '\'' +
+                ", seq=" + seq +
+                ", online=" + (online != null ? online.size() : 0) +
+                ", offline=" + (offline != null ? offline.size() : 0) +
+                '}';
+    }
+}
@@ -0,0 +1,35 @@
+package com.chatapp.message.mq;
+
+import com.chatapp.message.config.RabbitMQConfig;
+import com.chatapp.message.service.impl.ClusterPresenceService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.ExchangeTypes;
+import org.springframework.amqp.rabbit.annotation.Exchange;
+import org.springframework.amqp.rabbit.annotation.Queue;
+import org.springframework.amqp.rabbit.annotation.QueueBinding;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * 在线状态同步事件消费者
+ * 每个服务实例使用独立的临时队列，所有实例都维护完整的在线状态副本
+ */
+@Component
+@ConditionalOnProperty(name = "message.websocket.cluster.enabled", havingValue = "true", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class PresenceEventConsumer {
+
+    private final ClusterPresenceService presenceService;
+
+    @RabbitListener(bindings = @QueueBinding(
+            value = @Queue(exclusive = "true", autoDelete = "true"),
+            exchange = @Exchange(value = RabbitMQConfig.CHAT_EXCHANGE, type = ExchangeTypes.TOPIC),
+            key = RabbitMQConfig.PRESENCE_ROUTING_KEY))
+    public void handlePresenceEvent(PresenceEvent event) {
+        log.debug("接收到在线状态事件: {}", event);
+        presenceService.applyRemoteEvent(event);
+    }
+}
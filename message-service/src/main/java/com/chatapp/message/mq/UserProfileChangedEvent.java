@@ -0,0 +1,43 @@
+package com.chatapp.message.mq;
+
+/**
+ * 用户资料变更事件（由用户服务发布）
+ */
+public class UserProfileChangedEvent {
+    private Long userId;
+    private String changeType;
+    private Long timestamp;
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public String getChangeType() {
+        return changeType;
+    }
+
+    public void setChangeType(String changeType) {
+        this.changeType = changeType;
+    }
+
+    public Long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(Long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return "UserProfileChangedEvent{" +
+                "userId=" + userId +
+                ", changeType='" + changeType + '\'' +
+                ", timestamp=" + timestamp +
+                '}';
+    }
+}
@@ -0,0 +1,35 @@
+package com.chatapp.message.mq;
+
+import com.chatapp.message.config.RabbitMQConfig;
+import com.chatapp.message.service.UserService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.annotation.Exchange;
+import org.springframework.amqp.rabbit.annotation.Queue;
+import org.springframework.amqp.rabbit.annotation.QueueBinding;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.core.ExchangeTypes;
+import org.springframework.stereotype.Component;
+
+/**
+ * 用户资料变更事件消费者
+ * 每个服务实例使用独立的临时队列，保证所有实例的本地缓存都被失效
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class UserProfileEventConsumer {
+
+    private final UserService userService;
+
+    @RabbitListener(bindings = @QueueBinding(
+            value = @Queue(exclusive = "true", autoDelete = "true"),
+            exchange = @Exchange(value = RabbitMQConfig.USER_EXCHANGE, type = ExchangeTypes.TOPIC),
+            key = "user.profile.changed"))
+    public void handleProfileChanged(UserProfileChangedEvent event) {
+        log.debug("接收到用户资料变更事件: {}", event);
+        if (event.getUserId() != null) {
+            userService.evictUserInfo(event.getUserId());
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.chatapp.message.mq;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 批量用户状态变更事件（由用户服务消费）
+ */
+public class UserStatusBatchEvent {
+    private String status;
+    private List<Long> userIds;
+    // 用户ID -> 状态变化发生的时间（毫秒），用户服务据此丢弃乱序到达的旧状态
+    private Map<Long, Long> changeTimes;
+    private Long timestamp;
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public List<Long> getUserIds() {
+        return userIds;
+    }
+
+    public void setUserIds(List<Long> userIds) {
+        this.userIds = userIds;
+    }
+
+    public Map<Long, Long> getChangeTimes() {
+        return changeTimes;
+    }
+
+    public void setChangeTimes(Map<Long, Long> changeTimes) {
+        this.changeTimes = changeTimes;
+    }
+
+    public Long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(Long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return "UserStatusBatchEvent{" +
+                "status='" + status + '\'' +
+                ", userIds=" + (userIds != null ? userIds.size() : 0) +
+                ", timestamp=" + timestamp +
+                '}';
+    }
+}
@@ -0,0 +1,139 @@
+package com.chatapp.message.mq;
+
+import com.chatapp.message.config.RabbitMQConfig;
+import com.chatapp.message.service.PresenceService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 用户在线状态发布器
+ * 在短时间窗口内合并状态变化，每个用户只保留最后一次状态，按状态分组批量发送给用户服务，
+ * 代替每次上线/下线都同步调用一次用户服务。
+ * 每个用户的状态都带上发生变化时的时间戳，用户服务据此丢弃乱序到达的旧状态；
+ * 发送失败的批次放回待发送集合（已有更新状态的用户以新状态为准），在下一次调度时重试。
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class UserStatusPublisher {
+
+    private static final String ONLINE = "ONLINE";
+    private static final String OFFLINE = "OFFLINE";
+
+    private final RabbitTemplate rabbitTemplate;
+    private final PresenceService presenceService;
+
+    @Value("${message.user-status.max-batch-size:1000}")
+    private int maxBatchSize;
+
+    private final Object lock = new Object();
+
+    // 用户ID -> 最后一次状态
+    private Map<Long, StatusChange> pending = new LinkedHashMap<>();
+
+    public void markOnline(String userId) {
+        record(userId, ONLINE);
+    }
+
+    public void markOffline(String userId) {
+        record(userId, OFFLINE);
+    }
+
+    private void record(String userId, String status) {
+        Long id;
+        try {
+            id = Long.valueOf(userId);
+        } catch (NumberFormatException e) {
+            log.warn("忽略无效的用户ID: {}", userId);
+            return;
+        }
+        StatusChange change = new StatusChange(status, System.currentTimeMillis());
+        synchronized (lock) {
+            pending.merge(id, change, UserStatusPublisher::later);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${message.user-status.flush-interval-ms:500}")
+    public void flush() {
+        Map<Long, StatusChange> batch;
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new LinkedHashMap<>();
+        }
+
+        Map<String, List<Long>> byStatus = new HashMap<>();
+        batch.forEach((userId, change) -> {
+            // 窗口内在其他节点重新连接的用户不再设置离线
+            if (OFFLINE.equals(change.status) && presenceService.isUserOnline(String.valueOf(userId))) {
+                return;
+            }
+            byStatus.computeIfAbsent(change.status, k -> new ArrayList<>()).add(userId);
+        });
+
+        Map<Long, StatusChange> failed = new HashMap<>();
+        byStatus.forEach((status, userIds) -> {
+            for (int from = 0; from < userIds.size(); from += maxBatchSize) {
+                List<Long> chunk = new ArrayList<>(userIds.subList(from, Math.min(from + maxBatchSize, userIds.size())));
+                Map<Long, Long> changeTimes = new LinkedHashMap<>();
+                chunk.forEach(userId -> changeTimes.put(userId, batch.get(userId).time));
+                UserStatusBatchEvent event = new UserStatusBatchEvent();
+                event.setStatus(status);
+                event.setUserIds(chunk);
+                event.setChangeTimes(changeTimes);
+                event.setTimestamp(System.currentTimeMillis());
+                try {
+                    rabbitTemplate.convertAndSend(RabbitMQConfig.USER_EXCHANGE,
+                            RabbitMQConfig.USER_STATUS_BATCH_ROUTING_KEY, event);
+                    log.info("已批量发布用户状态: {}", event);
+                } catch (AmqpException e) {
+                    log.error("批量发布用户状态失败，下次调度重试: {}, error={}", event, e.getMessage());
+                    chunk.forEach(userId -> failed.put(userId, batch.get(userId)));
+                }
+            }
+        });
+
+        if (!failed.isEmpty()) {
+            synchronized (lock) {
+                // 放回期间新记录的状态更晚，保留新状态
+                failed.forEach((userId, change) -> pending.merge(userId, change, UserStatusPublisher::later));
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private static StatusChange later(StatusChange a, StatusChange b) {
+        return b.time >= a.time ? b : a;
+    }
+
+    /**
+     * 某个用户的一次状态变化及其发生时间
+     */
+    private static final class StatusChange {
+        private final String status;
+        private final long time;
+
+        private StatusChange(String status, long time) {
+            this.status = status;
+            this.time = time;
+        }
+    }
+}
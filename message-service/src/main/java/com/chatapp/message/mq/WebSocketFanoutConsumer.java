@@ -0,0 +1,37 @@
+package com.chatapp.message.mq;
+
+import com.chatapp.message.config.RabbitMQConfig;
+import com.chatapp.message.config.WebSocketBroadcaster;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.ExchangeTypes;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.Exchange;
+import org.springframework.amqp.rabbit.annotation.Queue;
+import org.springframework.amqp.rabbit.annotation.QueueBinding;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * 跨节点WebSocket广播消费者
+ * 每个服务实例使用独立的临时队列，保证所有实例都能收到广播
+ */
+@Component
+@ConditionalOnProperty(name = "message.websocket.cluster.enabled", havingValue = "true", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class WebSocketFanoutConsumer {
+
+    private final WebSocketBroadcaster broadcaster;
+
+    @RabbitListener(bindings = @QueueBinding(
+            value = @Queue(exclusive = "true", autoDelete = "true"),
+            exchange = @Exchange(value = RabbitMQConfig.CHAT_EXCHANGE, type = ExchangeTypes.TOPIC),
+            key = RabbitMQConfig.WS_FANOUT_ROUTING_KEY))
+    public void handleFanout(Message message) {
+        WebSocketFanoutEvent event = WebSocketFanoutEvent.fromMessage(message);
+        log.debug("接收到跨节点广播: {}", event);
+        broadcaster.deliverRemote(event);
+    }
+}
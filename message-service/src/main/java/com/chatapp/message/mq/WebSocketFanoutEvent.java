@@ -0,0 +1,110 @@
+package com.chatapp.message.mq;
+
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 跨节点WebSocket广播事件
+ * 由收到消息的节点发布到 chat.exchange，其他节点收到后投递给本节点上的订阅者。
+ * 载荷是已经序列化好的JSON字节，直接作为AMQP消息体传输，接收方不再反序列化和重新序列化。
+ */
+public class WebSocketFanoutEvent {
+
+    private static final String HEADER_ORIGIN_NODE = "x-origin-node";
+    private static final String HEADER_TARGET_TYPE = "x-target-type";
+    private static final String HEADER_DESTINATION = "x-destination";
+    private static final String HEADER_USER_IDS = "x-user-ids";
+
+    /**
+     * 投递目标类型
+     */
+    public enum TargetType {
+        // 话题目的地，如 /topic/group/{groupId}
+        TOPIC,
+        // 用户在各节点上的所有会话队列 /queue/messages-{sessionId}
+        USER_SESSIONS,
+        // Spring用户目的地 /user/{userId}/...
+        USER
+    }
+
+    private final String originNodeId;
+    private final TargetType targetType;
+    private final String destination;
+    private final List<String> userIds;
+    private final byte[] payload;
+
+    public WebSocketFanoutEvent(String originNodeId, TargetType targetType, String destination,
+                                List<String> userIds, byte[] payload) {
+        this.originNodeId = originNodeId;
+        this.targetType = targetType;
+        this.destination = destination;
+        this.userIds = userIds != null ? userIds : Collections.emptyList();
+        this.payload = payload;
+    }
+
+    /**
+     * 转换为AMQP消息，目标信息放在消息头中
+     */
+    public Message toMessage() {
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+        properties.setHeader(HEADER_ORIGIN_NODE, originNodeId);
+        properties.setHeader(HEADER_TARGET_TYPE, targetType.name());
+        if (destination != null) {
+            properties.setHeader(HEADER_DESTINATION, destination);
+        }
+        if (!userIds.isEmpty()) {
+            properties.setHeader(HEADER_USER_IDS, String.join(",", userIds));
+        }
+        return new Message(payload, properties);
+    }
+
+    /**
+     * 从AMQP消息还原广播事件
+     */
+    public static WebSocketFanoutEvent fromMessage(Message message) {
+        MessageProperties properties = message.getMessageProperties();
+        Object userIds = properties.getHeader(HEADER_USER_IDS);
+        return new WebSocketFanoutEvent(
+                String.valueOf(properties.getHeader(HEADER_ORIGIN_NODE)),
+                TargetType.valueOf(String.valueOf(properties.getHeader(HEADER_TARGET_TYPE))),
+                properties.getHeader(HEADER_DESTINATION) != null ? properties.getHeader(HEADER_DESTINATION).toString() : null,
+                userIds != null ? Arrays.asList(userIds.toString().split(",")) : null,
+                message.getBody());
+    }
+
+    public String getOriginNodeId() {
+        return originNodeId;
+    }
+
+    public TargetType getTargetType() {
+        return targetType;
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+
+    public List<String> getUserIds() {
+        return userIds;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    @Override
+    public String toString() {
+        return "WebSocketFanoutEvent{" +
+                "originNodeId='" + originNodeId + '\'' +
+                ", targetType=" + targetType +
+                ", destination='" + destination + '\'' +
+                ", userIds=" + userIds +
+                ", payloadBytes=" + (payload != null ? payload.length : 0) +
+                '}';
+    }
+}
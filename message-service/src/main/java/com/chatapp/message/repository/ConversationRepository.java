@@ -1,6 +1,7 @@
 package com.chatapp.message.repository;
 
 import com.chatapp.message.model.Conversation;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
@@ -23,6 +24,11 @@ public interface ConversationRepository extends MongoRepository<Conversation, St
      */
     List<Conversation> findAllByUserIdOrderByLastMessageTimeDesc(Long userId);
     
+    /**
+     * 获取用户最近的会话（分页），按最后消息时间倒序排列
+     */
+    List<Conversation> findByUserIdOrderByLastMessageTimeDesc(Long userId, Pageable pageable);
+    
     /**
      * 根据用户ID和未读状态查找会话
      */
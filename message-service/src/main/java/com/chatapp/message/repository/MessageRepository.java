@@ -16,12 +16,24 @@ import java.util.List;
 @Repository
 public interface MessageRepository extends MongoRepository<Message, String> {
 
+    /**
+     * 按会话键查询消息历史（私聊和群聊共用同一个索引区间）
+     */
+    Page<Message> findByConversationKeyOrderByCreateTimeDesc(String conversationKey, Pageable pageable);
+
+    /**
+     * 查询私聊消息历史
+     * 两个方向的私聊消息共享同一个会话键，无需 $or 查询
+     */
+    @Query("{'conversationKey': ?0, 'messageType': 'PRIVATE'}")
+    Page<Message> findPrivateMessagesByConversationKey(String conversationKey, Pageable pageable);
+
     /**
      * 查询私聊消息历史
-     * 私聊消息条件：(senderId=用户A AND receiverId=用户B) OR (senderId=用户B AND receiverId=用户A)
      */
-    @Query("{'$or': [{'senderId': ?0, 'receiverId': ?1, 'messageType': 'PRIVATE'}, {'senderId': ?1, 'receiverId': ?0, 'messageType': 'PRIVATE'}]}")
-    Page<Message> findPrivateMessagesBetweenUsers(Long userId1, Long userId2, Pageable pageable);
+    default Page<Message> findPrivateMessagesBetweenUsers(Long userId1, Long userId2, Pageable pageable) {
+        return findPrivateMessagesByConversationKey(Message.privateConversationKey(userId1, userId2), pageable);
+    }
     
     /**
      * 查询某个用户的所有私聊消息
@@ -111,14 +123,6 @@ public interface MessageRepository extends MongoRepository<Message, String> {
     @Query("{'receiverId': {'$in': ?0}, 'messageType': 'GROUP'}")
     List<Message> findRecentGroupMessagesByUserGroups(List<Long> groupIds, Pageable pageable);
     
-    /**
-     * 查询用户参与的群聊最近消息，暂时返回所有群聊消息
-     */
-    default List<Message> findRecentGroupMessagesByUserId(Long userId) {
-        return findByMessageTypeOrderByCreateTimeDesc(Message.MessageType.GROUP, 
-                org.springframework.data.domain.PageRequest.of(0, 20)).getContent();
-    }
-    
     /**
      * 查询指定消息类型的所有消息
      */
@@ -0,0 +1,30 @@
+package com.chatapp.message.repository;
+
+import com.chatapp.message.model.ReadWatermark;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 已读水位仓库接口
+ */
+@Repository
+public interface ReadWatermarkRepository extends MongoRepository<ReadWatermark, String> {
+    
+    /**
+     * 获取用户的所有已读水位
+     */
+    List<ReadWatermark> findByUserId(Long userId);
+    
+    /**
+     * 获取用户在指定会话中的已读水位
+     */
+    Optional<ReadWatermark> findByUserIdAndConversationKey(Long userId, String conversationKey);
+    
+    /**
+     * 获取多个用户在指定会话中的已读水位
+     */
+    List<ReadWatermark> findByUserIdInAndConversationKeyIn(List<Long> userIds, List<String> conversationKeys);
+}
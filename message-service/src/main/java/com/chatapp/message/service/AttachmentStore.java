@@ -0,0 +1,60 @@
+package com.chatapp.message.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Collection;
+
+/**
+ * 附件存储
+ * 文件按内容的SHA-256去重保存，对外的文件名为 {sha256}{扩展名}，
+ * 每个上传者和每条引用该文件的消息各持有一次引用，最后一个引用释放时才删除文件
+ */
+public interface AttachmentStore {
+    
+    /**
+     * 边读取边计算SHA-256并保存，内容相同的文件只保存一份
+     *
+     * @param uploaderId 上传者，同一用户重复上传相同内容只持有一次引用
+     * @return 对外使用的文件名
+     */
+    String store(InputStream content, String originalFilename, Long uploaderId);
+    
+    /**
+     * 保存已经落盘的文件（如分片上传的临时文件），源文件会被移动或删除
+     *
+     * @return 对外使用的文件名
+     */
+    String storeFile(Path source, String originalFilename, Long uploaderId);
+    
+    /**
+     * 解析文件名对应的磁盘路径，文件不存在时返回null
+     */
+    Path resolve(String filename);
+    
+    /**
+     * 派生文件（如缩略图）的存放路径，与原文件放在一起并随原文件一起删除；原文件不存在时返回null
+     *
+     * @param variant 派生文件后缀，如 w128.jpg
+     */
+    Path derivativePath(String filename, String variant);
+    
+    /**
+     * 为消息附件增加引用，附件可以是文件名或下载地址
+     */
+    void retain(Collection<String> attachments);
+    
+    /**
+     * 释放引用，引用数降为0的文件会被删除
+     *
+     * @return 被删除的文件数
+     */
+    int release(Collection<String> attachments);
+    
+    /**
+     * 删除上传的文件：释放该用户上传时持有的引用，旧文件名的文件直接删除
+     *
+     * @return 是否释放了该用户的引用（旧文件名为文件是否已删除），重复删除返回false
+     */
+    boolean delete(String filename, Long uploaderId) throws IOException;
+}
@@ -0,0 +1,44 @@
+package com.chatapp.message.service;
+
+import com.chatapp.message.dto.ChunkedUploadInitRequest;
+import com.chatapp.message.model.UploadSession;
+
+import java.io.InputStream;
+import java.time.LocalDateTime;
+
+/**
+ * 可续传的分片上传服务
+ */
+public interface ChunkedUploadService {
+    
+    /**
+     * 创建上传会话并预分配临时文件
+     */
+    UploadSession initUpload(Long userId, ChunkedUploadInitRequest request);
+    
+    /**
+     * 查询上传会话，客户端据此跳过已上传的分片
+     */
+    UploadSession getUpload(String uploadId, Long userId);
+    
+    /**
+     * 校验分片的长度和SHA-256，通过后写入临时文件的对应偏移量；已收到的分片不会被覆盖
+     *
+     * @param checksum 分片内容的SHA-256（十六进制）
+     */
+    UploadSession writeChunk(String uploadId, Long userId, int index, String checksum, InputStream data);
+    
+    /**
+     * 所有分片到齐后把临时文件交给附件存储并结束会话；创建时提供了整个文件的SHA-256时先校验整个文件
+     *
+     * @return 附件存储中的文件名
+     */
+    String completeUpload(String uploadId, Long userId);
+    
+    /**
+     * 清理在截止时间之前不再有分片写入的上传（含临时文件和分片暂存文件），以及早于截止时间的遗留分片暂存文件
+     *
+     * @return 清理的上传数量
+     */
+    int expireStaleUploads(LocalDateTime cutoff);
+}
@@ -0,0 +1,24 @@
+package com.chatapp.message.service;
+
+import java.util.List;
+
+/**
+ * 群组成员关系服务接口
+ */
+public interface GroupMembershipService {
+    
+    /**
+     * 获取用户所在的群组ID列表（带本地缓存）
+     * 
+     * @param userId 用户ID
+     * @return 群组ID列表
+     */
+    List<Long> getGroupIds(Long userId);
+    
+    /**
+     * 使用户的群组缓存失效
+     * 
+     * @param userId 用户ID
+     */
+    void evict(Long userId);
+}
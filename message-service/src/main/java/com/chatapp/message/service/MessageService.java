@@ -1,5 +1,6 @@
 package com.chatapp.message.service;
 
+import com.chatapp.message.dto.MessageCursorPage;
 import com.chatapp.message.dto.MessageDTO;
 import com.chatapp.message.dto.EncryptedMessageDto;
 import com.chatapp.message.dto.MessageQueryParams;
@@ -21,6 +22,14 @@ public interface MessageService {
      */
     MessageDTO saveMessage(MessageDTO messageDto);
     
+    /**
+     * 异步保存消息（预先分配ID后立即返回，由后台管道批量落库）
+     * 
+     * @param messageDto 消息DTO
+     * @return 已分配ID的消息
+     */
+    MessageDTO saveMessageAsync(MessageDTO messageDto);
+    
     /**
      * 发送消息
      * 
@@ -47,7 +56,7 @@ public interface MessageService {
     MessageDTO updateMessageStatus(String messageId, Message.MessageStatus status);
     
     /**
-     * 批量更新消息状态
+     * 批量更新消息状态（只更新处于前置状态的消息，保证状态单调前进）
      * 
      * @param messageIds 消息ID列表
      * @param status 新状态
@@ -66,6 +75,17 @@ public interface MessageService {
      */
     Page<MessageDTO> getPrivateMessages(Long userId1, Long userId2, int page, int size);
     
+    /**
+     * 基于游标查询私聊历史记录（不统计总数，翻页耗时与翻页深度无关）
+     * 
+     * @param userId1 用户1 ID
+     * @param userId2 用户2 ID
+     * @param before 上一页返回的游标，为空时从最新消息开始
+     * @param size 每页大小
+     * @return 游标分页结果
+     */
+    MessageCursorPage getPrivateMessagesBefore(Long userId1, Long userId2, String before, int size);
+    
     /**
      * 查询群聊历史记录
      * 
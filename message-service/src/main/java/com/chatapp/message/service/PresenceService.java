@@ -0,0 +1,63 @@
+package com.chatapp.message.service;
+
+import java.util.Set;
+
+/**
+ * 在线状态服务接口
+ * 汇总所有消息服务节点上的WebSocket连接，回答用户是否在线
+ */
+public interface PresenceService {
+
+    /**
+     * 用户在本节点上建立了第一个会话
+     *
+     * @param userId 用户ID
+     */
+    void localUserOnline(String userId);
+
+    /**
+     * 立即发布本节点尚未广播的在线状态变化
+     * 用户在本节点建立第一个会话后、CONNECTED 返回给客户端之前调用，
+     * 使其他节点在该会话开始订阅之前就知道需要向本节点投递
+     */
+    void publishLocalChanges();
+
+    /**
+     * 用户在本节点上的最后一个会话已断开
+     *
+     * @param userId 用户ID
+     */
+    void localUserOffline(String userId);
+
+    /**
+     * 用户是否在任意节点上在线，只读本地副本，不发起远程调用
+     *
+     * @param userId 用户ID
+     * @return 是否在线
+     */
+    boolean isUserOnline(String userId);
+
+    /**
+     * 用户是否在本节点以外的节点上在线，用于决定是否需要跨节点投递
+     *
+     * @param userId 用户ID
+     * @return 是否在其他节点上在线
+     */
+    boolean isUserOnlineElsewhere(String userId);
+
+    /**
+     * 用户是否可能在其他节点上在线，用于决定是否需要跨节点投递
+     * 副本尚未同步完整，或用户的在线状态刚刚变化（其他节点的变化可能还没传到本节点）时保守地返回true
+     *
+     * @param userId 用户ID
+     * @return 是否需要向其他节点投递
+     */
+    boolean mayBeOnlineElsewhere(String userId);
+
+    /**
+     * 获取所有节点上的在线用户
+     *
+     * @return 在线用户ID集合
+     */
+    Set<String> getOnlineUsers();
+}
@@ -0,0 +1,38 @@
+package com.chatapp.message.service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 已读水位服务接口
+ */
+public interface ReadWatermarkService {
+    
+    /**
+     * 推进用户在会话中的已读水位（只前进不回退）
+     * 
+     * @param userId 用户ID
+     * @param conversationKey 会话键
+     * @param readTime 已读到的时间
+     * @return 推进前的水位，之前没有水位时返回null
+     */
+    LocalDateTime advance(Long userId, String conversationKey, LocalDateTime readTime);
+    
+    /**
+     * 获取用户的所有已读水位
+     * 
+     * @param userId 用户ID
+     * @return 会话键 -> 已读时间
+     */
+    Map<String, LocalDateTime> getWatermarks(Long userId);
+    
+    /**
+     * 批量获取多个用户在指定会话中的有效水位（会话水位与全局水位取较大值）
+     * 
+     * @param userIds 用户ID列表
+     * @param conversationKey 会话键
+     * @return 用户ID -> 有效水位，没有水位的用户不包含在结果中
+     */
+    Map<Long, LocalDateTime> getEffectiveWatermarks(List<Long> userIds, String conversationKey);
+}
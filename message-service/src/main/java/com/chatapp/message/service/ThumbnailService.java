@@ -0,0 +1,20 @@
+package com.chatapp.message.service;
+
+import java.nio.file.Path;
+
+/**
+ * 图片缩略图服务
+ */
+public interface ThumbnailService {
+    
+    /**
+     * 在后台线程池中为图片生成各尺寸的缩略图，不阻塞调用线程
+     */
+    void generateAsync(String filename);
+    
+    /**
+     * 查找最接近请求宽度的缩略图
+     * 缩略图尚未生成或无法生成时返回null，尚未生成时会安排生成
+     */
+    Path resolve(String filename, int width);
+}
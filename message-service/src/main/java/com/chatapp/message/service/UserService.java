@@ -1,5 +1,6 @@
 package com.chatapp.message.service;
 
+import java.util.Collection;
 import java.util.Map;
 
 /**
@@ -14,4 +15,27 @@ public interface UserService {
      * @return 用户基本信息
      */
     Map<String, Object> getUserBasicInfo(Long userId);
+    
+    /**
+     * 批量获取用户基本信息，未命中缓存的用户通过一次批量请求获取
+     * 
+     * @param userIds 用户ID集合
+     * @return 用户ID到基本信息的映射，获取失败的用户使用默认信息
+     */
+    Map<Long, Map<String, Object>> getUserBasicInfoBatch(Collection<Long> userIds);
+    
+    /**
+     * 只从缓存中获取用户基本信息，不阻塞等待用户服务；未命中的用户在后台加载，供下次使用
+     * 
+     * @param userIds 用户ID集合
+     * @return 缓存中已有的用户ID到基本信息的映射
+     */
+    Map<Long, Map<String, Object>> getCachedUserBasicInfo(Collection<Long> userIds);
+    
+    /**
+     * 使用户信息缓存失效
+     * 
+     * @param userId 用户ID
+     */
+    void evictUserInfo(Long userId);
 } 
\ No newline at end of file
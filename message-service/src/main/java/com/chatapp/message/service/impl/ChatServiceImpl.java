@@ -1,13 +1,20 @@
 package com.chatapp.message.service.impl;
 
+import com.chatapp.message.model.Conversation;
 import com.chatapp.message.model.Message;
-import com.chatapp.message.repository.MessageRepository;
+import com.chatapp.message.repository.ConversationRepository;
 import com.chatapp.message.service.ChatService;
+import com.chatapp.message.service.GroupMembershipService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -20,78 +27,91 @@ import java.util.stream.Collectors;
 @Slf4j
 public class ChatServiceImpl implements ChatService {
 
-    private final MessageRepository messageRepository;
+    private final ConversationRepository conversationRepository;
+    private final GroupMembershipService groupMembershipService;
+    private final MongoTemplate mongoTemplate;
+    
+    // 最近聊天列表中私聊会话的最大数量
+    private static final int RECENT_CONVERSATION_LIMIT = 20;
 
     @Override
     public List<Map<String, Object>> getRecentChats(Long userId) {
         log.info("获取用户{}的最近聊天列表", userId);
         
-        // 获取用户相关的私聊消息
-        List<Message> privateMessages = messageRepository.findRecentPrivateMessagesByUserId(userId);
+        // 私聊：直接读取预聚合的会话摘要（userId_lastMessageTime 索引）
+        List<Conversation> conversations = conversationRepository.findByUserIdOrderByLastMessageTimeDesc(
+                userId, PageRequest.of(0, RECENT_CONVERSATION_LIMIT));
         
-        // 获取用户参与的群聊消息
-        List<Message> groupMessages = messageRepository.findRecentGroupMessagesByUserId(userId);
+        // 获取用户所在每个群组的最后一条消息
+        List<Message> groupMessages = findLastGroupMessages(groupMembershipService.getGroupIds(userId));
         
         // 合并并处理聊天列表
-        return processChatList(userId, privateMessages, groupMessages);
+        return processChatList(conversations, groupMessages);
+    }
+    
+    /**
+     * 一次聚合查询每个群组的最后一条消息
+     * 按 (conversationKey, create_time) 索引顺序排序后取每组第一条，可使用 conversationKey_time_id 索引
+     */
+    private List<Message> findLastGroupMessages(List<Long> groupIds) {
+        if (groupIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        
+        List<String> conversationKeys = groupIds.stream()
+                .map(Message::groupConversationKey)
+                .collect(Collectors.toList());
+        
+        TypedAggregation<Message> aggregation = Aggregation.newAggregation(Message.class,
+                Aggregation.match(Criteria.where("conversationKey").in(conversationKeys)),
+                Aggregation.sort(Sort.by(Sort.Direction.ASC, "conversationKey")
+                        .and(Sort.by(Sort.Direction.DESC, "createTime"))),
+                Aggregation.group("conversationKey").first(Aggregation.ROOT).as("lastMessage"),
+                Aggregation.replaceRoot("lastMessage"));
+        
+        return mongoTemplate.aggregate(aggregation, Message.class).getMappedResults();
     }
     
-    private List<Map<String, Object>> processChatList(Long userId, List<Message> privateMessages, List<Message> groupMessages) {
-        // 存储每个聊天的最后一条消息
-        Map<String, Message> lastMessages = new HashMap<>();
+    private List<Map<String, Object>> processChatList(List<Conversation> conversations, List<Message> groupMessages) {
+        List<Map<String, Object>> chatList = new ArrayList<>();
         
-        // 处理私聊消息
-        for (Message message : privateMessages) {
-            // 确定聊天对象
-            Long chatId = message.getSenderId().equals(userId) ? message.getReceiverId() : message.getSenderId();
-            String chatKey = "private_" + chatId;
-            
-            // 如果尚未记录该聊天的最后消息，或者当前消息比已记录的更新
-            if (!lastMessages.containsKey(chatKey) || 
-                message.getCreateTime().isAfter(lastMessages.get(chatKey).getCreateTime())) {
-                lastMessages.put(chatKey, message);
+        // 处理私聊会话摘要
+        for (Conversation conversation : conversations) {
+            if (conversation.getLastMessageTime() == null) {
+                continue;
             }
+            Long chatId = conversation.getFriendId();
+            Map<String, Object> chatInfo = new HashMap<>();
+            chatInfo.put("id", chatId);
+            chatInfo.put("type", "private");
+            chatInfo.put("name", conversation.getTitle() != null ? conversation.getTitle() : "用户" + chatId);
+            chatInfo.put("lastMessage", conversation.getLastMessageContent());
+            chatInfo.put("lastMessageTime", conversation.getLastMessageTime().toInstant(ZoneOffset.UTC).toEpochMilli());
+            chatInfo.put("unreadCount", conversation.getUnreadCount() != null ? conversation.getUnreadCount() : 0);
+            chatInfo.put("status", "ONLINE"); // 应该从用户服务获取状态
+            chatList.add(chatInfo);
         }
         
-        // 处理群聊消息
-        for (Message message : groupMessages) {
-            String chatKey = "group_" + message.getReceiverId();
-            
-            if (!lastMessages.containsKey(chatKey) || 
-                message.getCreateTime().isAfter(lastMessages.get(chatKey).getCreateTime())) {
-                lastMessages.put(chatKey, message);
-            }
+        // 处理群聊消息，每个群组已只有最后一条消息
+        for (Message lastMessage : groupMessages) {
+            Long groupId = lastMessage.getReceiverId();
+            Map<String, Object> chatInfo = new HashMap<>();
+            chatInfo.put("id", groupId);
+            chatInfo.put("type", "group");
+            chatInfo.put("name", "群组" + groupId);
+            chatInfo.put("lastMessage", lastMessage.getContent());
+            chatInfo.put("lastMessageTime", lastMessage.getCreateTime().toInstant(ZoneOffset.UTC).toEpochMilli());
+            chatInfo.put("status", "ONLINE");
+            chatInfo.put("memberCount", 3); // 应从群组服务获取成员数量
+            chatList.add(chatInfo);
         }
         
-        // 转换为前端需要的格式并按最后消息时间排序
-        return lastMessages.entrySet().stream()
-            .map(entry -> {
-                Map<String, Object> chatInfo = new HashMap<>();
-                Message lastMessage = entry.getValue();
-                String[] chatParts = entry.getKey().split("_");
-                String chatType = chatParts[0];
-                Long chatId = Long.valueOf(chatParts[1]);
-                
-                chatInfo.put("id", chatId);
-                chatInfo.put("type", chatType);
-                
-                // 这里应该从用户服务获取名称，暂时用占位符
-                chatInfo.put("name", chatType.equals("private") ? "用户" + chatId : "群组" + chatId);
-                chatInfo.put("lastMessage", lastMessage.getContent());
-                chatInfo.put("lastMessageTime", lastMessage.getCreateTime().toInstant(ZoneOffset.UTC).toEpochMilli());
-                chatInfo.put("status", "ONLINE"); // 应该从用户服务获取状态
-                
-                if (chatType.equals("group")) {
-                    chatInfo.put("memberCount", 3); // 应从群组服务获取成员数量
-                }
-                
-                return chatInfo;
-            })
-            .sorted((a, b) -> {
-                Long timeA = (Long) a.get("lastMessageTime");
-                Long timeB = (Long) b.get("lastMessageTime");
-                return timeB.compareTo(timeA); // 降序排序
-            })
-            .collect(Collectors.toList());
+        // 按最后消息时间降序排序
+        chatList.sort((a, b) -> {
+            Long timeA = (Long) a.get("lastMessageTime");
+            Long timeB = (Long) b.get("lastMessageTime");
+            return timeB.compareTo(timeA);
+        });
+        return chatList;
     }
 } 
\ No newline at end of file
@@ -0,0 +1,308 @@
+package com.chatapp.message.service.impl;
+
+import com.chatapp.message.dto.ChunkedUploadInitRequest;
+import com.chatapp.message.exception.ResourceNotFoundException;
+import com.chatapp.message.model.UploadSession;
+import com.chatapp.message.service.AttachmentStore;
+import com.chatapp.message.service.ChunkedUploadService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 分片上传服务实现类
+ * 分片先写入暂存文件校验，通过后按偏移量写入预分配的临时文件，不经过multipart缓冲；
+ * 已收到的分片记录在 upload_sessions 中，连接中断后客户端查询会话即可从缺失的分片继续上传。
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ChunkedUploadServiceImpl implements ChunkedUploadService {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final MongoTemplate mongoTemplate;
+    private final AttachmentStore attachmentStore;
+
+    @Value("${message.upload.partial-dir:uploads/.partial/}")
+    private String partialDir;
+
+    @Value("${message.upload.max-file-size:52428800}")
+    private long maxFileSize;
+
+    @Value("${message.upload.chunk.default-size:1048576}")
+    private int defaultChunkSize;
+
+    @Value("${message.upload.chunk.min-size:65536}")
+    private int minChunkSize;
+
+    @Value("${message.upload.chunk.max-size:8388608}")
+    private int maxChunkSize;
+
+    @Override
+    public UploadSession initUpload(Long userId, ChunkedUploadInitRequest request) {
+        if (request.getSize() > maxFileSize) {
+            throw new IllegalStateException("文件大小不能超过" + (maxFileSize / 1024 / 1024) + "MB");
+        }
+        int chunkSize = request.getChunkSize() != null ? request.getChunkSize() : defaultChunkSize;
+        chunkSize = Math.max(minChunkSize, Math.min(maxChunkSize, chunkSize));
+
+        LocalDateTime now = LocalDateTime.now();
+        UploadSession session = UploadSession.builder()
+                .id(UUID.randomUUID().toString())
+                .uploaderId(userId)
+                .originalName(request.getFilename())
+                .contentType(request.getContentType())
+                .size(request.getSize())
+                .chunkSize(chunkSize)
+                .totalChunks((int) ((request.getSize() + chunkSize - 1) / chunkSize))
+                .sha256(request.getSha256() != null ? request.getSha256().toLowerCase() : null)
+                .receivedChunks(new HashSet<>())
+                .createTime(now)
+                .updateTime(now)
+                .build();
+
+        // 预分配临时文件，之后每个分片只做定位写入
+        Path partPath = partPathOf(session.getId());
+        try {
+            Files.createDirectories(partPath.getParent());
+            try (RandomAccessFile file = new RandomAccessFile(partPath.toFile(), "rw")) {
+                file.setLength(session.getSize());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("创建上传临时文件失败", e);
+        }
+
+        UploadSession saved = mongoTemplate.insert(session);
+        log.info("用户 {} 创建分片上传: uploadId={}, size={}, chunkSize={}, chunks={}",
+                userId, saved.getId(), saved.getSize(), chunkSize, saved.getTotalChunks());
+        return saved;
+    }
+
+    @Override
+    public UploadSession getUpload(String uploadId, Long userId) {
+        UploadSession session = mongoTemplate.findById(uploadId, UploadSession.class);
+        if (session == null || !session.getUploaderId().equals(userId)) {
+            throw new ResourceNotFoundException("上传不存在或已过期: " + uploadId);
+        }
+        return session;
+    }
+
+    @Override
+    public UploadSession writeChunk(String uploadId, Long userId, int index, String checksum, InputStream data) {
+        UploadSession session = getUpload(uploadId, userId);
+        if (index < 0 || index >= session.getTotalChunks()) {
+            throw new IllegalStateException("分片序号超出范围: " + index);
+        }
+        if (session.getReceivedChunks() != null && session.getReceivedChunks().contains(index)) {
+            // 已通过校验的分片不再覆盖，客户端没收到响应而重传时直接返回当前进度
+            log.debug("分片已收到，忽略重传: uploadId={}, index={}", uploadId, index);
+            return session;
+        }
+
+        // 先写入暂存文件并校验，通过后才写入临时文件的对应区间，校验失败的数据不会覆盖已有内容
+        Path staged = stageChunk(uploadId, index, session.lengthOf(index), checksum, data);
+        try (FileChannel source = FileChannel.open(staged, StandardOpenOption.READ);
+             FileChannel target = FileChannel.open(partPathOf(uploadId), StandardOpenOption.WRITE)) {
+            long offset = session.offsetOf(index);
+            long length = source.size();
+            long transferred = 0;
+            while (transferred < length) {
+                transferred += target.transferFrom(source, offset + transferred, length - transferred);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("写入分片失败", e);
+        } finally {
+            deleteQuietly(staged);
+        }
+
+        UploadSession updated = mongoTemplate.findAndModify(
+                new Query(Criteria.where("id").is(uploadId)),
+                new Update().addToSet("receivedChunks", index).set("updateTime", LocalDateTime.now()),
+                FindAndModifyOptions.options().returnNew(true),
+                UploadSession.class);
+        if (updated == null) {
+            throw new ResourceNotFoundException("上传不存在或已过期: " + uploadId);
+        }
+        log.debug("分片已写入: uploadId={}, index={}, 已收到 {}/{}",
+                uploadId, index, updated.getReceivedChunks().size(), updated.getTotalChunks());
+        return updated;
+    }
+
+    @Override
+    public String completeUpload(String uploadId, Long userId) {
+        UploadSession session = getUpload(uploadId, userId);
+        int received = session.getReceivedChunks() != null ? session.getReceivedChunks().size() : 0;
+        if (received < session.getTotalChunks()) {
+            throw new IllegalStateException("还有 " + (session.getTotalChunks() - received) + " 个分片未上传");
+        }
+        if (session.getSha256() != null && !session.getSha256().equalsIgnoreCase(sha256Of(partPathOf(uploadId)))) {
+            // 无法确定是哪个分片出错，清空进度让客户端重新上传全部分片
+            mongoTemplate.updateFirst(new Query(Criteria.where("id").is(uploadId)),
+                    new Update().set("receivedChunks", new HashSet<>()).set("updateTime", LocalDateTime.now()),
+                    UploadSession.class);
+            throw new IllegalStateException("文件校验失败，请重新上传所有分片: " + uploadId);
+        }
+
+        String filename = attachmentStore.storeFile(partPathOf(uploadId), session.getOriginalName(),
+                session.getUploaderId());
+        mongoTemplate.remove(new Query(Criteria.where("id").is(uploadId)), UploadSession.class);
+        log.info("用户 {} 完成分片上传: uploadId={}, 文件={}", userId, uploadId, filename);
+        return filename;
+    }
+
+    @Override
+    public int expireStaleUploads(LocalDateTime cutoff) {
+        Query query = new Query(Criteria.where("updateTime").lt(cutoff));
+        query.fields().include("id");
+        List<UploadSession> stale = mongoTemplate.find(query, UploadSession.class);
+        for (UploadSession session : stale) {
+            try {
+                Files.deleteIfExists(partPathOf(session.getId()));
+                // 写入过程中崩溃留下的分片暂存文件
+                try (DirectoryStream<Path> chunks = Files.newDirectoryStream(Paths.get(partialDir), session.getId() + ".*.chunk")) {
+                    for (Path chunk : chunks) {
+                        Files.deleteIfExists(chunk);
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("删除上传临时文件失败: {}, error={}", session.getId(), e.getMessage());
+                continue;
+            }
+            mongoTemplate.remove(new Query(Criteria.where("id").is(session.getId())), UploadSession.class);
+        }
+        deleteOrphanedChunks(cutoff);
+        return stale.size();
+    }
+
+    /**
+     * 删除早于截止时间的分片暂存文件，正常流程中暂存文件在写入临时文件后立即删除，
+     * 剩下的只可能是进程崩溃或会话记录已被删除时遗留的
+     */
+    private void deleteOrphanedChunks(LocalDateTime cutoff) {
+        Path dir = Paths.get(partialDir);
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        Instant threshold = cutoff.atZone(ZoneId.systemDefault()).toInstant();
+        int deleted = 0;
+        try (DirectoryStream<Path> chunks = Files.newDirectoryStream(dir, "*.chunk")) {
+            for (Path chunk : chunks) {
+                try {
+                    if (Files.getLastModifiedTime(chunk).toInstant().isBefore(threshold) && Files.deleteIfExists(chunk)) {
+                        deleted++;
+                    }
+                } catch (IOException e) {
+                    log.warn("删除遗留的分片暂存文件失败: {}, error={}", chunk, e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            log.warn("扫描分片暂存目录失败: {}, error={}", dir, e.getMessage());
+        }
+        if (deleted > 0) {
+            log.info("已删除 {} 个遗留的分片暂存文件", deleted);
+        }
+    }
+
+    private Path partPathOf(String uploadId) {
+        return Paths.get(partialDir, uploadId + ".part");
+    }
+
+    /**
+     * 把分片写入独立的暂存文件并校验长度和SHA-256，校验失败时删除暂存文件
+     */
+    private Path stageChunk(String uploadId, int index, int expectedLength, String checksum, InputStream data) {
+        Path staged = Paths.get(partialDir, uploadId + "." + index + "." + UUID.randomUUID() + ".chunk");
+        MessageDigest digest = sha256();
+        long written = 0;
+        try (OutputStream out = Files.newOutputStream(staged)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = data.read(buffer)) != -1) {
+                if (written + read > expectedLength) {
+                    throw new IllegalStateException("分片长度超过预期: 应为 " + expectedLength + " 字节");
+                }
+                digest.update(buffer, 0, read);
+                out.write(buffer, 0, read);
+                written += read;
+            }
+        } catch (IOException e) {
+            deleteQuietly(staged);
+            throw new UncheckedIOException("写入分片失败", e);
+        } catch (RuntimeException e) {
+            deleteQuietly(staged);
+            throw e;
+        }
+
+        if (written != expectedLength) {
+            deleteQuietly(staged);
+            throw new IllegalStateException("分片长度不正确: 收到 " + written + " 字节, 应为 " + expectedLength + " 字节");
+        }
+        if (!toHex(digest.digest()).equalsIgnoreCase(checksum)) {
+            deleteQuietly(staged);
+            throw new IllegalStateException("分片校验失败: " + index);
+        }
+        return staged;
+    }
+
+    private static String sha256Of(Path path) {
+        MessageDigest digest = sha256();
+        try (InputStream in = new DigestInputStream(Files.newInputStream(path), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        } catch (IOException e) {
+            throw new UncheckedIOException("读取上传临时文件失败", e);
+        }
+        return toHex(digest.digest());
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("删除分片暂存文件失败: {}", path);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,375 @@
+package com.chatapp.message.service.impl;
+
+import com.chatapp.message.config.ClusterNode;
+import com.chatapp.message.config.RabbitMQConfig;
+import com.chatapp.message.mq.PresenceEvent;
+import com.chatapp.message.service.PresenceService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 集群在线状态服务
+ * 每个节点只广播本节点用户的上线/下线变化（按周期合并成一条DELTA），并定期发送节点租约心跳。
+ * 所有节点根据这些事件维护完整的在线状态副本，isUserOnline 只读本地副本。
+ * 节点心跳超时后，它的所有用户在其他节点上自动视为离线；发现丢失变化时向来源节点请求全量快照。
+ * 用户在本节点上线时在返回 CONNECTED 之前立即同步发布变化，不等广播周期：
+ * 已在其他节点长时间在线的用户新开一个设备时，其他节点在新会话订阅前就能看到它，不会跳过跨节点投递。
+ * 下线变化仍按周期合并广播；副本同步期间和用户刚上线时按“可能在其他节点在线”处理。
+ */
+@Service
+@ConditionalOnProperty(name = "message.websocket.cluster.enabled", havingValue = "true", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class ClusterPresenceService implements PresenceService {
+
+    private final RabbitTemplate rabbitTemplate;
+    private final ClusterNode clusterNode;
+
+    @Value("${message.presence.lease-timeout-ms:15000}")
+    private long leaseTimeoutMs;
+
+    @Value("${message.presence.grace-ms:2000}")
+    private long graceMs;
+
+    // 本节点状态和在线状态副本的所有写操作共用一把锁，副本的读操作无锁
+    private final Object lock = new Object();
+
+    // DELTA 的序号分配与发布保持同一顺序，不与副本的读写共用
+    private final Object publishLock = new Object();
+
+    // 本节点在线用户（userId -> 上线时间）与待广播的变化（userId -> 是否在线）
+    private final Map<String, Long> localUsers = new HashMap<>();
+    private Map<String, Boolean> pendingDelta = new LinkedHashMap<>();
+    private long localSeq;
+
+    // 在线状态副本：用户 -> 所在节点
+    private final ConcurrentHashMap<String, Set<String>> userNodes = new ConcurrentHashMap<>();
+    private final Map<String, NodeState> remoteNodes = new HashMap<>();
+
+    // 在此时间之前副本可能不完整（启动、全量同步、发现新节点），跨节点投递不做过滤
+    private volatile long syncGraceUntil;
+
+    // 已知的其他节点数量，供投递路径无锁读取
+    private volatile int remoteNodeCount;
+
+    // 本节点上线时间的无锁副本，供投递路径读取
+    private final ConcurrentHashMap<String, Long> localOnlineSince = new ConcurrentHashMap<>();
+
+    @Override
+    public void localUserOnline(String userId) {
+        synchronized (lock) {
+            if (!localUsers.containsKey(userId)) {
+                long now = System.currentTimeMillis();
+                localUsers.put(userId, now);
+                localOnlineSince.put(userId, now);
+                pendingDelta.put(userId, Boolean.TRUE);
+                addUserNode(userId, clusterNode.getNodeId());
+            }
+        }
+    }
+
+    @Override
+    public void localUserOffline(String userId) {
+        synchronized (lock) {
+            if (localUsers.remove(userId) != null) {
+                localOnlineSince.remove(userId);
+                pendingDelta.put(userId, Boolean.FALSE);
+                removeUserNode(userId, clusterNode.getNodeId());
+            }
+        }
+    }
+
+    @Override
+    public boolean isUserOnline(String userId) {
+        Set<String> nodes = userNodes.get(userId);
+        return nodes != null && !nodes.isEmpty();
+    }
+
+    @Override
+    public boolean isUserOnlineElsewhere(String userId) {
+        Set<String> nodes = userNodes.get(userId);
+        if (nodes == null) {
+            return false;
+        }
+        for (String nodeId : nodes) {
+            if (!clusterNode.getNodeId().equals(nodeId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean mayBeOnlineElsewhere(String userId) {
+        if (isUserOnlineElsewhere(userId)) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        if (now < syncGraceUntil) {
+            return true;
+        }
+        Long onlineSince = localOnlineSince.get(userId);
+        if (onlineSince == null) {
+            // 副本中不在任何节点上：可能刚在其他节点上线而变化还没到达，只有单节点时才不需要广播
+            return hasRemoteNodes();
+        }
+        // 刚在本节点上线的用户可能同时在其他节点上登录（多端），宽限期内照常广播
+        return now - onlineSince < graceMs;
+    }
+
+    @Override
+    public Set<String> getOnlineUsers() {
+        return Collections.unmodifiableSet(userNodes.keySet());
+    }
+
+    /**
+     * 广播上个周期内本节点的在线状态变化
+     */
+    @Scheduled(fixedDelayString = "${message.presence.delta-flush-interval-ms:200}")
+    public void flushDelta() {
+        // 定时广播与上线时的立即广播可能并发，按序号顺序发布，避免接收方误判丢失变化而请求全量快照
+        synchronized (publishLock) {
+            Map<String, Boolean> batch;
+            long seq;
+            synchronized (lock) {
+                if (pendingDelta.isEmpty()) {
+                    return;
+                }
+                batch = pendingDelta;
+                pendingDelta = new LinkedHashMap<>();
+                seq = ++localSeq;
+            }
+
+            List<String> online = new ArrayList<>();
+            List<String> offline = new ArrayList<>();
+            batch.forEach((userId, isOnline) -> (isOnline ? online : offline).add(userId));
+
+            PresenceEvent event = newEvent(PresenceEvent.Type.DELTA);
+            event.setSeq(seq);
+            event.setOnline(online);
+            event.setOffline(offline);
+            publish(event);
+        }
+    }
+
+    @Override
+    public void publishLocalChanges() {
+        flushDelta();
+    }
+
+    /**
+     * 发送本节点租约心跳，并移除租约已过期的节点
+     */
+    @Scheduled(fixedDelayString = "${message.presence.heartbeat-interval-ms:5000}")
+    public void heartbeat() {
+        PresenceEvent event = newEvent(PresenceEvent.Type.HEARTBEAT);
+        synchronized (lock) {
+            event.setSeq(localSeq);
+        }
+        publish(event);
+
+        long deadline = System.currentTimeMillis() - leaseTimeoutMs;
+        synchronized (lock) {
+            Iterator<Map.Entry<String, NodeState>> iterator = remoteNodes.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, NodeState> entry = iterator.next();
+                if (entry.getValue().lastSeen < deadline) {
+                    log.warn("节点租约已过期，移除其在线用户: nodeId={}, 用户数={}",
+                            entry.getKey(), entry.getValue().users.size());
+                    entry.getValue().users.forEach(userId -> removeUserNode(userId, entry.getKey()));
+                    iterator.remove();
+                    remoteNodeCount = remoteNodes.size();
+                }
+            }
+        }
+    }
+
+    /**
+     * 应用其他节点发布的在线状态事件
+     */
+    public void applyRemoteEvent(PresenceEvent event) {
+        String nodeId = event.getNodeId();
+        if (nodeId == null || clusterNode.getNodeId().equals(nodeId)) {
+            return;
+        }
+
+        switch (event.getType()) {
+            case SYNC_REQUEST:
+                // 发出全量同步请求的节点可能刚启动，它的用户还没出现在副本中
+                extendSyncGrace();
+                if (event.getTargetNodeId() == null || clusterNode.getNodeId().equals(event.getTargetNodeId())) {
+                    publishSnapshot();
+                }
+                return;
+            case LEAVE:
+                synchronized (lock) {
+                    NodeState node = remoteNodes.remove(nodeId);
+                    remoteNodeCount = remoteNodes.size();
+                    if (node != null) {
+                        node.users.forEach(userId -> removeUserNode(userId, nodeId));
+                        log.info("节点已下线，移除其在线用户: nodeId={}, 用户数={}", nodeId, node.users.size());
+                    }
+                }
+                return;
+            default:
+                break;
+        }
+
+        boolean needSync = false;
+        synchronized (lock) {
+            NodeState node = remoteNodes.get(nodeId);
+            boolean unknown = node == null;
+            if (unknown) {
+                node = new NodeState();
+                remoteNodes.put(nodeId, node);
+                remoteNodeCount = remoteNodes.size();
+            }
+            node.lastSeen = System.currentTimeMillis();
+
+            switch (event.getType()) {
+                case HEARTBEAT:
+                    // 新节点或者漏掉了变化，需要全量同步
+                    needSync = unknown || event.getSeq() > node.seq;
+                    break;
+                case DELTA:
+                    if (!unknown && event.getSeq() <= node.seq) {
+                        // 已包含在之前的快照中
+                        break;
+                    }
+                    needSync = unknown || event.getSeq() != node.seq + 1;
+                    applyDelta(nodeId, node, event);
+                    node.seq = event.getSeq();
+                    break;
+                case SNAPSHOT:
+                    if (!unknown && event.getSeq() < node.seq) {
+                        break;
+                    }
+                    node.users.forEach(userId -> removeUserNode(userId, nodeId));
+                    node.users.clear();
+                    if (event.getOnline() != null) {
+                        for (String userId : event.getOnline()) {
+                            node.users.add(userId);
+                            addUserNode(userId, nodeId);
+                        }
+                    }
+                    node.seq = event.getSeq();
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        if (needSync) {
+            extendSyncGrace();
+            log.info("向节点请求在线状态快照: nodeId={}", nodeId);
+            PresenceEvent request = newEvent(PresenceEvent.Type.SYNC_REQUEST);
+            request.setTargetNodeId(nodeId);
+            publish(request);
+        }
+    }
+
+    /**
+     * 启动后向所有节点请求快照，建立完整副本
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void requestInitialSync() {
+        extendSyncGrace();
+        publish(newEvent(PresenceEvent.Type.SYNC_REQUEST));
+    }
+
+    @PreDestroy
+    public void leave() {
+        publish(newEvent(PresenceEvent.Type.LEAVE));
+    }
+
+    private void publishSnapshot() {
+        PresenceEvent event = newEvent(PresenceEvent.Type.SNAPSHOT);
+        synchronized (lock) {
+            event.setSeq(localSeq);
+            event.setOnline(new ArrayList<>(localUsers.keySet()));
+        }
+        publish(event);
+    }
+
+    private void applyDelta(String nodeId, NodeState node, PresenceEvent event) {
+        if (event.getOnline() != null) {
+            for (String userId : event.getOnline()) {
+                node.users.add(userId);
+                addUserNode(userId, nodeId);
+            }
+        }
+        if (event.getOffline() != null) {
+            for (String userId : event.getOffline()) {
+                node.users.remove(userId);
+                removeUserNode(userId, nodeId);
+            }
+        }
+    }
+
+    private boolean hasRemoteNodes() {
+        return remoteNodeCount > 0;
+    }
+
+    private void extendSyncGrace() {
+        syncGraceUntil = System.currentTimeMillis() + graceMs;
+    }
+
+    private void addUserNode(String userId, String nodeId) {
+        userNodes.computeIfAbsent(userId, k -> ConcurrentHashMap.newKeySet()).add(nodeId);
+    }
+
+    private void removeUserNode(String userId, String nodeId) {
+        Set<String> nodes = userNodes.get(userId);
+        if (nodes != null) {
+            nodes.remove(nodeId);
+            if (nodes.isEmpty()) {
+                userNodes.remove(userId);
+            }
+        }
+    }
+
+    private PresenceEvent newEvent(PresenceEvent.Type type) {
+        PresenceEvent event = new PresenceEvent();
+        event.setType(type);
+        event.setNodeId(clusterNode.getNodeId());
+        return event;
+    }
+
+    private void publish(PresenceEvent event) {
+        try {
+            rabbitTemplate.convertAndSend(RabbitMQConfig.CHAT_EXCHANGE, RabbitMQConfig.PRESENCE_ROUTING_KEY, event);
+        } catch (AmqpException e) {
+            // 丢失的变化会在接收方对比心跳序号时通过全量快照补齐
+            log.error("发布在线状态事件失败: {}, error={}", event, e.getMessage());
+        }
+    }
+
+    /**
+     * 远程节点的副本状态
+     */
+    private static class NodeState {
+        private long lastSeen;
+        private long seq;
+        private final Set<String> users = new HashSet<>();
+    }
+}
@@ -0,0 +1,373 @@
+package com.chatapp.message.service.impl;
+
+import com.chatapp.message.model.AttachmentBlob;
+import com.chatapp.message.service.AttachmentStore;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * 按内容寻址的附件存储
+ * 文件保存在 {upload-dir}/cas/{前两位}/{sha256}，引用计数和上传者保存在 attachment_blobs 中。
+ * 每次上传或引用都会递增记录的代数（generation），删除最后一个引用时先把文件移到临时位置，
+ * 只有代数未变才删除记录和文件，否则放回原处，多个节点并发上传和删除相同内容时不会误删文件。
+ * 启用之前上传的文件仍按原文件名保存在上传目录下，只能直接删除。
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ContentAddressedAttachmentStore implements AttachmentStore {
+
+    private static final Pattern STORED_NAME = Pattern.compile("[0-9a-f]{64}(\\.[A-Za-z0-9]{1,10})?");
+    private static final Pattern EXTENSION = Pattern.compile("\\.[A-Za-z0-9]{1,10}");
+    private static final int MAX_REGISTER_ATTEMPTS = 3;
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${message.upload.dir:uploads/}")
+    private String uploadDir;
+
+    private Path uploadRoot;
+    private Path blobRoot;
+    private Path tempRoot;
+
+    @PostConstruct
+    public void init() throws IOException {
+        uploadRoot = Paths.get(uploadDir).toAbsolutePath().normalize();
+        blobRoot = uploadRoot.resolve("cas");
+        tempRoot = uploadRoot.resolve(".tmp");
+        Files.createDirectories(blobRoot);
+        Files.createDirectories(tempRoot);
+    }
+
+    @Override
+    public String store(InputStream content, String originalFilename, Long uploaderId) {
+        Path temp = tempRoot.resolve(UUID.randomUUID().toString());
+        MessageDigest digest = sha256();
+        long size;
+        try (DigestInputStream in = new DigestInputStream(content, digest)) {
+            size = Files.copy(in, temp);
+        } catch (IOException e) {
+            deleteQuietly(temp);
+            throw new UncheckedIOException("保存上传文件失败", e);
+        }
+        return commit(temp, toHex(digest.digest()), size, originalFilename, uploaderId);
+    }
+
+    @Override
+    public String storeFile(Path source, String originalFilename, Long uploaderId) {
+        MessageDigest digest = sha256();
+        long size;
+        try (InputStream in = new DigestInputStream(Files.newInputStream(source), digest)) {
+            size = in.transferTo(OutputStream.nullOutputStream());
+        } catch (IOException e) {
+            throw new UncheckedIOException("读取上传文件失败", e);
+        }
+        return commit(source, toHex(digest.digest()), size, originalFilename, uploaderId);
+    }
+
+    @Override
+    public Path resolve(String filename) {
+        Path path;
+        if (STORED_NAME.matcher(filename).matches()) {
+            path = blobPathOf(hashOf(filename));
+        } else {
+            path = uploadRoot.resolve(filename).normalize();
+            if (!path.startsWith(uploadRoot)) {
+                return null;
+            }
+        }
+        return Files.isRegularFile(path) ? path : null;
+    }
+
+    @Override
+    public Path derivativePath(String filename, String variant) {
+        Path original = resolve(filename);
+        return original != null ? original.resolveSibling(original.getFileName() + "." + variant) : null;
+    }
+
+    @Override
+    public void retain(Collection<String> attachments) {
+        Map<String, Integer> counts = countByHash(attachments);
+        if (counts.isEmpty()) {
+            return;
+        }
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, AttachmentBlob.class);
+        LocalDateTime now = LocalDateTime.now();
+        counts.forEach((hash, count) -> bulkOps.updateOne(
+                new Query(Criteria.where("id").is(hash)),
+                new Update().inc("refCount", count).inc("generation", 1).set("updateTime", now)));
+        bulkOps.execute();
+    }
+
+    @Override
+    public int release(Collection<String> attachments) {
+        int unlinked = 0;
+        for (Map.Entry<String, Integer> entry : countByHash(attachments).entrySet()) {
+            String hash = entry.getKey();
+            AttachmentBlob blob = mongoTemplate.findAndModify(
+                    new Query(Criteria.where("id").is(hash)),
+                    new Update().inc("refCount", -entry.getValue()).inc("generation", 1)
+                            .set("updateTime", LocalDateTime.now()),
+                    FindAndModifyOptions.options().returnNew(true),
+                    AttachmentBlob.class);
+            if (blob != null && blob.getRefCount() <= 0 && unlink(hash, blob.getGeneration())) {
+                unlinked++;
+            }
+        }
+        return unlinked;
+    }
+
+    @Override
+    public boolean delete(String filename, Long uploaderId) throws IOException {
+        if (STORED_NAME.matcher(filename).matches()) {
+            // 只释放该用户上传时持有的引用，重复删除或删除别人上传的文件不会再次释放
+            String hash = hashOf(filename);
+            AttachmentBlob blob = mongoTemplate.findAndModify(
+                    new Query(Criteria.where("id").is(hash).and("uploaders").is(uploaderId)),
+                    new Update().pull("uploaders", uploaderId).inc("refCount", -1).inc("generation", 1)
+                            .set("updateTime", LocalDateTime.now()),
+                    FindAndModifyOptions.options().returnNew(true),
+                    AttachmentBlob.class);
+            if (blob == null) {
+                return false;
+            }
+            if (blob.getRefCount() <= 0) {
+                unlink(hash, blob.getGeneration());
+            }
+            return true;
+        }
+        Path path = resolve(filename);
+        if (path == null || !Files.deleteIfExists(path)) {
+            return false;
+        }
+        deleteDerivatives(path);
+        return true;
+    }
+
+    /**
+     * 登记上传者的引用并把临时文件放到内容地址上，已存在相同内容时直接丢弃临时文件
+     */
+    private String commit(Path temp, String hash, long size, String originalFilename, Long uploaderId) {
+        Path blobPath = blobPathOf(hash);
+        try {
+            boolean added = registerUploader(hash, size, uploaderId);
+            try {
+                // 登记之后代数已经变化，并发的删除会把文件放回原处，这里看到文件存在即可复用
+                if (Files.exists(blobPath)) {
+                    Files.delete(temp);
+                    log.info("上传内容已存在，复用文件: {}", hash);
+                } else {
+                    Files.createDirectories(blobPath.getParent());
+                    Files.move(temp, blobPath, StandardCopyOption.ATOMIC_MOVE);
+                }
+            } catch (IOException e) {
+                if (added) {
+                    mongoTemplate.updateFirst(
+                            new Query(Criteria.where("id").is(hash).and("uploaders").is(uploaderId)),
+                            new Update().pull("uploaders", uploaderId).inc("refCount", -1),
+                            AttachmentBlob.class);
+                }
+                throw new UncheckedIOException("保存上传文件失败", e);
+            }
+        } finally {
+            deleteQuietly(temp);
+        }
+        return hash + extensionOf(originalFilename);
+    }
+
+    /**
+     * 把上传者加入 uploaders 并递增引用数和代数，同一用户重复上传相同内容只持有一次引用
+     *
+     * @return 是否新增了引用
+     */
+    private boolean registerUploader(String hash, long size, Long uploaderId) {
+        LocalDateTime now = LocalDateTime.now();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                // 记录不存在时插入，存在但不含该上传者时更新；已含该上传者时查询不匹配，插入会主键冲突
+                mongoTemplate.upsert(
+                        new Query(Criteria.where("id").is(hash).and("uploaders").ne(uploaderId)),
+                        new Update().addToSet("uploaders", uploaderId)
+                                .inc("refCount", 1)
+                                .inc("generation", 1)
+                                .set("updateTime", now)
+                                .setOnInsert("size", size)
+                                .setOnInsert("createTime", now),
+                        AttachmentBlob.class);
+                return true;
+            } catch (DuplicateKeyException e) {
+                UpdateResult result = mongoTemplate.updateFirst(
+                        new Query(Criteria.where("id").is(hash).and("uploaders").is(uploaderId)),
+                        new Update().inc("generation", 1).set("updateTime", now),
+                        AttachmentBlob.class);
+                if (result.getMatchedCount() > 0) {
+                    return false;
+                }
+                // 其他上传者并发插入了同一条记录，重试后即可匹配更新
+                if (attempt >= MAX_REGISTER_ATTEMPTS) {
+                    throw new IllegalStateException("登记附件引用失败: " + hash, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 引用数仍为0且代数未变时删除记录和文件
+     * 文件先移到临时位置再按代数删除记录；删除失败说明期间有新的上传或引用，把文件放回原处
+     */
+    private boolean unlink(String hash, long generation) {
+        Path blobPath = blobPathOf(hash);
+        Path tombstone = blobPath.resolveSibling(".deleting-" + hash + "-" + UUID.randomUUID());
+        boolean moved;
+        try {
+            Files.move(blobPath, tombstone, StandardCopyOption.ATOMIC_MOVE);
+            moved = true;
+        } catch (NoSuchFileException e) {
+            moved = false;
+        } catch (IOException e) {
+            log.error("删除附件文件失败: {}, error={}", hash, e.getMessage());
+            return false;
+        }
+
+        DeleteResult result = mongoTemplate.remove(
+                new Query(Criteria.where("id").is(hash).and("refCount").lte(0).and("generation").is(generation)),
+                AttachmentBlob.class);
+        if (result.getDeletedCount() == 0) {
+            if (moved) {
+                restore(tombstone, blobPath);
+            }
+            return false;
+        }
+
+        if (moved) {
+            deleteQuietly(tombstone);
+        }
+        deleteDerivatives(blobPath);
+        log.info("附件已无引用，删除文件: {}", hash);
+        return true;
+    }
+
+    /**
+     * 把待删除的文件放回内容地址，新上传已经放入了相同内容时直接丢弃
+     */
+    private static void restore(Path tombstone, Path blobPath) {
+        try {
+            Files.move(tombstone, blobPath, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.error("恢复附件文件失败: {}, error={}", blobPath.getFileName(), e.getMessage());
+        } finally {
+            deleteQuietly(tombstone);
+        }
+    }
+
+    /**
+     * 统计附件列表中每个内容哈希出现的次数，忽略不是内容寻址文件名的附件
+     */
+    private static Map<String, Integer> countByHash(Collection<String> attachments) {
+        Map<String, Integer> counts = new HashMap<>();
+        if (attachments == null) {
+            return counts;
+        }
+        for (String attachment : attachments) {
+            if (attachment == null) {
+                continue;
+            }
+            String filename = attachment;
+            int query = filename.indexOf('?');
+            if (query >= 0) {
+                filename = filename.substring(0, query);
+            }
+            filename = filename.substring(filename.lastIndexOf('/') + 1);
+            if (STORED_NAME.matcher(filename).matches()) {
+                counts.merge(hashOf(filename), 1, Integer::sum);
+            }
+        }
+        return counts;
+    }
+
+    private static String hashOf(String storedName) {
+        return storedName.substring(0, 64);
+    }
+
+    private static String extensionOf(String originalFilename) {
+        if (originalFilename == null || !originalFilename.contains(".")) {
+            return "";
+        }
+        String extension = originalFilename.substring(originalFilename.lastIndexOf('.'));
+        return EXTENSION.matcher(extension).matches() ? extension : "";
+    }
+
+    private Path blobPathOf(String hash) {
+        return blobRoot.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    /**
+     * 删除原文件的派生文件（{原文件名}.{后缀}）
+     */
+    private static void deleteDerivatives(Path original) {
+        try (DirectoryStream<Path> derivatives = Files.newDirectoryStream(
+                original.getParent(), original.getFileName() + ".*")) {
+            for (Path derivative : derivatives) {
+                deleteQuietly(derivative);
+            }
+        } catch (IOException e) {
+            log.warn("删除派生文件失败: {}, error={}", original.getFileName(), e.getMessage());
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("删除临时文件失败: {}", path);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,307 @@
+package com.chatapp.message.service.impl;
+
+import com.chatapp.message.model.Conversation;
+import com.chatapp.message.model.Message;
+import com.mongodb.bulk.BulkWriteError;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 会话摘要投影器
+ * 每条私聊消息写入后更新收发双方的会话摘要（最后消息、未读数），
+ * 同一会话在一个刷新周期内的多条消息合并为一次更新，通过 bulkWrite 批量写入。
+ * 最后消息只在不早于库中已有时间时覆盖，重试的旧批次或其他实例的迟到增量不会回退摘要；
+ * 未读数的 $inc 是单独的更新，写入失败的行合并回缓冲区下次重试。
+ * 清零未读不等待批量写入：清零时若该行的增量正在写入，写入完成后再补一次清零。
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ConversationProjector {
+
+    private final MongoTemplate mongoTemplate;
+
+    // 保护 pending、inFlight 和 resetDuringFlush，只在内存操作期间持有
+    private final Object lock = new Object();
+
+    // 只用于刷新之间互斥（定时刷新与关闭时的刷新），清零未读不获取此锁
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    // userId:friendId -> 待写入的摘要增量
+    private Map<String, SummaryDelta> pending = new LinkedHashMap<>();
+
+    // 正在写入的批次，以及写入期间被清零未读的行
+    private Map<String, SummaryDelta> inFlight = Collections.emptyMap();
+    private Set<String> resetDuringFlush = new HashSet<>();
+
+    /**
+     * 将消息投影到收发双方的会话摘要
+     */
+    public void project(Message message) {
+        if (message.getMessageType() != Message.MessageType.PRIVATE
+                || message.getSenderId() == null || message.getReceiverId() == null
+                || message.getSenderId() == 0L) {
+            // 群聊和系统消息不维护一对一会话摘要
+            return;
+        }
+
+        String preview = previewOf(message);
+        LocalDateTime time = message.getCreateTime() != null ? message.getCreateTime() : LocalDateTime.now();
+        synchronized (lock) {
+            accumulate(message.getSenderId(), message.getReceiverId(), preview, time, 0);
+            if (!message.getSenderId().equals(message.getReceiverId())) {
+                accumulate(message.getReceiverId(), message.getSenderId(), preview, time, 1);
+            }
+        }
+    }
+
+    /**
+     * 清零用户与某个好友的会话未读数
+     */
+    public void resetUnread(Long userId, Long friendId) {
+        String key = rowKey(userId, friendId);
+        synchronized (lock) {
+            // 丢弃尚未写入的未读增量，避免清零后被旧增量覆盖
+            SummaryDelta delta = pending.get(key);
+            if (delta != null) {
+                delta.unreadIncrement = 0;
+            }
+            markResetDuringFlush(key);
+        }
+        mongoTemplate.updateFirst(
+                new Query(Criteria.where("userId").is(userId).and("friendId").is(friendId)),
+                new Update().set("unreadCount", 0).set("unread", false),
+                Conversation.class);
+    }
+
+    /**
+     * 清零用户所有会话的未读数
+     */
+    public void resetAllUnread(Long userId) {
+        synchronized (lock) {
+            pending.values().stream()
+                    .filter(delta -> delta.userId.equals(userId))
+                    .forEach(delta -> delta.unreadIncrement = 0);
+            inFlight.values().stream()
+                    .filter(delta -> delta.userId.equals(userId))
+                    .forEach(delta -> markResetDuringFlush(rowKey(delta.userId, delta.friendId)));
+        }
+        mongoTemplate.updateMulti(
+                new Query(Criteria.where("userId").is(userId).and("unread").is(true)),
+                new Update().set("unreadCount", 0).set("unread", false),
+                Conversation.class);
+    }
+
+    private void markResetDuringFlush(String key) {
+        SummaryDelta delta = inFlight.get(key);
+        if (delta != null && delta.unreadIncrement > 0) {
+            resetDuringFlush.add(key);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${message.conversation.flush-interval-ms:100}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            flushPending();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void flushPending() {
+        Map<String, SummaryDelta> batch;
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new LinkedHashMap<>();
+            inFlight = batch;
+        }
+
+        // 每个增量对应两条更新：下标 2i 为未读和时间，2i+1 为最后消息摘要
+        LocalDateTime now = LocalDateTime.now();
+        List<SummaryDelta> deltas = new ArrayList<>(batch.values());
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Conversation.class);
+        for (SummaryDelta delta : deltas) {
+            Criteria row = Criteria.where("userId").is(delta.userId).and("friendId").is(delta.friendId);
+            Update update = new Update()
+                    .max("lastMessageTime", delta.lastMessageTime)
+                    .set("updateTime", now)
+                    .setOnInsert("lastMessageContent", delta.lastMessageContent)
+                    .setOnInsert("createTime", now);
+            if (delta.unreadIncrement > 0) {
+                update.inc("unreadCount", delta.unreadIncrement).set("unread", true);
+            } else {
+                update.setOnInsert("unreadCount", 0).setOnInsert("unread", false);
+            }
+            bulkOps.upsert(new Query(row), update);
+            // 与上一条更新的执行顺序无关：库中最后消息时间不晚于本批次时才覆盖摘要
+            bulkOps.updateOne(
+                    new Query(Criteria.where("userId").is(delta.userId).and("friendId").is(delta.friendId)
+                            .and("lastMessageTime").lte(delta.lastMessageTime)),
+                    new Update().set("lastMessageContent", delta.lastMessageContent));
+        }
+
+        List<SummaryDelta> failed = new ArrayList<>();
+        try {
+            bulkOps.execute();
+            log.debug("会话摘要已批量更新: {} 条", deltas.size());
+        } catch (BulkOperationException e) {
+            // 无序批量写入部分成功时只重试失败的更新；只有摘要更新失败的行不再重复累加未读数
+            Map<Integer, SummaryDelta> retries = new TreeMap<>();
+            for (BulkWriteError error : e.getErrors()) {
+                SummaryDelta delta = deltas.get(error.getIndex() / 2);
+                boolean unreadFailed = error.getIndex() % 2 == 0;
+                retries.merge(error.getIndex() / 2, unreadFailed ? delta : delta.withoutUnread(),
+                        (a, b) -> a.unreadIncrement >= b.unreadIncrement ? a : b);
+            }
+            failed.addAll(retries.values());
+            log.error("会话摘要批量更新部分失败，{} 条合并回缓冲区下次重试: {}", failed.size(), e.getMessage());
+        } catch (Exception e) {
+            failed.addAll(deltas);
+            log.error("会话摘要批量更新失败，合并回缓冲区下次重试: {} 条, error={}", deltas.size(), e.getMessage(), e);
+        }
+
+        Set<String> resets;
+        synchronized (lock) {
+            resets = resetDuringFlush;
+            resetDuringFlush = new HashSet<>();
+            inFlight = Collections.emptyMap();
+            requeue(failed, resets);
+        }
+        reapplyResets(resets);
+    }
+
+    /**
+     * 写入期间被清零的行，清零可能先于本批次的 $inc 落库，补一次清零
+     */
+    private void reapplyResets(Set<String> resets) {
+        if (resets.isEmpty()) {
+            return;
+        }
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Conversation.class);
+        for (String key : resets) {
+            int separator = key.indexOf(':');
+            bulkOps.updateOne(
+                    new Query(Criteria.where("userId").is(Long.valueOf(key.substring(0, separator)))
+                            .and("friendId").is(Long.valueOf(key.substring(separator + 1)))),
+                    new Update().set("unreadCount", 0).set("unread", false));
+        }
+        try {
+            bulkOps.execute();
+        } catch (Exception e) {
+            log.error("补充清零会话未读数失败: {} 行, error={}", resets.size(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 将写入失败的增量合并回缓冲区：保留较新的最后消息，未读增量累加；写入期间已清零的行丢弃未读增量
+     */
+    private void requeue(Collection<SummaryDelta> failed, Set<String> resets) {
+        for (SummaryDelta delta : failed) {
+            String key = rowKey(delta.userId, delta.friendId);
+            if (resets.contains(key)) {
+                delta.unreadIncrement = 0;
+            }
+            SummaryDelta current = pending.get(key);
+            if (current == null) {
+                pending.put(key, delta);
+                continue;
+            }
+            if (delta.lastMessageTime != null && (current.lastMessageTime == null
+                    || delta.lastMessageTime.isAfter(current.lastMessageTime))) {
+                current.lastMessageTime = delta.lastMessageTime;
+                current.lastMessageContent = delta.lastMessageContent;
+            }
+            current.unreadIncrement += delta.unreadIncrement;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private void accumulate(Long userId, Long friendId, String preview, LocalDateTime time, int unreadIncrement) {
+        SummaryDelta delta = pending.computeIfAbsent(rowKey(userId, friendId), k -> new SummaryDelta(userId, friendId));
+        if (delta.lastMessageTime == null || !time.isBefore(delta.lastMessageTime)) {
+            delta.lastMessageTime = time;
+            delta.lastMessageContent = preview;
+        }
+        delta.unreadIncrement += unreadIncrement;
+    }
+
+    private static String rowKey(Long userId, Long friendId) {
+        return userId + ":" + friendId;
+    }
+
+    /**
+     * 会话列表中展示的消息摘要
+     */
+    public static String previewOf(Message message) {
+        if (message.isEncrypted()) {
+            return "[加密消息]";
+        }
+        if (message.getContentType() == null) {
+            return message.getContent();
+        }
+        switch (message.getContentType()) {
+            case IMAGE:
+                return "[图片]";
+            case FILE:
+                return "[文件]";
+            case AUDIO:
+                return "[语音]";
+            case VIDEO:
+                return "[视频]";
+            default:
+                return message.getContent();
+        }
+    }
+
+    /**
+     * 单个会话摘要在一个刷新周期内的累计变化
+     */
+    private static class SummaryDelta {
+        private final Long userId;
+        private final Long friendId;
+        private String lastMessageContent;
+        private LocalDateTime lastMessageTime;
+        private int unreadIncrement;
+
+        SummaryDelta(Long userId, Long friendId) {
+            this.userId = userId;
+            this.friendId = friendId;
+        }
+
+        SummaryDelta withoutUnread() {
+            SummaryDelta copy = new SummaryDelta(userId, friendId);
+            copy.lastMessageContent = lastMessageContent;
+            copy.lastMessageTime = lastMessageTime;
+            return copy;
+        }
+    }
+}
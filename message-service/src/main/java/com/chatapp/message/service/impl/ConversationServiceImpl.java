@@ -154,22 +154,30 @@ public class ConversationServiceImpl implements ConversationService {
         // 获取用户的所有会话
         List<Conversation> conversations = conversationRepository.findAllByUserIdOrderByLastMessageTimeDesc(userId);
         
-        return conversations.stream()
-                .map(conversation -> {
-                    try {
-                        Map<String, Object> friendInfo = userService.getUserBasicInfo(conversation.getFriendId());
-                        return convertToDto(conversation, friendInfo);
-                    } catch (Exception e) {
-                        log.error("获取好友信息失败: {}", e.getMessage(), e);
-                        // 如果获取好友信息失败，使用默认值
-                        Map<String, Object> defaultFriendInfo = new HashMap<>();
-                        defaultFriendInfo.put("id", conversation.getFriendId());
-                        defaultFriendInfo.put("nickname", conversation.getTitle() != null ? conversation.getTitle() : "未知用户");
-                        defaultFriendInfo.put("avatar", conversation.getAvatar());
-                        return convertToDto(conversation, defaultFriendInfo);
-                    }
-                })
-                .collect(Collectors.toList());
+        // 所有好友信息一次批量获取
+        Map<Long, Map<String, Object>> friendInfos;
+        try {
+            friendInfos = userService.getUserBasicInfoBatch(conversations.stream()
+                    .map(Conversation::getFriendId)
+                    .collect(Collectors.toSet()));
+        } catch (Exception e) {
+            log.error("批量获取好友信息失败: {}", e.getMessage(), e);
+            friendInfos = Collections.emptyMap();
+        }
+        
+        List<ConversationResponse> result = new ArrayList<>(conversations.size());
+        for (Conversation conversation : conversations) {
+            Map<String, Object> friendInfo = friendInfos.get(conversation.getFriendId());
+            if (friendInfo == null) {
+                // 如果获取好友信息失败，使用默认值
+                friendInfo = new HashMap<>();
+                friendInfo.put("id", conversation.getFriendId());
+                friendInfo.put("nickname", conversation.getTitle() != null ? conversation.getTitle() : "未知用户");
+                friendInfo.put("avatar", conversation.getAvatar());
+            }
+            result.add(convertToDto(conversation, friendInfo));
+        }
+        return result;
     }
 
     @Override
@@ -0,0 +1,96 @@
+package com.chatapp.message.service.impl;
+
+import com.chatapp.message.service.GroupMembershipService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 群组成员关系服务实现类
+ * 从关系服务获取用户的群组ID，并在本地缓存一段时间
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class GroupMembershipServiceImpl implements GroupMembershipService {
+
+    private final RestTemplate restTemplate;
+
+    // 用户ID -> 群组ID缓存
+    private final Map<Long, CachedGroupIds> groupIdsCache = new ConcurrentHashMap<>();
+
+    @Value("${services.relationship.url:http://relationship-service:8082}")
+    private String relationshipServiceUrl;
+
+    @Value("${message.group-membership.cache-ttl-ms:60000}")
+    private long cacheTtlMs;
+
+    @Value("${message.group-membership.cache-max-size:10000}")
+    private int cacheMaxSize;
+
+    @Override
+    public List<Long> getGroupIds(Long userId) {
+        long now = System.currentTimeMillis();
+        CachedGroupIds cached = groupIdsCache.get(userId);
+        if (cached != null && cached.expireAt > now) {
+            return cached.groupIds;
+        }
+
+        try {
+            HttpHeaders headers = new HttpHeaders();
+            headers.set("X-User-ID", String.valueOf(userId));
+            String url = relationshipServiceUrl + "/api/v1/groups/users/" + userId + "/ids";
+            ResponseEntity<List<Long>> response = restTemplate.exchange(url, HttpMethod.GET,
+                    new HttpEntity<>(headers), new ParameterizedTypeReference<List<Long>>() {});
+
+            List<Long> groupIds = response.getBody() != null
+                    ? Collections.unmodifiableList(response.getBody())
+                    : Collections.emptyList();
+            put(userId, groupIds, now);
+            return groupIds;
+        } catch (RestClientException e) {
+            log.warn("获取用户 {} 的群组列表失败: {}", userId, e.getMessage());
+            // 失败时沿用过期的缓存，没有缓存则返回空列表
+            return cached != null ? cached.groupIds : Collections.emptyList();
+        }
+    }
+
+    @Override
+    public void evict(Long userId) {
+        groupIdsCache.remove(userId);
+    }
+
+    private void put(Long userId, List<Long> groupIds, long now) {
+        if (groupIdsCache.size() >= cacheMaxSize) {
+            // 超过容量时先清理过期项，仍然超出则整体清空
+            groupIdsCache.values().removeIf(entry -> entry.expireAt <= now);
+            if (groupIdsCache.size() >= cacheMaxSize) {
+                groupIdsCache.clear();
+            }
+        }
+        groupIdsCache.put(userId, new CachedGroupIds(groupIds, now + cacheTtlMs));
+    }
+
+    private static class CachedGroupIds {
+        private final List<Long> groupIds;
+        private final long expireAt;
+
+        CachedGroupIds(List<Long> groupIds, long expireAt) {
+            this.groupIds = groupIds;
+            this.expireAt = expireAt;
+        }
+    }
+}
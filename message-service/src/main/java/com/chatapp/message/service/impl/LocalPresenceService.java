@@ -0,0 +1,57 @@
+package com.chatapp.message.service.impl;
+
+import com.chatapp.message.service.PresenceService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 单节点在线状态服务，只记录本节点的连接
+ * 关闭集群广播（message.websocket.cluster.enabled=false）时使用，也可直接用于测试
+ */
+@Service
+@ConditionalOnProperty(name = "message.websocket.cluster.enabled", havingValue = "false")
+@Slf4j
+public class LocalPresenceService implements PresenceService {
+
+    private final Set<String> onlineUsers = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public void localUserOnline(String userId) {
+        onlineUsers.add(userId);
+    }
+
+    @Override
+    public void publishLocalChanges() {
+        // 单节点模式没有需要同步的节点
+    }
+
+    @Override
+    public void localUserOffline(String userId) {
+        onlineUsers.remove(userId);
+    }
+
+    @Override
+    public boolean isUserOnline(String userId) {
+        return onlineUsers.contains(userId);
+    }
+
+    @Override
+    public boolean isUserOnlineElsewhere(String userId) {
+        return false;
+    }
+
+    @Override
+    public boolean mayBeOnlineElsewhere(String userId) {
+        return false;
+    }
+
+    @Override
+    public Set<String> getOnlineUsers() {
+        return Collections.unmodifiableSet(onlineUsers);
+    }
+}
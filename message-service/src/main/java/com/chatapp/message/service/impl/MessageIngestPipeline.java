@@ -0,0 +1,267 @@
+package com.chatapp.message.service.impl;
+
+import com.chatapp.message.model.Message;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 消息写后批量落库管道
+ * 调用方提交消息后立即返回，后台线程按数量或时间窗口聚合后通过 insertMany 批量写入MongoDB。
+ * 队列满时调用方在超时后同步写入，以此形成背压；应用关闭时会写完队列中剩余的消息。
+ * 消息此时已确认给发送方并完成推送，写入失败时按指数退避重新入队，重试耗尽后写入死信集合，不会静默丢弃。
+ */
+@Component
+@Slf4j
+public class MessageIngestPipeline {
+
+    // 重试耗尽仍无法写入的消息，保留原文供人工排查和补录
+    public static final String DEAD_LETTER_COLLECTION = "message_dead_letters";
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${message.ingest.batch-size:256}")
+    private int batchSize;
+
+    @Value("${message.ingest.flush-interval-ms:5}")
+    private long flushIntervalMs;
+
+    @Value("${message.ingest.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${message.ingest.offer-timeout-ms:50}")
+    private long offerTimeoutMs;
+
+    @Value("${message.ingest.max-retries:5}")
+    private int maxRetries;
+
+    @Value("${message.ingest.retry-backoff-ms:200}")
+    private long retryBackoffMs;
+
+    @Value("${message.ingest.retry-backoff-max-ms:30000}")
+    private long retryBackoffMaxMs;
+
+    private BlockingQueue<Message> queue;
+
+    // 消息ID -> 等待重试的消息及已失败次数
+    private final ConcurrentMap<String, RetryState> retrying = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService retryScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "message-ingest-retry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Counter failedCounter;
+    private final Counter deadLetterCounter;
+
+    private Thread writerThread;
+
+    private volatile boolean running;
+
+    public MessageIngestPipeline(MongoTemplate mongoTemplate, MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.failedCounter = Counter.builder("chat.message.ingest.failed")
+                .description("单条消息写入MongoDB失败的次数（含重试）")
+                .register(meterRegistry);
+        this.deadLetterCounter = Counter.builder("chat.message.ingest.dead.lettered")
+                .description("重试耗尽后写入死信集合的消息数")
+                .register(meterRegistry);
+        Gauge.builder("chat.message.ingest.retrying", retrying, ConcurrentMap::size)
+                .description("等待重试写入的消息数")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        running = true;
+        writerThread = new Thread(this::writeLoop, "message-ingest-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        log.info("消息批量落库管道已启动: batchSize={}, flushIntervalMs={}, queueCapacity={}",
+                batchSize, flushIntervalMs, queueCapacity);
+    }
+
+    /**
+     * 提交待写入的消息（消息ID和创建时间需由调用方预先生成）
+     */
+    public void submit(Message message) {
+        boolean accepted = false;
+        if (running) {
+            try {
+                accepted = queue.offer(message, offerTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            // 等待入队期间管道可能已关闭并完成最后一次排空：仍在队列中说明没有被写入，取回后同步写入；
+            // 已被取走的消息由写线程或关闭时的排空负责写入
+            if (accepted && !running && queue.remove(message)) {
+                accepted = false;
+            }
+        }
+
+        if (!accepted) {
+            // 队列已满或管道已关闭：由调用线程同步写入，对上游形成背压
+            log.warn("消息落库队列已满或已关闭，同步写入消息: {}", message.getId());
+            mongoTemplate.insert(message);
+        }
+    }
+
+    /**
+     * 当前排队等待写入的消息数量（含等待重试的消息）
+     */
+    public int getPendingCount() {
+        return queue.size() + retrying.size();
+    }
+
+    private void writeLoop() {
+        List<Message> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                Message first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                // 从第一条消息到达开始计时，攒满一批或超过时间窗口即写入
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    if (batch.size() >= batchSize) {
+                        break;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    Message next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } finally {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<Message> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            mongoTemplate.insert(batch, Message.class);
+            log.debug("批量写入 {} 条消息", batch.size());
+            if (!retrying.isEmpty()) {
+                batch.forEach(message -> retrying.remove(message.getId()));
+            }
+        } catch (Exception e) {
+            // 批内可能已有部分写入（或是重试的消息已写入过），逐条按ID upsert
+            log.error("批量写入 {} 条消息失败，逐条重试: {}", batch.size(), e.getMessage());
+            for (Message message : batch) {
+                saveOrRetry(message);
+            }
+        }
+    }
+
+    private void saveOrRetry(Message message) {
+        try {
+            mongoTemplate.save(message);
+            retrying.remove(message.getId());
+        } catch (Exception e) {
+            failedCounter.increment();
+            RetryState state = retrying.computeIfAbsent(message.getId(), id -> new RetryState(message));
+            int attempts = ++state.attempts;
+            if (attempts > maxRetries || !running) {
+                deadLetter(message, e);
+                return;
+            }
+            long delay = Math.min(retryBackoffMs << Math.min(attempts - 1, 20), retryBackoffMaxMs);
+            log.warn("消息写入失败，{}ms 后第 {} 次重试: {}, error={}", delay, attempts, message.getId(), e.getMessage());
+            retryScheduler.schedule(() -> requeue(message), delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 重新放回写入队列，队列已满或管道已关闭时直接在重试线程中写入
+     */
+    private void requeue(Message message) {
+        if (!running || !queue.offer(message)) {
+            saveOrRetry(message);
+        }
+    }
+
+    private void deadLetter(Message message, Exception cause) {
+        retrying.remove(message.getId());
+        deadLetterCounter.increment();
+        try {
+            mongoTemplate.save(message, DEAD_LETTER_COLLECTION);
+            log.error("消息重试写入失败，已转入死信集合 {}: {}, error={}",
+                    DEAD_LETTER_COLLECTION, message.getId(), cause.getMessage());
+        } catch (Exception e) {
+            log.error("消息写入死信集合也失败，消息丢失: id={}, senderId={}, receiverId={}, error={}",
+                    message.getId(), message.getSenderId(), message.getReceiverId(), e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // 不中断写线程，避免打断正在进行的MongoDB写入；写线程最多等待一个轮询周期后退出
+        running = false;
+        if (writerThread != null) {
+            try {
+                writerThread.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // 停止重试调度，等待重试的消息与队列中剩余的消息一起写入，失败的直接转入死信集合
+        retryScheduler.shutdownNow();
+        List<Message> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        Set<String> queuedIds = remaining.stream().map(Message::getId).collect(Collectors.toSet());
+        retrying.values().stream()
+                .filter(state -> !queuedIds.contains(state.message.getId()))
+                .forEach(state -> remaining.add(state.message));
+        for (int from = 0; from < remaining.size(); from += batchSize) {
+            List<Message> batch = remaining.subList(from, Math.min(from + batchSize, remaining.size()));
+            flush(batch);
+        }
+        log.info("消息批量落库管道已关闭，关闭时写入 {} 条消息", remaining.size());
+    }
+
+    private static class RetryState {
+        private final Message message;
+        private int attempts;
+
+        RetryState(Message message) {
+            this.message = message;
+        }
+    }
+}
@@ -1,15 +1,21 @@
 package com.chatapp.message.service.impl;
 
+import com.chatapp.message.dto.MessageCursorPage;
 import com.chatapp.message.dto.MessageDTO;
 import com.chatapp.message.dto.EncryptedMessageDto;
 import com.chatapp.message.dto.MessageQueryParams;
 import com.chatapp.message.exception.ResourceNotFoundException;
+import com.chatapp.message.job.ConversationKeyBackfillJob;
 import com.chatapp.message.model.Message;
+import com.chatapp.message.model.ReadWatermark;
 import com.chatapp.message.repository.MessageRepository;
+import com.chatapp.message.service.AttachmentStore;
 import com.chatapp.message.service.MessageService;
 import com.chatapp.message.service.EncryptionService;
+import com.chatapp.message.service.ReadWatermarkService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import com.chatapp.message.config.RabbitMQConfig;
 import org.springframework.data.domain.Page;
@@ -17,17 +23,23 @@ import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -43,38 +55,67 @@ public class MessageServiceImpl implements MessageService {
     private final MongoTemplate mongoTemplate;
     private final RabbitTemplate rabbitTemplate;
     private final EncryptionService encryptionService;
+    private final MessageIngestPipeline messageIngestPipeline;
+    private final ReadWatermarkService readWatermarkService;
+    private final ConversationProjector conversationProjector;
+    private final AttachmentStore attachmentStore;
+    private final ConversationKeyBackfillJob conversationKeyBackfillJob;
     
-    // RabbitMQ路由键
-    private static final String PRIVATE_MESSAGE_ROUTING_KEY = "message.send.private";
-    private static final String GROUP_MESSAGE_ROUTING_KEY = "message.send.group";
     private static final Duration RECALL_TIME_LIMIT = Duration.ofMinutes(2); // 2分钟内可撤回
     
+    // 游标分页单页最多返回的消息数
+    private static final int MAX_HISTORY_PAGE_SIZE = 100;
+    
     @Override
     public MessageDTO saveMessage(MessageDTO messageDto) {
-        Message message = Message.builder()
+        Message savedMessage = messageRepository.save(newMessage(messageDto));
+        log.info("消息已保存: {}", savedMessage.getId());
+        conversationProjector.project(savedMessage);
+        
+        return MessageDTO.fromEntity(savedMessage);
+    }
+
+    @Override
+    public MessageDTO saveMessageAsync(MessageDTO messageDto) {
+        Message message = newMessage(messageDto);
+        message.setId(new ObjectId().toHexString());
+        message.setAttachments(messageDto.getAttachments());
+        // 与 sendMessage 相同，落库后由发件箱中继发布到 chat.exchange 和 notification.send
+        message.setOutboxPending(true);
+        
+        messageIngestPipeline.submit(message);
+        log.debug("消息已提交到落库管道: {}", message.getId());
+        attachmentStore.retain(message.getAttachments());
+        conversationProjector.project(message);
+        
+        return MessageDTO.fromEntity(message);
+    }
+
+    /**
+     * 根据客户端提交的消息构建待保存的消息实体
+     */
+    private Message newMessage(MessageDTO messageDto) {
+        Message.MessageType messageType = Message.MessageType.valueOf(messageDto.getMessageType());
+        return Message.builder()
                 .senderId(messageDto.getSenderId())
                 .receiverId(messageDto.getReceiverId())
+                .conversationKey(Message.conversationKeyOf(messageType, messageDto.getSenderId(), messageDto.getReceiverId()))
                 .content(messageDto.getContent())
                 .contentType(Message.ContentType.valueOf(messageDto.getContentType()))
-                .messageType(Message.MessageType.valueOf(messageDto.getMessageType()))
+                .messageType(messageType)
                 .status(Message.MessageStatus.SENT)
                 .isEncrypted(messageDto.isEncrypted())
                 .createTime(LocalDateTime.now())
                 .build();
-                
-        Message savedMessage = messageRepository.save(message);
-        log.info("消息已保存: {}", savedMessage.getId());
-        
-        return MessageDTO.fromEntity(savedMessage);
     }
 
     @Override
     public MessageDTO sendMessage(MessageDTO messageDto) {
         Message message = messageDto.toEntity();
         
-        // 设置初始状态
-        if (message.getStatus() == null) {
-            message.setStatus(Message.MessageStatus.SENDING);
+        // 直接写入最终状态，投递由发件箱中继完成
+        if (message.getStatus() == null || message.getStatus() == Message.MessageStatus.SENDING) {
+            message.setStatus(Message.MessageStatus.SENT);
         }
         
         // 设置创建时间和更新时间
@@ -82,20 +123,12 @@ public class MessageServiceImpl implements MessageService {
         message.setCreateTime(now);
         message.setUpdateTime(now);
         
-        // 保存消息
+        // 带发件箱标记写入一次，由MessageOutboxRelay批量投递到RabbitMQ
+        message.setOutboxPending(true);
         Message savedMessage = messageRepository.save(message);
-        log.info("消息已保存: {}", savedMessage.getId());
-        
-        // 通过RabbitMQ发送消息，根据消息类型选择不同的路由键
-        String routingKey = message.getMessageType() == Message.MessageType.PRIVATE ? 
-            PRIVATE_MESSAGE_ROUTING_KEY : GROUP_MESSAGE_ROUTING_KEY;
-        
-        rabbitTemplate.convertAndSend(RabbitMQConfig.CHAT_EXCHANGE, routingKey, MessageDTO.fromEntity(savedMessage));
-        log.info("消息已发送到RabbitMQ, 交换机: {}, 路由键: {}", RabbitMQConfig.CHAT_EXCHANGE, routingKey);
-        
-        // 更新消息状态为已发送
-        savedMessage.setStatus(Message.MessageStatus.SENT);
-        savedMessage = messageRepository.save(savedMessage);
+        log.info("消息已保存并进入发件箱: {}", savedMessage.getId());
+        attachmentStore.retain(savedMessage.getAttachments());
+        conversationProjector.project(savedMessage);
         
         return MessageDTO.fromEntity(savedMessage);
     }
@@ -110,24 +143,28 @@ public class MessageServiceImpl implements MessageService {
     
     @Override
     public MessageDTO updateMessageStatus(String messageId, Message.MessageStatus status) {
+        // 与批量回执相同的条件更新，状态只前进不回退，迟到的DELIVERED不会覆盖READ
+        Message updatedMessage = mongoTemplate.findAndModify(
+                new Query(Criteria.where("id").is(messageId).and("status").in(status.predecessors())),
+                statusUpdate(status),
+                FindAndModifyOptions.options().returnNew(true),
+                Message.class);
+        if (updatedMessage != null) {
+            log.info("消息状态已更新: {}, 新状态: {}", messageId, status);
+            return MessageDTO.fromEntity(updatedMessage);
+        }
+        
         Message message = messageRepository.findById(messageId)
                 .orElseThrow(() -> new ResourceNotFoundException("消息不存在: " + messageId));
-                
-        message.setStatus(status);
-        message.setUpdateTime(LocalDateTime.now());
-        
-        Message updatedMessage = messageRepository.save(message);
-        log.info("消息状态已更新: {}, 新状态: {}", messageId, status);
-        
-        return MessageDTO.fromEntity(updatedMessage);
+        log.info("消息 {} 当前状态为 {}，忽略状态更新: {}", messageId, message.getStatus(), status);
+        return MessageDTO.fromEntity(message);
     }
     
     @Override
     public int updateMessageStatusBatch(List<String> messageIds, Message.MessageStatus status) {
-        Query query = new Query(Criteria.where("id").in(messageIds));
-        Update update = new Update()
-                .set("status", status)
-                .set("updateTime", LocalDateTime.now());
+        Query query = new Query(Criteria.where("id").in(messageIds)
+                .and("status").in(status.predecessors()));
+        Update update = statusUpdate(status);
                 
         long count = mongoTemplate.updateMulti(query, update, Message.class).getModifiedCount();
         log.info("已批量更新 {} 条消息状态为 {}", count, status);
@@ -135,21 +172,20 @@ public class MessageServiceImpl implements MessageService {
         return (int) count;
     }
     
+    private static Update statusUpdate(Message.MessageStatus status) {
+        return new Update()
+                .set("status", status)
+                .set("updateTime", LocalDateTime.now());
+    }
+    
     @Override
     public Page<MessageDTO> getPrivateMessages(Long userId1, Long userId2, int page, int size) {
         log.info("使用MongoTemplate查询用户 {} 和用户 {} 的私聊历史", userId1, userId2);
         
         try {
-            // 使用MongoTemplate构建查询
+            // 使用MongoTemplate构建查询，按会话键走单一索引区间
             Query query = new Query();
-            
-            // 构建查询条件：(senderId=userId1 AND receiverId=userId2) OR (senderId=userId2 AND receiverId=userId1)
-            Criteria criteria = new Criteria().orOperator(
-                Criteria.where("senderId").is(userId1).and("receiverId").is(userId2).and("messageType").is(Message.MessageType.PRIVATE),
-                Criteria.where("senderId").is(userId2).and("receiverId").is(userId1).and("messageType").is(Message.MessageType.PRIVATE)
-            );
-            
-            query.addCriteria(criteria);
+            query.addCriteria(privateConversationCriteria(userId1, userId2));
             query.with(Sort.by(Sort.Direction.DESC, "createTime"));
             
             // 分页
@@ -166,6 +202,7 @@ public class MessageServiceImpl implements MessageService {
             List<MessageDTO> messageDTOs = messages.stream()
                     .map(MessageDTO::fromEntity)
                     .collect(Collectors.toList());
+            applyReadWatermarks(messageDTOs, userId1, userId2);
             
             // 创建分页结果
             PageRequest pageRequest = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "createTime"));
@@ -179,12 +216,122 @@ public class MessageServiceImpl implements MessageService {
         }
     }
     
+    @Override
+    public MessageCursorPage getPrivateMessagesBefore(Long userId1, Long userId2, String before, int size) {
+        log.info("基于游标查询用户 {} 和用户 {} 的私聊历史, 游标: {}, 大小: {}", userId1, userId2, before, size);
+        
+        if (size <= 0) {
+            throw new IllegalStateException("每页大小必须大于0");
+        }
+        size = Math.min(size, MAX_HISTORY_PAGE_SIZE);
+        
+        Criteria conversation = privateConversationCriteria(userId1, userId2);
+        
+        Query query = new Query();
+        if (before != null && !before.isEmpty()) {
+            // 游标条件：createTime < t OR (createTime = t AND id < id)
+            Object[] cursor = decodeCursor(before);
+            LocalDateTime cursorTime = (LocalDateTime) cursor[0];
+            String cursorId = (String) cursor[1];
+            Criteria olderThanCursor = new Criteria().orOperator(
+                Criteria.where("createTime").lt(cursorTime),
+                Criteria.where("createTime").is(cursorTime).and("id").lt(cursorId)
+            );
+            query.addCriteria(new Criteria().andOperator(conversation, olderThanCursor));
+        } else {
+            query.addCriteria(conversation);
+        }
+        
+        // 多取一条用于判断是否还有更早的消息，不再执行count
+        query.with(Sort.by(Sort.Direction.DESC, "createTime").and(Sort.by(Sort.Direction.DESC, "id")));
+        query.limit(size + 1);
+        
+        List<Message> messages = mongoTemplate.find(query, Message.class);
+        boolean hasMore = messages.size() > size;
+        if (hasMore) {
+            messages = messages.subList(0, size);
+        }
+        
+        String nextCursor = hasMore ? encodeCursor(messages.get(messages.size() - 1)) : null;
+        
+        // 返回按时间正序排列的消息（最早的在前面）
+        List<MessageDTO> messageDTOs = messages.stream()
+                .map(MessageDTO::fromEntity)
+                .collect(Collectors.toList());
+        Collections.reverse(messageDTOs);
+        applyReadWatermarks(messageDTOs, userId1, userId2);
+        
+        return MessageCursorPage.builder()
+                .messages(messageDTOs)
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .build();
+    }
+    
+    /**
+     * 私聊会话查询条件：(conversationKey, messageType) 命中 conversationKey_time_id 索引；
+     * 会话键回填完成前，尚未回填的历史消息按收发双方匹配（走 receiverId_time 索引）
+     */
+    private Criteria privateConversationCriteria(Long userId1, Long userId2) {
+        Criteria byKey = Criteria.where("conversationKey").is(Message.privateConversationKey(userId1, userId2))
+                .and("messageType").is(Message.MessageType.PRIVATE);
+        if (conversationKeyBackfillJob.isCompleted()) {
+            return byKey;
+        }
+        return new Criteria().orOperator(byKey,
+                legacyPrivateCriteria(userId1, userId2),
+                legacyPrivateCriteria(userId2, userId1));
+    }
+    
+    private static Criteria legacyPrivateCriteria(Long senderId, Long receiverId) {
+        return Criteria.where("receiverId").is(receiverId)
+                .and("senderId").is(senderId)
+                .and("messageType").is(Message.MessageType.PRIVATE)
+                .and("conversationKey").exists(false);
+    }
+    
+    /**
+     * 将消息的 (createTime, id) 编码为不透明游标
+     */
+    private String encodeCursor(Message message) {
+        long epochMillis = message.getCreateTime().toInstant(ZoneOffset.UTC).toEpochMilli();
+        String raw = epochMillis + ":" + message.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * 解析游标，返回 [createTime, id]
+     */
+    private Object[] decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(':');
+            long epochMillis = Long.parseLong(raw.substring(0, separator));
+            LocalDateTime createTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneOffset.UTC);
+            return new Object[] { createTime, raw.substring(separator + 1) };
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("无效的分页游标: " + cursor);
+        }
+    }
+    
     @Override
     public Page<MessageDTO> getGroupMessages(Long groupId, int page, int size) {
         PageRequest pageRequest = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "createTime"));
         
-        Page<Message> messagePage = messageRepository.findByMessageTypeAndReceiverIdOrderByCreateTimeDesc(
-                Message.MessageType.GROUP, groupId, pageRequest);
+        if (!conversationKeyBackfillJob.isCompleted()) {
+            // 会话键回填完成前，同时匹配尚未回填的历史群消息
+            Query query = new Query(new Criteria().orOperator(
+                    Criteria.where("conversationKey").is(Message.groupConversationKey(groupId)),
+                    Criteria.where("receiverId").is(groupId)
+                            .and("messageType").is(Message.MessageType.GROUP)
+                            .and("conversationKey").exists(false)));
+            long total = mongoTemplate.count(query, Message.class);
+            List<Message> messages = mongoTemplate.find(query.with(pageRequest), Message.class);
+            return new PageImpl<>(messages, pageRequest, total).map(MessageDTO::fromEntity);
+        }
+        
+        Page<Message> messagePage = messageRepository.findByConversationKeyOrderByCreateTimeDesc(
+                Message.groupConversationKey(groupId), pageRequest);
                 
         return messagePage.map(MessageDTO::fromEntity);
     }
@@ -242,26 +389,73 @@ public class MessageServiceImpl implements MessageService {
     
     @Override
     public List<MessageDTO> getUnreadMessages(Long userId) {
-        List<Message> unreadMessages = messageRepository.findByReceiverIdAndStatusNot(userId, Message.MessageStatus.READ);
-        
-        return unreadMessages.stream()
+        return findUnreadMessages(userId).stream()
                 .map(MessageDTO::fromEntity)
                 .collect(Collectors.toList());
     }
     
+    /**
+     * 根据已读水位查询未读私聊消息
+     * 单个查询走 receiverId_time 索引区间，包括没有会话摘要的会话（如系统消息）；
+     * 历史上已标记为 READ 的消息同样视为已读
+     */
+    private List<Message> findUnreadMessages(Long userId) {
+        Query query = new Query(unreadCriteria(userId)).with(Sort.by(Sort.Direction.ASC, "createTime"));
+        return mongoTemplate.find(query, Message.class);
+    }
+    
+    private long countUnreadMessages(Long userId) {
+        return mongoTemplate.count(new Query(unreadCriteria(userId)), Message.class);
+    }
+    
+    /**
+     * 构建未读消息查询条件
+     * 以全局水位（没有则不限）作为接收时间下界；会话水位晚于全局水位的会话，用 $nor 排除会话水位之前的消息。
+     * 排除条件的数量只取决于用户单独标记过已读的会话，而不是会话总数，标记全部已读后全部失效。
+     */
+    private Criteria unreadCriteria(Long userId) {
+        Map<String, LocalDateTime> watermarks = readWatermarkService.getWatermarks(userId);
+        LocalDateTime globalWatermark = watermarks.get(ReadWatermark.ALL_CONVERSATIONS);
+        
+        Criteria criteria = Criteria.where("receiverId").is(userId)
+                .and("messageType").is(Message.MessageType.PRIVATE)
+                .and("status").ne(Message.MessageStatus.READ);
+        if (globalWatermark != null) {
+            criteria.and("createTime").gt(globalWatermark);
+        }
+        
+        List<Criteria> readRanges = new ArrayList<>();
+        for (Map.Entry<String, LocalDateTime> watermark : watermarks.entrySet()) {
+            // 不晚于全局水位的会话水位已被时间下界覆盖
+            if (ReadWatermark.ALL_CONVERSATIONS.equals(watermark.getKey()) || watermark.getValue() == null
+                    || (globalWatermark != null && !watermark.getValue().isAfter(globalWatermark))) {
+                continue;
+            }
+            readRanges.add(Criteria.where("conversationKey").is(watermark.getKey())
+                    .and("createTime").lte(watermark.getValue()));
+        }
+        if (!readRanges.isEmpty()) {
+            criteria.norOperator(readRanges.toArray(new Criteria[0]));
+        }
+        return criteria;
+    }
+    
     @Override
     public int markMessagesAsRead(Long receiverId, Long senderId) {
-        Query query = new Query(
-                Criteria.where("receiverId").is(receiverId)
-                        .and("senderId").is(senderId)
-                        .and("status").ne(Message.MessageStatus.READ)
-        );
-        
-        Update update = new Update()
-                .set("status", Message.MessageStatus.READ)
-                .set("updateTime", LocalDateTime.now());
+        String conversationKey = Message.privateConversationKey(receiverId, senderId);
+        LocalDateTime now = LocalDateTime.now();
         
-        long count = mongoTemplate.updateMulti(query, update, Message.class).getModifiedCount();
+        // 只推进一条水位记录，不再改写消息文档
+        LocalDateTime previous = readWatermarkService.advance(receiverId, conversationKey, now);
+        conversationProjector.resetUnread(receiverId, senderId);
+        
+        // 统计本次新变为已读的消息数量（conversationKey_time_id 索引区间）
+        Criteria criteria = Criteria.where("conversationKey").is(conversationKey)
+                .and("receiverId").is(receiverId);
+        criteria = previous != null
+                ? criteria.and("createTime").gt(previous).lte(now)
+                : criteria.and("createTime").lte(now);
+        long count = mongoTemplate.count(new Query(criteria), Message.class);
         log.info("已标记用户 {} 来自发送者 {} 的 {} 条消息为已读", receiverId, senderId, count);
         
         return (int) count;
@@ -269,29 +463,50 @@ public class MessageServiceImpl implements MessageService {
     
     @Override
     public int markAllMessagesAsRead(Long userId) {
-        Query query = new Query(
-                Criteria.where("receiverId").is(userId)
-                        .and("status").ne(Message.MessageStatus.READ)
-        );
+        // 统计推进前的未读数量（只计数不加载消息），然后推进全局水位
+        int count = (int) countUnreadMessages(userId);
+        readWatermarkService.advance(userId, ReadWatermark.ALL_CONVERSATIONS, LocalDateTime.now());
+        conversationProjector.resetAllUnread(userId);
+        log.info("已标记用户 {} 的 {} 条消息为已读", userId, count);
         
-        Update update = new Update()
-                .set("status", Message.MessageStatus.READ)
-                .set("updateTime", LocalDateTime.now());
+        return count;
+    }
+    
+    /**
+     * 根据接收者的已读水位推导私聊消息的已读状态
+     */
+    private void applyReadWatermarks(List<MessageDTO> messages, Long userId1, Long userId2) {
+        if (messages.isEmpty()) {
+            return;
+        }
         
-        long count = mongoTemplate.updateMulti(query, update, Message.class).getModifiedCount();
-        log.info("已标记用户 {} 的 {} 条消息为已读", userId, count);
+        Map<Long, LocalDateTime> watermarks = readWatermarkService.getEffectiveWatermarks(
+                List.of(userId1, userId2), Message.privateConversationKey(userId1, userId2));
+        if (watermarks.isEmpty()) {
+            return;
+        }
         
-        return (int) count;
+        for (MessageDTO message : messages) {
+            LocalDateTime watermark = watermarks.get(message.getReceiverId());
+            boolean pendingRead = !Message.MessageStatus.READ.name().equals(message.getStatus())
+                    && !Message.MessageStatus.FAILED.name().equals(message.getStatus());
+            if (pendingRead && watermark != null && message.getCreateTime() != null
+                    && !message.getCreateTime().isAfter(watermark)) {
+                message.setStatus(Message.MessageStatus.READ.name());
+            }
+        }
     }
     
     @Override
     public void deleteMessage(String messageId) {
-        if (!messageRepository.existsById(messageId)) {
-            throw new ResourceNotFoundException("消息不存在: " + messageId);
-        }
+        Message message = messageRepository.findById(messageId)
+                .orElseThrow(() -> new ResourceNotFoundException("消息不存在: " + messageId));
         
         messageRepository.deleteById(messageId);
         log.info("消息已删除: {}", messageId);
+        
+        // 释放消息对附件的引用，最后一个引用释放时删除文件
+        attachmentStore.release(message.getAttachments());
     }
     
     @Override
@@ -326,23 +541,23 @@ public class MessageServiceImpl implements MessageService {
 
     @Override
     public MessageDTO saveEncryptedMessage(EncryptedMessageDto encryptedMessageDto) {
+        Message.MessageType messageType = Message.MessageType.valueOf(encryptedMessageDto.getMessageType());
         Message message = Message.builder()
                 .senderId(encryptedMessageDto.getSenderId())
                 .receiverId(encryptedMessageDto.getReceiverId())
+                .conversationKey(Message.conversationKeyOf(messageType, encryptedMessageDto.getSenderId(), encryptedMessageDto.getReceiverId()))
                 .content(encryptedMessageDto.getEncryptedContent())
                 .contentType(Message.ContentType.valueOf(encryptedMessageDto.getContentType()))
-                .messageType(Message.MessageType.valueOf(encryptedMessageDto.getMessageType()))
+                .messageType(messageType)
                 .status(Message.MessageStatus.SENT)
                 .isEncrypted(true)
                 .createTime(LocalDateTime.now())
+                .outboxPending(true)
                 .build();
         
+        // 发送到RabbitMQ由发件箱中继完成
         Message savedMessage = messageRepository.save(message);
-        
-        // 发送消息到RabbitMQ
-        String routingKey = message.getMessageType() == Message.MessageType.PRIVATE ? 
-            PRIVATE_MESSAGE_ROUTING_KEY : GROUP_MESSAGE_ROUTING_KEY;
-        rabbitTemplate.convertAndSend(RabbitMQConfig.CHAT_EXCHANGE, routingKey, MessageDTO.fromEntity(savedMessage));
+        conversationProjector.project(savedMessage);
         
         return MessageDTO.fromEntity(savedMessage);
     }
@@ -0,0 +1,69 @@
+package com.chatapp.message.service.impl;
+
+import com.chatapp.message.model.ReadWatermark;
+import com.chatapp.message.repository.ReadWatermarkRepository;
+import com.chatapp.message.service.ReadWatermarkService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 已读水位服务实现类
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ReadWatermarkServiceImpl implements ReadWatermarkService {
+
+    private final ReadWatermarkRepository readWatermarkRepository;
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public LocalDateTime advance(Long userId, String conversationKey, LocalDateTime readTime) {
+        Query query = new Query(Criteria.where("userId").is(userId).and("conversationKey").is(conversationKey));
+        Update update = new Update()
+                .max("lastReadTime", readTime)
+                .set("updateTime", LocalDateTime.now());
+        
+        // upsert并返回更新前的记录，$max保证水位只前进
+        ReadWatermark previous = mongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().upsert(true).returnNew(false), ReadWatermark.class);
+        log.debug("已读水位已推进: userId={}, conversationKey={}, readTime={}", userId, conversationKey, readTime);
+        
+        return previous != null ? previous.getLastReadTime() : null;
+    }
+
+    @Override
+    public Map<String, LocalDateTime> getWatermarks(Long userId) {
+        Map<String, LocalDateTime> watermarks = new HashMap<>();
+        for (ReadWatermark watermark : readWatermarkRepository.findByUserId(userId)) {
+            watermarks.put(watermark.getConversationKey(), watermark.getLastReadTime());
+        }
+        return watermarks;
+    }
+
+    @Override
+    public Map<Long, LocalDateTime> getEffectiveWatermarks(List<Long> userIds, String conversationKey) {
+        List<ReadWatermark> watermarks = readWatermarkRepository.findByUserIdInAndConversationKeyIn(
+                userIds, List.of(conversationKey, ReadWatermark.ALL_CONVERSATIONS));
+        
+        Map<Long, LocalDateTime> effective = new HashMap<>();
+        for (ReadWatermark watermark : watermarks) {
+            if (watermark.getLastReadTime() != null) {
+                effective.merge(watermark.getUserId(), watermark.getLastReadTime(),
+                        (a, b) -> a.isAfter(b) ? a : b);
+            }
+        }
+        return effective;
+    }
+}
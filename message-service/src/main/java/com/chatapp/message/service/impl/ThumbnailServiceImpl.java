@@ -0,0 +1,270 @@
+package com.chatapp.message.service.impl;
+
+import com.chatapp.message.service.AttachmentStore;
+import com.chatapp.message.service.ThumbnailService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.imageio.IIOException;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.FileImageInputStream;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 缩略图服务实现类
+ * 使用JDK自带的ImageIO在有界线程池中生成缩略图：解码时按目标尺寸做子采样，一次解码生成所有尺寸，
+ * PNG/GIF输出PNG以保留透明通道，其余输出JPEG，缩略图通过附件存储与原图放在一起。
+ * 队列已满时直接放弃，请求缩略图时会重新安排生成。
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ThumbnailServiceImpl implements ThumbnailService {
+
+    private static final float JPEG_QUALITY = 0.85f;
+
+    private final AttachmentStore attachmentStore;
+
+    @Value("${message.thumbnail.widths:128,512}")
+    private int[] widths;
+
+    @Value("${message.thumbnail.workers:2}")
+    private int workers;
+
+    @Value("${message.thumbnail.queue-capacity:200}")
+    private int queueCapacity;
+
+    // 超过该像素数的图片不生成缩略图，避免解码超大图片
+    @Value("${message.thumbnail.max-source-pixels:100000000}")
+    private long maxSourcePixels;
+
+    private ThreadPoolExecutor executor;
+
+    // 排队或正在生成的文件，避免重复提交
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    // 无法解码的文件，不再重复尝试
+    private final Cache<String, Boolean> unsupported = Caffeine.newBuilder()
+            .maximumSize(10000)
+            .build();
+
+    @PostConstruct
+    public void init() {
+        Arrays.sort(widths);
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "thumbnail-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public void generateAsync(String filename) {
+        if (!isImage(filename) || unsupported.getIfPresent(filename) != null || !inFlight.add(filename)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    generate(filename);
+                } finally {
+                    inFlight.remove(filename);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(filename);
+            log.warn("缩略图队列已满，暂不生成: {}", filename);
+        }
+    }
+
+    @Override
+    public Path resolve(String filename, int width) {
+        int size = widths[widths.length - 1];
+        for (int candidate : widths) {
+            if (candidate >= width) {
+                size = candidate;
+                break;
+            }
+        }
+        Path derivative = attachmentStore.derivativePath(filename, variantOf(size, filename));
+        if (derivative == null) {
+            return null;
+        }
+        if (Files.exists(derivative)) {
+            return derivative;
+        }
+        generateAsync(filename);
+        return null;
+    }
+
+    private void generate(String filename) {
+        Path source = attachmentStore.resolve(filename);
+        if (source == null) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        BufferedImage image;
+        try {
+            image = decode(source, widths[widths.length - 1]);
+        } catch (IIOException | RuntimeException e) {
+            // 图片数据损坏或解码器不支持，重试也不会成功
+            unsupported.put(filename, Boolean.TRUE);
+            log.warn("无法解码图片，不再生成缩略图: {}, error={}", filename, e.getMessage());
+            return;
+        } catch (IOException e) {
+            // 读取文件出错可能是暂时的，下次请求缩略图时重新生成
+            log.warn("读取图片失败，稍后重试: {}, error={}", filename, e.getMessage());
+            return;
+        }
+        if (image == null) {
+            unsupported.put(filename, Boolean.TRUE);
+            return;
+        }
+
+        String format = hasAlphaFormat(filename) ? "png" : "jpg";
+        boolean alpha = "png".equals(format) && image.getColorModel().hasAlpha();
+        try {
+            for (int width : widths) {
+                Path target = attachmentStore.derivativePath(filename, variantOf(width, filename));
+                if (target == null || Files.exists(target)) {
+                    continue;
+                }
+                write(scale(image, Math.min(width, image.getWidth()), alpha), format, target);
+            }
+            log.debug("缩略图已生成: {}, 耗时 {} ms", filename, System.currentTimeMillis() - start);
+        } catch (IOException e) {
+            log.warn("写入缩略图失败，稍后重试: {}, error={}", filename, e.getMessage());
+        }
+    }
+
+    /**
+     * 解码图片，按最大缩略图宽度的两倍做子采样，大图不会以原始分辨率解码
+     */
+    private BufferedImage decode(Path source, int maxWidth) throws IOException {
+        // 直接打开文件，文件读取失败时抛出IOException而不是被当作无法解码
+        try (ImageInputStream in = new FileImageInputStream(source.toFile())) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxSourcePixels) {
+                    log.warn("图片尺寸过大，不生成缩略图: {}x{}", width, height);
+                    return null;
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, width / (maxWidth * 2));
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static BufferedImage scale(BufferedImage source, int width, boolean alpha) {
+        int height = Math.max(1, (int) Math.round((double) source.getHeight() * width / source.getWidth()));
+        BufferedImage scaled = new BufferedImage(width, height,
+                alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            if (!alpha) {
+                graphics.setColor(Color.WHITE);
+                graphics.fillRect(0, 0, width, height);
+            }
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    /**
+     * 先写入临时文件再原子替换，读取方不会看到写了一半的缩略图
+     */
+    private static void write(BufferedImage image, String format, Path target) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(format).next();
+        // 文件无法创建时ImageIO返回null而不是抛出异常
+        ImageOutputStream stream = ImageIO.createImageOutputStream(temp.toFile());
+        if (stream == null) {
+            writer.dispose();
+            throw new IOException("无法创建缩略图文件: " + temp);
+        }
+        try (ImageOutputStream out = stream) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if ("jpg".equals(format)) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(JPEG_QUALITY);
+            }
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * 缩略图后缀：PNG/GIF可能带透明通道，统一输出PNG，其余输出JPEG
+     */
+    private static String variantOf(int width, String filename) {
+        return "w" + width + (hasAlphaFormat(filename) ? ".png" : ".jpg");
+    }
+
+    private static boolean hasAlphaFormat(String filename) {
+        String lower = filename.toLowerCase();
+        return lower.endsWith(".png") || lower.endsWith(".gif");
+    }
+
+    private static boolean isImage(String filename) {
+        return MediaTypeFactory.getMediaType(filename)
+                .map(type -> "image".equals(type.getType()) && !MediaType.valueOf("image/svg+xml").includes(type))
+                .orElse(false);
+    }
+}
@@ -1,9 +1,16 @@
 package com.chatapp.message.service.impl;
 
 import com.chatapp.message.service.UserService;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
@@ -12,9 +19,14 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 用户服务实现类
@@ -25,85 +37,259 @@ import java.util.concurrent.ConcurrentHashMap;
 public class UserServiceImpl implements UserService {
 
     private final RestTemplate restTemplate;
-    
-    // 用户信息缓存，避免频繁请求用户服务
-    private final Map<Long, Map<String, Object>> userInfoCache = new ConcurrentHashMap<>();
-    
+    private final MeterRegistry meterRegistry;
+
     @Value("${services.user.url:http://user-service:8080}")
     private String userServiceUrl;
-    
+
+    // 与用户服务批量接口的单次上限保持一致
+    private static final int BATCH_SIZE = 1000;
+
+    @Value("${message.user-cache.max-size:10000}")
+    private long cacheMaxSize;
+
+    @Value("${message.user-cache.ttl:10m}")
+    private Duration cacheTtl;
+
+    @Value("${message.user-cache.refresh-after:5m}")
+    private Duration refreshAfter;
+
+    @Value("${message.user-cache.negative-ttl:30s}")
+    private Duration negativeTtl;
+
+    // 用户信息缓存：容量有上限，按TTL过期，过半生命周期后后台刷新，获取失败的默认信息只短暂缓存
+    private LoadingCache<Long, CachedUserInfo> userInfoCache;
+
+    @PostConstruct
+    public void initCache() {
+        userInfoCache = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfter(new UserInfoExpiry())
+                .refreshAfterWrite(refreshAfter)
+                .recordStats()
+                .build(new UserInfoLoader());
+
+        // 命中/未命中/淘汰指标通过actuator的 cache.* 指标暴露
+        CaffeineCacheMetrics.monitor(meterRegistry, userInfoCache, "userInfoCache");
+    }
+
     @Override
     public Map<String, Object> getUserBasicInfo(Long userId) {
-        // 先尝试从缓存获取
-        if (userInfoCache.containsKey(userId)) {
-            log.debug("从缓存获取用户信息: {}", userId);
-            return userInfoCache.get(userId);
+        return userInfoCache.get(userId).getInfo();
+    }
+
+    @Override
+    public Map<Long, Map<String, Object>> getUserBasicInfoBatch(Collection<Long> userIds) {
+        List<Long> ids = new ArrayList<>(userIds.size());
+        for (Long userId : userIds) {
+            if (userId != null) {
+                ids.add(userId);
+            }
+        }
+        Map<Long, Map<String, Object>> result = new HashMap<>();
+        userInfoCache.getAll(ids).forEach((userId, cached) -> result.put(userId, cached.getInfo()));
+        return result;
+    }
+
+    @Override
+    public Map<Long, Map<String, Object>> getCachedUserBasicInfo(Collection<Long> userIds) {
+        Map<Long, Map<String, Object>> result = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        Map<Long, CachedUserInfo> present = userInfoCache.getAllPresent(userIds);
+        for (Long userId : userIds) {
+            CachedUserInfo cached = present.get(userId);
+            if (cached != null) {
+                result.put(userId, cached.getInfo());
+            } else if (userId != null) {
+                missing.add(userId);
+            }
+        }
+        if (!missing.isEmpty()) {
+            // 在缓存的后台线程池中批量加载，调用方不等待
+            CompletableFuture.runAsync(() -> userInfoCache.getAll(missing));
         }
-        
+        return result;
+    }
+
+    @Override
+    public void evictUserInfo(Long userId) {
+        userInfoCache.invalidate(userId);
+        log.debug("用户信息缓存已失效: {}", userId);
+    }
+
+    /**
+     * 从用户服务获取用户信息，所有接口都失败时返回null
+     */
+    private Map<String, Object> fetchUserInfo(Long userId) {
+        log.info("从用户服务获取用户基本信息: {}", userId);
+
+        // 构建请求头
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("X-User-ID", String.valueOf(userId));
+        HttpEntity<?> entity = new HttpEntity<>(headers);
+
+        // 尝试先通过新接口获取
+        String url = userServiceUrl + "/api/v1/users/" + userId + "/basic";
+        ResponseEntity<Map> response;
         try {
-            log.info("从用户服务获取用户基本信息: {}", userId);
-            
-            // 构建请求头
-            HttpHeaders headers = new HttpHeaders();
-            headers.set("X-User-ID", String.valueOf(userId));
-            HttpEntity<?> entity = new HttpEntity<>(headers);
-            
-            // 尝试先通过新接口获取
-            String url = userServiceUrl + "/api/v1/users/" + userId + "/basic";
-            ResponseEntity<Map> response;
+            response = restTemplate.exchange(url, HttpMethod.GET, entity, Map.class);
+
+            if (response.getBody() != null) {
+                log.info("成功获取用户信息(v1): {}", response.getBody());
+                return response.getBody();
+            }
+        } catch (RestClientException e) {
+            log.warn("通过v1接口获取用户信息失败: {}", e.getMessage());
+
+            // 尝试通过兼容接口获取
             try {
+                url = userServiceUrl + "/api/users/" + userId;
                 response = restTemplate.exchange(url, HttpMethod.GET, entity, Map.class);
-                
+
                 if (response.getBody() != null) {
-                    log.info("成功获取用户信息(v1): {}", response.getBody());
-                    
-                    // 缓存用户信息
-                    userInfoCache.put(userId, response.getBody());
+                    log.info("成功获取用户信息(兼容): {}", response.getBody());
                     return response.getBody();
                 }
-            } catch (RestClientException e) {
-                log.warn("通过v1接口获取用户信息失败: {}", e.getMessage());
-                
-                // 尝试通过兼容接口获取
-                try {
-                    url = userServiceUrl + "/api/users/" + userId;
-                    response = restTemplate.exchange(url, HttpMethod.GET, entity, Map.class);
-                    
-                    if (response.getBody() != null) {
-                        log.info("成功获取用户信息(兼容): {}", response.getBody());
-                        
-                        // 缓存用户信息
-                        userInfoCache.put(userId, response.getBody());
-                        return response.getBody();
-                    }
-                } catch (RestClientException e2) {
-                    log.error("通过兼容接口获取用户信息也失败: {}", e2.getMessage());
+            } catch (RestClientException e2) {
+                log.error("通过兼容接口获取用户信息也失败: {}", e2.getMessage());
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * 通过批量接口获取用户信息，不存在的用户不在结果中
+     */
+    private Map<Long, Map<String, Object>> fetchUserInfoBatch(List<Long> userIds) {
+        log.info("从用户服务批量获取用户基本信息: {} 个", userIds.size());
+
+        Map<Long, Map<String, Object>> result = new HashMap<>();
+        String url = userServiceUrl + "/api/v1/users/basic:batch";
+        for (int from = 0; from < userIds.size(); from += BATCH_SIZE) {
+            List<Long> chunk = userIds.subList(from, Math.min(from + BATCH_SIZE, userIds.size()));
+            ResponseEntity<List<Map<String, Object>>> response = restTemplate.exchange(
+                    url, HttpMethod.POST, new HttpEntity<>(chunk),
+                    new ParameterizedTypeReference<List<Map<String, Object>>>() {});
+            if (response.getBody() == null) {
+                continue;
+            }
+            for (Map<String, Object> info : response.getBody()) {
+                Object id = info.get("id");
+                if (id instanceof Number) {
+                    result.put(((Number) id).longValue(), info);
                 }
             }
-            
-            // 如果所有接口都失败，使用默认值
-            return createDefaultUserInfo(userId);
-        } catch (Exception e) {
-            log.error("获取用户信息异常: {}", e.getMessage(), e);
-            return createDefaultUserInfo(userId);
         }
+        return result;
     }
-    
+
     /**
      * 创建默认用户信息
      */
     private Map<String, Object> createDefaultUserInfo(Long userId) {
         log.info("创建用户 {} 的默认信息", userId);
-        
+
         Map<String, Object> defaultInfo = new HashMap<>();
         defaultInfo.put("id", userId);
         defaultInfo.put("nickname", "用户" + userId);
         defaultInfo.put("username", "user" + userId);
         defaultInfo.put("status", "OFFLINE");
         defaultInfo.put("avatar", null);
-        
-        // 缓存默认信息
-        userInfoCache.put(userId, defaultInfo);
         return defaultInfo;
     }
-} 
\ No newline at end of file
+
+    /**
+     * 缓存加载器：首次加载失败时缓存默认信息，后台刷新失败时保留旧值
+     */
+    private class UserInfoLoader implements CacheLoader<Long, CachedUserInfo> {
+
+        @Override
+        public CachedUserInfo load(Long userId) {
+            try {
+                Map<String, Object> info = fetchUserInfo(userId);
+                if (info != null) {
+                    return new CachedUserInfo(info, false);
+                }
+            } catch (Exception e) {
+                log.error("获取用户信息异常: {}", e.getMessage(), e);
+            }
+            return new CachedUserInfo(createDefaultUserInfo(userId), true);
+        }
+
+        @Override
+        public Map<Long, CachedUserInfo> loadAll(Iterable<? extends Long> userIds) {
+            List<Long> ids = new ArrayList<>();
+            userIds.forEach(ids::add);
+
+            Map<Long, Map<String, Object>> fetched;
+            try {
+                fetched = fetchUserInfoBatch(ids);
+            } catch (Exception e) {
+                log.error("批量获取用户信息异常: {}", e.getMessage(), e);
+                fetched = Map.of();
+            }
+
+            Map<Long, CachedUserInfo> result = new HashMap<>();
+            for (Long userId : ids) {
+                Map<String, Object> info = fetched.get(userId);
+                result.put(userId, info != null
+                        ? new CachedUserInfo(info, false)
+                        : new CachedUserInfo(createDefaultUserInfo(userId), true));
+            }
+            return result;
+        }
+
+        @Override
+        public CachedUserInfo reload(Long userId, CachedUserInfo oldValue) {
+            CachedUserInfo reloaded = load(userId);
+            if (reloaded.isFallback() && !oldValue.isFallback()) {
+                log.warn("刷新用户 {} 信息失败，继续使用缓存中的信息", userId);
+                return oldValue;
+            }
+            return reloaded;
+        }
+    }
+
+    /**
+     * 过期策略：正常信息使用完整TTL，默认信息使用较短的TTL
+     */
+    private class UserInfoExpiry implements Expiry<Long, CachedUserInfo> {
+
+        @Override
+        public long expireAfterCreate(Long userId, CachedUserInfo value, long currentTime) {
+            return (value.isFallback() ? negativeTtl : cacheTtl).toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(Long userId, CachedUserInfo value, long currentTime, long currentDuration) {
+            return expireAfterCreate(userId, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(Long userId, CachedUserInfo value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+
+    /**
+     * 缓存项，fallback 表示获取失败时生成的默认信息
+     */
+    private static class CachedUserInfo {
+        private final Map<String, Object> info;
+        private final boolean fallback;
+
+        CachedUserInfo(Map<String, Object> info, boolean fallback) {
+            this.info = info;
+            this.fallback = fallback;
+        }
+
+        Map<String, Object> getInfo() {
+            return info;
+        }
+
+        boolean isFallback() {
+            return fallback;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.chatapp.message.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.Executors;
+
+/**
+ * 虚拟线程执行模式（仅在 java21 构建配置下编译）
+ * 开启 message.virtual-threads.enabled 后，Tomcat请求处理、@RabbitListener 容器和STOMP入站通道
+ * 都改为在虚拟线程上执行，阻塞的Mongo、RestTemplate、RabbitMQ调用不再占用平台线程。
+ * 排查虚拟线程被钉住（pinning）时可加 -Djdk.tracePinnedThreads=short 启动。
+ */
+@Configuration
+@ConditionalOnProperty(name = "message.virtual-threads.enabled", havingValue = "true")
+@Slf4j
+public class VirtualThreadConfig {
+
+    // AbstractMessageBrokerConfiguration 中STOMP入站通道线程池的bean名称
+    private static final String CLIENT_INBOUND_EXECUTOR = "clientInboundChannelExecutor";
+
+    /**
+     * Tomcat每个请求使用一个新的虚拟线程
+     */
+    @Bean
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadProtocolHandlerCustomizer() {
+        log.info("Tomcat请求处理使用虚拟线程");
+        return protocolHandler -> protocolHandler.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    /**
+     * 在初始化之前替换监听器容器和入站通道的线程工厂
+     */
+    @Bean
+    public static BeanPostProcessor virtualThreadExecutorPostProcessor(Environment environment) {
+        int inboundConcurrency = environment.getProperty(
+                "message.virtual-threads.inbound-concurrency", Integer.class, 256);
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof SimpleRabbitListenerContainerFactory) {
+                    SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor();
+                    executor.setThreadFactory(Thread.ofVirtual().name("rabbit-vt-", 0).factory());
+                    ((SimpleRabbitListenerContainerFactory) bean).setTaskExecutor(executor);
+                    log.info("RabbitMQ监听器容器使用虚拟线程: {}", beanName);
+                } else if (CLIENT_INBOUND_EXECUTOR.equals(beanName) && bean instanceof ThreadPoolTaskExecutor) {
+                    // 入站通道队列无上限，并发度由核心线程数决定；虚拟线程足够廉价，可以放大并发度
+                    ThreadPoolTaskExecutor executor = (ThreadPoolTaskExecutor) bean;
+                    executor.setThreadFactory(Thread.ofVirtual().name("ws-inbound-vt-", 0).factory());
+                    executor.setCorePoolSize(inboundConcurrency);
+                    executor.setMaxPoolSize(Math.max(inboundConcurrency, executor.getMaxPoolSize()));
+                    log.info("STOMP入站通道使用虚拟线程, 并发度: {}", inboundConcurrency);
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,162 @@
+package com.chatapp.message.service.impl;
+
+import com.chatapp.message.service.AttachmentStore;
+import com.github.benmanes.caffeine.cache.Cache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 缩略图生成测试：原图在内存中编码后写入临时目录，附件存储用mock把派生文件放在原图旁边
+ */
+class ThumbnailServiceImplTest {
+
+    @TempDir
+    Path dir;
+
+    private AttachmentStore attachmentStore;
+    private ThumbnailServiceImpl thumbnailService;
+
+    @BeforeEach
+    void setUp() {
+        attachmentStore = mock(AttachmentStore.class);
+        thumbnailService = new ThumbnailServiceImpl(attachmentStore);
+        ReflectionTestUtils.setField(thumbnailService, "widths", new int[]{512, 128});
+        ReflectionTestUtils.setField(thumbnailService, "workers", 1);
+        ReflectionTestUtils.setField(thumbnailService, "queueCapacity", 10);
+        ReflectionTestUtils.setField(thumbnailService, "maxSourcePixels", 100_000_000L);
+        thumbnailService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        thumbnailService.shutdown();
+    }
+
+    @Test
+    void generatesPngThumbnailsWithAlpha() throws IOException {
+        String filename = store("photo.png", encode(image(1024, 768, BufferedImage.TYPE_INT_ARGB), "png"));
+
+        generate(filename);
+
+        BufferedImage small = ImageIO.read(dir.resolve(filename + ".w128.png").toFile());
+        BufferedImage large = ImageIO.read(dir.resolve(filename + ".w512.png").toFile());
+        assertThat(small.getWidth()).isEqualTo(128);
+        assertThat(small.getHeight()).isEqualTo(96);
+        assertThat(large.getWidth()).isEqualTo(512);
+        assertThat(large.getHeight()).isEqualTo(384);
+        assertThat(small.getColorModel().hasAlpha()).isTrue();
+        assertThat(thumbnailService.resolve(filename, 100)).isEqualTo(dir.resolve(filename + ".w128.png"));
+        assertThat(thumbnailService.resolve(filename, 300)).isEqualTo(dir.resolve(filename + ".w512.png"));
+    }
+
+    @Test
+    void generatesJpegThumbnails() throws IOException {
+        String filename = store("photo.jpg", encode(image(2048, 1536, BufferedImage.TYPE_INT_RGB), "jpg"));
+
+        generate(filename);
+
+        BufferedImage small = ImageIO.read(dir.resolve(filename + ".w128.jpg").toFile());
+        BufferedImage large = ImageIO.read(dir.resolve(filename + ".w512.jpg").toFile());
+        assertThat(small.getWidth()).isEqualTo(128);
+        assertThat(small.getHeight()).isEqualTo(96);
+        assertThat(large.getWidth()).isEqualTo(512);
+        assertThat(large.getHeight()).isEqualTo(384);
+        assertThat(thumbnailService.resolve(filename, 1024)).isEqualTo(dir.resolve(filename + ".w512.jpg"));
+    }
+
+    @Test
+    void keepsSmallImagesAtOriginalWidth() throws IOException {
+        String filename = store("icon.png", encode(image(64, 32, BufferedImage.TYPE_INT_ARGB), "png"));
+
+        generate(filename);
+
+        BufferedImage thumbnail = ImageIO.read(dir.resolve(filename + ".w512.png").toFile());
+        assertThat(thumbnail.getWidth()).isEqualTo(64);
+        assertThat(thumbnail.getHeight()).isEqualTo(32);
+    }
+
+    @Test
+    void marksUndecodableImagesUnsupported() throws IOException {
+        String filename = store("broken.jpg", new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, 0x00, 0x01, 0x02});
+
+        generate(filename);
+
+        assertThat(unsupported().getIfPresent(filename)).isTrue();
+        assertThat(Files.exists(dir.resolve(filename + ".w128.jpg"))).isFalse();
+    }
+
+    @Test
+    void retriesAfterWriteFailure() throws IOException {
+        String filename = store("photo.jpg", encode(image(800, 600, BufferedImage.TYPE_INT_RGB), "jpg"));
+        Path missing = dir.resolve("missing");
+        when(attachmentStore.derivativePath(eq(filename), anyString()))
+                .thenAnswer(invocation -> missing.resolve(filename + "." + invocation.getArgument(1)));
+
+        generate(filename);
+
+        // 写入失败不是图片本身的问题，不应标记为不支持
+        assertThat(unsupported().getIfPresent(filename)).isNull();
+
+        Files.createDirectories(missing);
+        generate(filename);
+
+        assertThat(Files.exists(missing.resolve(filename + ".w128.jpg"))).isTrue();
+        assertThat(Files.exists(missing.resolve(filename + ".w512.jpg"))).isTrue();
+    }
+
+    private String store(String filename, byte[] content) throws IOException {
+        Path source = dir.resolve(filename);
+        Files.write(source, content);
+        when(attachmentStore.resolve(filename)).thenReturn(source);
+        when(attachmentStore.derivativePath(eq(filename), anyString()))
+                .thenAnswer(invocation -> dir.resolve(filename + "." + invocation.getArgument(1)));
+        return filename;
+    }
+
+    private void generate(String filename) {
+        ReflectionTestUtils.invokeMethod(thumbnailService, "generate", filename);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Cache<String, Boolean> unsupported() {
+        return (Cache<String, Boolean>) ReflectionTestUtils.getField(thumbnailService, "unsupported");
+    }
+
+    private static BufferedImage image(int width, int height, int type) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.setColor(new Color(30, 120, 200, 180));
+            graphics.fillRect(0, 0, width / 2, height);
+            graphics.setColor(Color.ORANGE);
+            graphics.fillOval(width / 4, height / 4, width / 2, height / 2);
+        } finally {
+            graphics.dispose();
+        }
+        return image;
+    }
+
+    private static byte[] encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, format, out);
+        return out.toByteArray();
+    }
+}
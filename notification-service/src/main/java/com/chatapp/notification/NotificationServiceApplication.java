@@ -3,12 +3,14 @@ package com.chatapp.notification;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.netflix.eureka.EnableEurekaClient;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * 通知服务应用
  */
 @SpringBootApplication
 @EnableEurekaClient
+@EnableScheduling
 public class NotificationServiceApplication {
 
     public static void main(String[] args) {
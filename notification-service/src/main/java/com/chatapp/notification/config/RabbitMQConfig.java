@@ -0,0 +1,35 @@
+package com.chatapp.notification.config;
+
+import com.chatapp.event.MessageEvent;
+import com.chatapp.event.TypedJsonMessageConverter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * RabbitMQ配置类
+ */
+@Configuration
+public class RabbitMQConfig {
+
+    public static final String MESSAGE_EVENT_LISTENER_FACTORY = "messageEventListenerFactory";
+
+    /**
+     * 新消息事件的监听器容器工厂
+     * 使用预绑定 MessageEvent 类型的转换器，监听方法直接拿到解析好的事件对象。
+     * 其余监听配置（确认模式、并发数等）仍取自 spring.rabbitmq.listener.simple。
+     */
+    @Bean(MESSAGE_EVENT_LISTENER_FACTORY)
+    public SimpleRabbitListenerContainerFactory messageEventListenerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory,
+            ObjectMapper objectMapper) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setMessageConverter(new TypedJsonMessageConverter<>(MessageEvent.class, objectMapper));
+        return factory;
+    }
+}
@@ -19,6 +19,9 @@ public class NotificationController {
     
     private final NotificationService notificationService;
     
+    // 列表接口单次返回的最大条数，更早的通知通过分页接口查询
+    private static final int MAX_LIMIT = 200;
+    
     @PostMapping
     public ResponseEntity<NotificationDTO> createNotification(@Valid @RequestBody NotificationDTO notificationDTO) {
         NotificationDTO createdNotification = notificationService.createNotification(notificationDTO);
@@ -26,8 +29,9 @@ public class NotificationController {
     }
     
     @GetMapping("/user/{userId}")
-    public ResponseEntity<List<NotificationDTO>> getUserNotifications(@PathVariable Long userId) {
-        List<NotificationDTO> notifications = notificationService.getUserNotifications(userId);
+    public ResponseEntity<List<NotificationDTO>> getUserNotifications(
+            @PathVariable Long userId, @RequestParam(defaultValue = "50") int limit) {
+        List<NotificationDTO> notifications = notificationService.getUserNotifications(userId, clampLimit(limit));
         return ResponseEntity.ok(notifications);
     }
     
@@ -39,8 +43,9 @@ public class NotificationController {
     }
     
     @GetMapping("/user/{userId}/unread")
-    public ResponseEntity<List<NotificationDTO>> getUnreadNotifications(@PathVariable Long userId) {
-        List<NotificationDTO> unreadNotifications = notificationService.getUnreadNotifications(userId);
+    public ResponseEntity<List<NotificationDTO>> getUnreadNotifications(
+            @PathVariable Long userId, @RequestParam(defaultValue = "50") int limit) {
+        List<NotificationDTO> unreadNotifications = notificationService.getUnreadNotifications(userId, clampLimit(limit));
         return ResponseEntity.ok(unreadNotifications);
     }
     
@@ -73,4 +78,8 @@ public class NotificationController {
         notificationService.sendInstantNotification(notificationDTO);
         return ResponseEntity.status(HttpStatus.CREATED).body(notificationDTO);
     }
-} 
\ No newline at end of file
+    
+    private static int clampLimit(int limit) {
+        return Math.max(1, Math.min(limit, MAX_LIMIT));
+    }
+}
\ No newline at end of file
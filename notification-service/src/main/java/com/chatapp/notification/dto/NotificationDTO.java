@@ -19,6 +19,8 @@ public class NotificationDTO {
     private String title;
     private String content;
     private String referenceId;
+    private String conversationKey;
+    private Integer messageCount;
     private Notification.NotificationStatus status;
     private LocalDateTime createTime;
     
@@ -29,13 +31,30 @@ public class NotificationDTO {
                 .userId(notification.getUserId())
                 .type(notification.getType())
                 .title(notification.getTitle())
-                .content(notification.getContent())
+                .content(displayContent(notification))
                 .referenceId(notification.getReferenceId())
+                .conversationKey(notification.getConversationKey())
+                .messageCount(notification.getMessageCount())
                 .status(notification.getStatus())
                 .createTime(notification.getCreateTime())
                 .build();
     }
     
+    // 合并的消息通知只保存最近一条消息的内容，展示时附上会话内累计的条数；每日汇总按汇总条数展示
+    private static String displayContent(Notification notification) {
+        Integer count = notification.getMessageCount();
+        if (notification.getType() != Notification.NotificationType.MESSAGE || count == null) {
+            return notification.getContent();
+        }
+        if (notification.getDigestDay() != null) {
+            return String.format("当天共 %d 条新消息", count);
+        }
+        if (!Boolean.TRUE.equals(notification.getDigest()) && count > 1) {
+            return String.format("%s（共 %d 条新消息）", notification.getContent(), count);
+        }
+        return notification.getContent();
+    }
+    
     // 辅助方法：从DTO转换为实体
     public Notification toEntity() {
         return Notification.builder()
@@ -45,6 +64,8 @@ public class NotificationDTO {
                 .title(this.title)
                 .content(this.content)
                 .referenceId(this.referenceId)
+                .conversationKey(this.conversationKey)
+                .messageCount(this.messageCount)
                 .status(this.status)
                 .createTime(this.createTime != null ? this.createTime : LocalDateTime.now())
                 .build();
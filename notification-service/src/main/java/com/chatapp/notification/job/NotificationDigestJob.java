@@ -0,0 +1,164 @@
+package com.chatapp.notification.job;
+
+import com.chatapp.notification.model.Notification;
+import com.chatapp.notification.service.impl.UnreadCounterStore;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.aggregation.DateOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+/**
+ * 消息通知每日汇总任务
+ * 把较早的消息通知按（用户, 会话, 日期）合并为一条当日汇总，汇总后删除原通知，
+ * 只有一条通知的分组直接标记为已汇总。配合已读通知的TTL索引，使通知集合保持在较小的规模。
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class NotificationDigestJob {
+
+    private final MongoTemplate mongoTemplate;
+    private final UnreadCounterStore unreadCounterStore;
+
+    @Value("${notification.retention.digest-after:7d}")
+    private Duration digestAfter;
+
+    @Value("${notification.retention.digest-batch-size:1000}")
+    private int batchSize;
+
+    @Scheduled(cron = "${notification.retention.digest-cron:0 30 3 * * *}")
+    public void compact() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(digestAfter);
+        long digests = 0;
+        long removed = 0;
+        try {
+            // TTL上线前已读的通知没有已读时间，补上后才会过期
+            long backfilled = mongoTemplate.updateMulti(
+                    new Query(Criteria.where("status").is(Notification.NotificationStatus.READ)
+                            .and("readTime").exists(false)),
+                    new Update().set("readTime", LocalDateTime.now()),
+                    Notification.class).getModifiedCount();
+            if (backfilled > 0) {
+                log.info("已为 {} 条历史已读通知补充已读时间", backfilled);
+            }
+
+            List<Document> groups;
+            do {
+                groups = nextGroups(cutoff);
+                for (Document group : groups) {
+                    removed += compactGroup(group);
+                    digests++;
+                }
+            } while (groups.size() >= batchSize);
+            if (digests > 0) {
+                log.info("消息通知汇总完成: 生成 {} 条汇总, 删除 {} 条通知", digests, removed);
+            }
+        } catch (Exception e) {
+            log.error("消息通知汇总失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 按（用户, 会话, 日期）分组统计尚未汇总的消息通知
+     */
+    private List<Document> nextGroups(LocalDateTime cutoff) {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("type").is(Notification.NotificationType.MESSAGE)
+                        .and("createTime").lt(cutoff)
+                        .and("digest").ne(true)),
+                Aggregation.project("userId", "conversationKey", "createTime")
+                        .and(DateOperators.DateToString.dateOf("createTime").toString("%Y-%m-%d")
+                                .withTimezone(DateOperators.Timezone.valueOf(ZoneId.systemDefault().getId())))
+                        .as("day")
+                        .and(ConditionalOperators.ifNull("messageCount").then(1)).as("count")
+                        .and(ConditionalOperators.when(ComparisonOperators.Eq.valueOf("status")
+                                .equalToValue(Notification.NotificationStatus.UNREAD.name()))
+                                .then(1).otherwise(0))
+                        .as("unread"),
+                Aggregation.group("userId", "conversationKey", "day")
+                        .sum("count").as("messageCount")
+                        .sum("unread").as("unread")
+                        .max("createTime").as("lastTime")
+                        .push("_id").as("ids"),
+                Aggregation.limit(batchSize)
+        ).withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+
+        return mongoTemplate.aggregate(aggregation, Notification.class, Document.class).getMappedResults();
+    }
+
+    /**
+     * 把一个分组替换为一条汇总通知
+     *
+     * @return 删除的原通知数量
+     */
+    private long compactGroup(Document group) {
+        Document key = group.get("_id", Document.class);
+        List<?> ids = group.getList("ids", Object.class);
+        if (ids.size() == 1) {
+            mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(ids.get(0))),
+                    new Update().set("digest", true), Notification.class);
+            return 0;
+        }
+
+        Long userId = key.get("userId", Number.class).longValue();
+        String conversationKey = key.getString("conversationKey");
+        String day = key.getString("day");
+        int messageCount = group.get("messageCount", Number.class).intValue();
+        boolean anyUnread = group.get("unread", Number.class).intValue() > 0;
+        LocalDateTime lastTime = LocalDateTime.ofInstant(group.getDate("lastTime").toInstant(), ZoneId.systemDefault());
+        unreadCounterStore.ensureInitialised(userId);
+
+        // 汇总按（用户, 会话, 日期）upsert，任务在删除原通知前中断后重跑不会生成重复的汇总
+        Update update = new Update()
+                .max("messageCount", messageCount)
+                .max("createTime", lastTime)
+                .setOnInsert("title", day + " 的消息汇总")
+                .setOnInsert("content", String.format("当天共 %d 条新消息", messageCount))
+                .setOnInsert("type", Notification.NotificationType.MESSAGE);
+        if (anyUnread) {
+            update.set("status", Notification.NotificationStatus.UNREAD).unset("readTime");
+        } else {
+            update.setOnInsert("status", Notification.NotificationStatus.READ).setOnInsert("readTime", LocalDateTime.now());
+        }
+        Notification previous = mongoTemplate.findAndModify(
+                new Query(Criteria.where("userId").is(userId)
+                        .and("conversationKey").is(conversationKey)
+                        .and("digestDay").is(day)
+                        .and("digest").is(true)),
+                update,
+                FindAndModifyOptions.options().upsert(true),
+                Notification.class);
+        boolean digestBecameUnread = anyUnread
+                && (previous == null || previous.getStatus() != Notification.NotificationStatus.UNREAD);
+
+        // 按状态分别删除，分组统计之后被标记已读的通知不会再扣减未读数
+        long deletedUnread = mongoTemplate.remove(new Query(Criteria.where("_id").in(ids)
+                        .and("status").is(Notification.NotificationStatus.UNREAD)), Notification.class)
+                .getDeletedCount();
+        long deletedOther = mongoTemplate.remove(new Query(Criteria.where("_id").in(ids)
+                        .and("status").ne(Notification.NotificationStatus.UNREAD)), Notification.class)
+                .getDeletedCount();
+        long delta = (digestBecameUnread ? 1 : 0) - deletedUnread;
+        if (delta != 0) {
+            unreadCounterStore.add(userId, delta);
+        }
+        return deletedUnread + deletedOther;
+    }
+}
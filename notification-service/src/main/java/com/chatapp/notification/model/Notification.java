@@ -5,6 +5,9 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
@@ -14,6 +17,20 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "notifications")
+@CompoundIndexes({
+    // 按状态查询用户通知（未读列表、批量已读），结果按创建时间倒序
+    @CompoundIndex(name = "userId_status_createTime", def = "{'userId': 1, 'status': 1, 'createTime': -1}"),
+    // 用户全部通知按创建时间倒序
+    @CompoundIndex(name = "userId_createTime", def = "{'userId': 1, 'createTime': -1}"),
+    // 每日汇总任务查找较早的消息通知
+    @CompoundIndex(name = "type_createTime", def = "{'type': 1, 'createTime': 1}"),
+    // 每个用户每个会话每天只有一条汇总
+    @CompoundIndex(name = "userId_conversationKey_digestDay", def = "{'userId': 1, 'conversationKey': 1, 'digestDay': 1}",
+            unique = true, partialFilter = "{'digestDay': {$exists: true}}"),
+    // 每个用户每个会话最多一条未汇总的未读消息通知，多个实例并发合并时不会各自新建一条
+    @CompoundIndex(name = "userId_conversationKey_unread", def = "{'userId': 1, 'conversationKey': 1}",
+            unique = true, partialFilter = "{'type': 'MESSAGE', 'status': 'UNREAD', 'digest': false}")
+})
 public class Notification {
     @Id
     private String id;
@@ -33,12 +50,28 @@ public class Notification {
     // 相关数据ID（如消息ID、好友请求ID等）
     private String referenceId;
     
+    // 消息通知所属的会话（私聊为 p_{发送者ID}，群聊为 g_{群组ID}），同一会话的连续消息合并为一条通知
+    private String conversationKey;
+    
+    // 合并的消息条数，非消息通知为空
+    private Integer messageCount;
+    
     // 通知状态
     private NotificationStatus status;
     
     // 创建时间
     private LocalDateTime createTime;
     
+    // 已读时间，TTL索引在已读30天后删除通知；未读通知没有该字段，不会过期
+    @Indexed(name = "readTime_ttl", expireAfter = "30d")
+    private LocalDateTime readTime;
+    
+    // 是否为每日汇总（或已确认无需汇总）的消息通知；合并写入新建的消息通知为 false
+    private Boolean digest;
+    
+    // 每日汇总对应的日期（yyyy-MM-dd），只有汇总通知有该字段
+    private String digestDay;
+    
     public enum NotificationType {
         MESSAGE, // 新消息通知
         FRIEND_REQUEST, // 好友请求通知
@@ -0,0 +1,31 @@
+package com.chatapp.notification.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * 用户未读通知计数
+ * 写入、已读、删除通知时通过 $inc 维护，角标查询只读这一条文档
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "notification_unread_counters")
+public class UnreadCounter {
+    // 用户ID
+    @Id
+    private Long userId;
+    
+    // 未读通知数量
+    private long unread;
+    
+    // 最后更新时间
+    private LocalDateTime updateTime;
+}
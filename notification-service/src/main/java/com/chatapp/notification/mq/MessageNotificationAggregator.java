@@ -0,0 +1,152 @@
+package com.chatapp.notification.mq;
+
+import com.chatapp.notification.dto.NotificationDTO;
+import com.chatapp.notification.service.NotificationService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 消息通知聚合器
+ * 同一用户同一会话在一个时间窗口内的多条新消息合并为一条，窗口结束时批量累加到该会话已有的未读通知上，
+ * 每个会话只推送一次，避免活跃群聊中每条消息、每个成员都写一条通知。
+ * 写入失败的通知合并回下一个窗口重试，超过重试次数后丢弃。
+ * <p>
+ * 投递语义为至多一次：消息事件在放入聚合窗口时就已确认，实例在窗口写入前崩溃（正常停止时会先写入）
+ * 会丢失最多一个窗口内的通知。通知只是提醒，消息本身已持久化，客户端仍可从未读消息中看到，
+ * 因此接受这部分丢失，换取不必持有大量未确认投递直到窗口写入。
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MessageNotificationAggregator {
+
+    private final NotificationService notificationService;
+
+    @Value("${notification.aggregation.max-batch-size:1000}")
+    private int maxBatchSize;
+
+    @Value("${notification.aggregation.max-attempts:5}")
+    private int maxAttempts;
+
+    private final Object lock = new Object();
+
+    // userId:conversationKey -> 窗口内累计的通知
+    private Map<String, Burst> pending = new LinkedHashMap<>();
+
+    /**
+     * 记录一条消息通知，同一会话的后续消息覆盖标题和内容并累加条数
+     */
+    public void submit(NotificationDTO notification) {
+        String key = keyOf(notification);
+        synchronized (lock) {
+            Burst burst = pending.get(key);
+            if (burst == null) {
+                pending.put(key, new Burst(notification));
+            } else {
+                burst.latest = notification;
+                burst.count++;
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${notification.aggregation.window-ms:1000}")
+    public void flush() {
+        Map<String, Burst> batch;
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new LinkedHashMap<>();
+        }
+
+        List<Burst> bursts = new ArrayList<>(batch.values());
+        for (int from = 0; from < bursts.size(); from += maxBatchSize) {
+            List<Burst> chunk = bursts.subList(from, Math.min(from + maxBatchSize, bursts.size()));
+            Map<NotificationDTO, Burst> byNotification = new IdentityHashMap<>(chunk.size());
+            List<NotificationDTO> notifications = new ArrayList<>(chunk.size());
+            for (Burst burst : chunk) {
+                NotificationDTO notification = burst.latest;
+                notification.setMessageCount(burst.count);
+                byNotification.put(notification, burst);
+                notifications.add(notification);
+            }
+            try {
+                List<NotificationDTO> failed = notificationService.mergeMessageNotifications(notifications);
+                List<Burst> retry = new ArrayList<>(failed.size());
+                for (NotificationDTO notification : failed) {
+                    retry.add(byNotification.get(notification));
+                }
+                requeue(retry);
+            } catch (Exception e) {
+                log.error("批量写入 {} 条消息通知失败: {}", chunk.size(), e.getMessage(), e);
+                requeue(chunk);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+        synchronized (lock) {
+            if (!pending.isEmpty()) {
+                log.warn("停止时仍有 {} 个会话的消息通知写入失败，已丢弃", pending.size());
+            }
+        }
+    }
+
+    /**
+     * 把写入失败的通知合并回待写入队列，条数累加到窗口内同一会话的新通知上，内容保留较新的一条
+     */
+    private void requeue(List<Burst> failed) {
+        if (failed.isEmpty()) {
+            return;
+        }
+        synchronized (lock) {
+            for (Burst burst : failed) {
+                burst.attempts++;
+                if (burst.attempts >= maxAttempts) {
+                    log.error("消息通知写入已失败 {} 次，丢弃: userId={}, conversationKey={}, 条数={}",
+                            burst.attempts, burst.latest.getUserId(), burst.latest.getConversationKey(), burst.count);
+                    continue;
+                }
+                String key = keyOf(burst.latest);
+                Burst newer = pending.get(key);
+                if (newer == null) {
+                    pending.put(key, burst);
+                } else {
+                    newer.count += burst.count;
+                    newer.attempts = Math.max(newer.attempts, burst.attempts);
+                }
+            }
+        }
+    }
+
+    private static String keyOf(NotificationDTO notification) {
+        return notification.getUserId() + ":" + notification.getConversationKey();
+    }
+
+    /**
+     * 单个会话在一个窗口内的消息通知
+     */
+    private static class Burst {
+        private NotificationDTO latest;
+        private int count;
+        private int attempts;
+
+        Burst(NotificationDTO first) {
+            this.latest = first;
+            this.count = 1;
+        }
+    }
+}
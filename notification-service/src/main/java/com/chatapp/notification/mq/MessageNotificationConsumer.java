@@ -1,10 +1,10 @@
 package com.chatapp.notification.mq;
 
+import com.chatapp.event.EventQueues;
+import com.chatapp.event.MessageEvent;
+import com.chatapp.notification.config.RabbitMQConfig;
 import com.chatapp.notification.dto.NotificationDTO;
 import com.chatapp.notification.model.Notification;
-import com.chatapp.notification.service.NotificationService;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
@@ -15,38 +15,43 @@ import org.springframework.stereotype.Component;
 @RequiredArgsConstructor
 public class MessageNotificationConsumer {
 
-    private final NotificationService notificationService;
-    private final ObjectMapper objectMapper;
+    private final MessageNotificationAggregator notificationAggregator;
 
-    @RabbitListener(queues = "chat.notification.queue")
-    public void handleNotification(String message) {
+    /**
+     * 消息体由容器工厂的转换器直接反序列化为 MessageEvent，解析失败的消息不会进入此方法
+     */
+    @RabbitListener(queues = EventQueues.NOTIFICATION_QUEUE,
+            containerFactory = RabbitMQConfig.MESSAGE_EVENT_LISTENER_FACTORY)
+    public void handleNotification(MessageEvent messageEvent) {
         try {
-            // 解析消息
-            MessageEvent messageEvent = objectMapper.readValue(message, MessageEvent.class);
-            log.info("收到新消息事件: {}", messageEvent);
+            log.debug("收到新消息事件: {}", messageEvent);
             
             // 创建通知
             NotificationDTO notificationDTO = createNotificationFromMessage(messageEvent);
             
-            // 发送即时通知
-            notificationService.sendInstantNotification(notificationDTO);
-        } catch (JsonProcessingException e) {
-            log.error("解析消息失败: {}", message, e);
+            // 交给聚合器，同一会话短时间内的消息合并为一条通知
+            notificationAggregator.submit(notificationDTO);
         } catch (Exception e) {
-            log.error("处理消息通知失败", e);
+            log.error("处理消息通知失败: {}", messageEvent, e);
         }
     }
     
     private NotificationDTO createNotificationFromMessage(MessageEvent messageEvent) {
         String title;
         String content;
+        String conversationKey;
+        // 消息服务只填充缓存中已有的昵称，未命中时使用默认名称
+        String senderName = messageEvent.getSenderName() != null
+                ? messageEvent.getSenderName() : "用户" + messageEvent.getSenderId();
         
-        if (messageEvent.getMessageType().equals("PRIVATE")) {
+        if (messageEvent.isPrivate()) {
             title = "新的私聊消息";
-            content = String.format("你收到来自 %s 的新消息", messageEvent.getSenderName());
+            content = String.format("你收到来自 %s 的新消息", senderName);
+            conversationKey = "p_" + messageEvent.getSenderId();
         } else {
             title = String.format("群聊 %s 的新消息", messageEvent.getReceiverName());
-            content = String.format("%s 在群里发送了新消息", messageEvent.getSenderName());
+            content = String.format("%s 在群里发送了新消息", senderName);
+            conversationKey = "g_" + messageEvent.getReceiverId();
         }
         
         return NotificationDTO.builder()
@@ -55,88 +60,8 @@ public class MessageNotificationConsumer {
                 .title(title)
                 .content(content)
                 .referenceId(messageEvent.getMessageId())
+                .conversationKey(conversationKey)
                 .status(Notification.NotificationStatus.UNREAD)
                 .build();
     }
-    
-    // 内部类：表示从消息服务接收的事件
-    static class MessageEvent {
-        private String messageId;
-        private Long senderId;
-        private String senderName;
-        private Long receiverId;
-        private String receiverName;
-        private String messageType; // PRIVATE 或 GROUP
-        private String content;
-        
-        // getter 和 setter
-        public String getMessageId() {
-            return messageId;
-        }
-        
-        public void setMessageId(String messageId) {
-            this.messageId = messageId;
-        }
-        
-        public Long getSenderId() {
-            return senderId;
-        }
-        
-        public void setSenderId(Long senderId) {
-            this.senderId = senderId;
-        }
-        
-        public String getSenderName() {
-            return senderName;
-        }
-        
-        public void setSenderName(String senderName) {
-            this.senderName = senderName;
-        }
-        
-        public Long getReceiverId() {
-            return receiverId;
-        }
-        
-        public void setReceiverId(Long receiverId) {
-            this.receiverId = receiverId;
-        }
-        
-        public String getReceiverName() {
-            return receiverName;
-        }
-        
-        public void setReceiverName(String receiverName) {
-            this.receiverName = receiverName;
-        }
-        
-        public String getMessageType() {
-            return messageType;
-        }
-        
-        public void setMessageType(String messageType) {
-            this.messageType = messageType;
-        }
-        
-        public String getContent() {
-            return content;
-        }
-        
-        public void setContent(String content) {
-            this.content = content;
-        }
-        
-        @Override
-        public String toString() {
-            return "MessageEvent{" +
-                    "messageId='" + messageId + '\'' +
-                    ", senderId=" + senderId +
-                    ", senderName='" + senderName + '\'' +
-                    ", receiverId=" + receiverId +
-                    ", receiverName='" + receiverName + '\'' +
-                    ", messageType='" + messageType + '\'' +
-                    ", content='" + (content != null ? content.substring(0, Math.min(content.length(), 20)) + "..." : "null") + '\'' +
-                    '}';
-        }
-    }
-} 
\ No newline at end of file
+}
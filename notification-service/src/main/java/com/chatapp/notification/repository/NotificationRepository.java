@@ -11,14 +11,15 @@ import java.util.List;
 @Repository
 public interface NotificationRepository extends MongoRepository<Notification, String> {
     
-    // 查询用户的所有通知
-    List<Notification> findByUserIdOrderByCreateTimeDesc(Long userId);
+    // 查询用户最近的通知
+    List<Notification> findByUserIdOrderByCreateTimeDesc(Long userId, Pageable pageable);
     
     // 分页查询用户的所有通知
     Page<Notification> findByUserId(Long userId, Pageable pageable);
     
-    // 查询用户的未读通知
-    List<Notification> findByUserIdAndStatus(Long userId, Notification.NotificationStatus status);
+    // 查询用户最近的指定状态的通知
+    List<Notification> findByUserIdAndStatusOrderByCreateTimeDesc(Long userId, Notification.NotificationStatus status,
+                                                                  Pageable pageable);
     
     // 统计用户的未读通知数量
     long countByUserIdAndStatus(Long userId, Notification.NotificationStatus status);
@@ -12,14 +12,14 @@ public interface NotificationService {
     // 创建新通知
     NotificationDTO createNotification(NotificationDTO notificationDTO);
     
-    // 获取用户的所有通知
-    List<NotificationDTO> getUserNotifications(Long userId);
+    // 获取用户最近的 limit 条通知
+    List<NotificationDTO> getUserNotifications(Long userId, int limit);
     
     // 分页获取用户通知
     Page<NotificationDTO> getUserNotificationsPaged(Long userId, Pageable pageable);
     
-    // 获取用户的未读通知
-    List<NotificationDTO> getUnreadNotifications(Long userId);
+    // 获取用户最近的 limit 条未读通知
+    List<NotificationDTO> getUnreadNotifications(Long userId, int limit);
     
     // 统计用户的未读通知数量
     long countUnreadNotifications(Long userId);
@@ -35,4 +35,7 @@ public interface NotificationService {
     
     // 发送即时通知（通过WebSocket）
     void sendInstantNotification(NotificationDTO notificationDTO);
+    
+    // 把合并后的消息通知累加到同一会话已有的未读通知上（没有时新建）并推送，返回写入失败的通知
+    List<NotificationDTO> mergeMessageNotifications(List<NotificationDTO> notificationDTOs);
 } 
\ No newline at end of file
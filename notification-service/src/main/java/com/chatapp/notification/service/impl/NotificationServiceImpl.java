@@ -4,15 +4,31 @@ import com.chatapp.notification.dto.NotificationDTO;
 import com.chatapp.notification.model.Notification;
 import com.chatapp.notification.repository.NotificationRepository;
 import com.chatapp.notification.service.NotificationService;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+import com.mongodb.client.result.UpdateResult;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -22,6 +38,13 @@ public class NotificationServiceImpl implements NotificationService {
 
     private final NotificationRepository notificationRepository;
     private final SimpMessagingTemplate messagingTemplate;
+    private final MongoTemplate mongoTemplate;
+    private final UnreadCounterStore unreadCounterStore;
+    
+    private static final int DUPLICATE_KEY = 11000;
+    
+    // 并发新建撞上未读唯一索引后的重试次数（含第一次写入）
+    private static final int MAX_MERGE_ATTEMPTS = 3;
     
     @Override
     public NotificationDTO createNotification(NotificationDTO notificationDTO) {
@@ -34,13 +57,23 @@ public class NotificationServiceImpl implements NotificationService {
         }
         
         Notification notification = notificationDTO.toEntity();
+        if (notification.getStatus() == Notification.NotificationStatus.READ) {
+            notification.setReadTime(LocalDateTime.now());
+        }
+        if (notification.getStatus() == Notification.NotificationStatus.UNREAD) {
+            unreadCounterStore.ensureInitialised(notification.getUserId());
+        }
         notification = notificationRepository.save(notification);
+        if (notification.getStatus() == Notification.NotificationStatus.UNREAD) {
+            unreadCounterStore.add(notification.getUserId(), 1);
+        }
         return NotificationDTO.fromEntity(notification);
     }
     
     @Override
-    public List<NotificationDTO> getUserNotifications(Long userId) {
-        List<Notification> notifications = notificationRepository.findByUserIdOrderByCreateTimeDesc(userId);
+    public List<NotificationDTO> getUserNotifications(Long userId, int limit) {
+        List<Notification> notifications = notificationRepository.findByUserIdOrderByCreateTimeDesc(
+                userId, PageRequest.of(0, limit));
         return notifications.stream()
                 .map(NotificationDTO::fromEntity)
                 .collect(Collectors.toList());
@@ -53,9 +86,9 @@ public class NotificationServiceImpl implements NotificationService {
     }
     
     @Override
-    public List<NotificationDTO> getUnreadNotifications(Long userId) {
-        List<Notification> notifications = notificationRepository.findByUserIdAndStatus(
-                userId, Notification.NotificationStatus.UNREAD);
+    public List<NotificationDTO> getUnreadNotifications(Long userId, int limit) {
+        List<Notification> notifications = notificationRepository.findByUserIdAndStatusOrderByCreateTimeDesc(
+                userId, Notification.NotificationStatus.UNREAD, PageRequest.of(0, limit));
         return notifications.stream()
                 .map(NotificationDTO::fromEntity)
                 .collect(Collectors.toList());
@@ -63,31 +96,157 @@ public class NotificationServiceImpl implements NotificationService {
     
     @Override
     public long countUnreadNotifications(Long userId) {
-        return notificationRepository.countByUserIdAndStatus(userId, Notification.NotificationStatus.UNREAD);
+        return unreadCounterStore.get(userId);
     }
     
     @Override
     public NotificationDTO markAsRead(String notificationId) {
-        Notification notification = notificationRepository.findById(notificationId)
+        Notification existing = notificationRepository.findById(notificationId)
                 .orElseThrow(() -> new RuntimeException("通知不存在: " + notificationId));
+        if (existing.getStatus() != Notification.NotificationStatus.UNREAD) {
+            return NotificationDTO.fromEntity(existing);
+        }
+        unreadCounterStore.ensureInitialised(existing.getUserId());
         
-        notification.setStatus(Notification.NotificationStatus.READ);
-        notification = notificationRepository.save(notification);
+        // 只有从未读变为已读时才减少计数
+        Notification notification = mongoTemplate.findAndModify(
+                new Query(Criteria.where("id").is(notificationId)
+                        .and("status").is(Notification.NotificationStatus.UNREAD)),
+                new Update().set("status", Notification.NotificationStatus.READ).set("readTime", LocalDateTime.now()),
+                Notification.class);
+        if (notification != null) {
+            unreadCounterStore.add(notification.getUserId(), -1);
+            notification.setStatus(Notification.NotificationStatus.READ);
+            return NotificationDTO.fromEntity(notification);
+        }
+        
+        notification = notificationRepository.findById(notificationId)
+                .orElseThrow(() -> new RuntimeException("通知不存在: " + notificationId));
         return NotificationDTO.fromEntity(notification);
     }
     
     @Override
     public void markAllAsRead(Long userId) {
-        List<Notification> unreadNotifications = notificationRepository.findByUserIdAndStatus(
-                userId, Notification.NotificationStatus.UNREAD);
-        
-        unreadNotifications.forEach(notification -> notification.setStatus(Notification.NotificationStatus.READ));
-        notificationRepository.saveAll(unreadNotifications);
+        unreadCounterStore.ensureInitialised(userId);
+        // 一次 updateMulti，按实际修改的数量扣减计数，期间新写入的通知不会被扣掉
+        UpdateResult result = mongoTemplate.updateMulti(
+                new Query(Criteria.where("userId").is(userId)
+                        .and("status").is(Notification.NotificationStatus.UNREAD)),
+                new Update().set("status", Notification.NotificationStatus.READ).set("readTime", LocalDateTime.now()),
+                Notification.class);
+        unreadCounterStore.add(userId, -result.getModifiedCount());
+        log.debug("用户 {} 全部通知已读: {} 条", userId, result.getModifiedCount());
     }
     
     @Override
     public void deleteNotification(String notificationId) {
-        notificationRepository.deleteById(notificationId);
+        notificationRepository.findById(notificationId)
+                .filter(notification -> notification.getStatus() == Notification.NotificationStatus.UNREAD)
+                .ifPresent(notification -> unreadCounterStore.ensureInitialised(notification.getUserId()));
+        Notification deleted = mongoTemplate.findAndRemove(
+                new Query(Criteria.where("id").is(notificationId)), Notification.class);
+        if (deleted != null && deleted.getStatus() == Notification.NotificationStatus.UNREAD) {
+            unreadCounterStore.add(deleted.getUserId(), -1);
+        }
+    }
+    
+    @Override
+    public List<NotificationDTO> mergeMessageNotifications(List<NotificationDTO> notificationDTOs) {
+        LocalDateTime now = LocalDateTime.now();
+        Set<Integer> failedIndexes = new HashSet<>();
+        Map<Long, Long> unreadDeltas = new HashMap<>();
+        int created = 0;
+        
+        unreadCounterStore.ensureInitialised(notificationDTOs.stream()
+                .map(NotificationDTO::getUserId)
+                .collect(Collectors.toSet()));
+        List<Integer> pending = new ArrayList<>(notificationDTOs.size());
+        for (int i = 0; i < notificationDTOs.size(); i++) {
+            pending.add(i);
+        }
+        for (int attempt = 1; !pending.isEmpty(); attempt++) {
+            BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Notification.class);
+            for (int index : pending) {
+                // 同一会话已有未读通知时累加条数并更新为最新一条消息，否则新建一条未读通知
+                NotificationDTO dto = notificationDTOs.get(index);
+                int count = dto.getMessageCount() != null ? dto.getMessageCount() : 1;
+                bulkOps.upsert(unreadMessageQuery(dto.getUserId(), dto.getConversationKey()),
+                        new Update().inc("messageCount", count)
+                                .set("title", dto.getTitle())
+                                .set("content", dto.getContent())
+                                .set("referenceId", dto.getReferenceId())
+                                .set("createTime", dto.getCreateTime() != null ? dto.getCreateTime() : now)
+                                // 新建的通知显式写入 digest=false，进入 (userId, conversationKey) 未读唯一索引
+                                .setOnInsert("digest", false));
+            }
+            
+            List<Integer> duplicates = new ArrayList<>();
+            BulkWriteResult result;
+            try {
+                result = bulkOps.execute();
+            } catch (BulkOperationException e) {
+                // 无序批量写入中其余的写入已经生效；并发实例抢先新建了同一会话的通知时重试，累加到对方新建的通知上
+                for (BulkWriteError error : e.getErrors()) {
+                    int index = pending.get(error.getIndex());
+                    if (error.getCode() == DUPLICATE_KEY && attempt < MAX_MERGE_ATTEMPTS) {
+                        duplicates.add(index);
+                    } else {
+                        failedIndexes.add(index);
+                    }
+                }
+                result = e.getResult();
+                log.warn("合并写入 {} 条消息通知时 {} 条失败（其中 {} 条因并发新建重试）: {}",
+                        pending.size(), e.getErrors().size(), duplicates.size(), e.getMessage());
+            }
+            
+            // 只有新建的通知会增加未读数，累加到已有未读通知上的不变
+            for (BulkWriteUpsert upsert : result.getUpserts()) {
+                unreadDeltas.merge(notificationDTOs.get(pending.get(upsert.getIndex())).getUserId(), 1L, Long::sum);
+            }
+            created += result.getUpserts().size();
+            pending = duplicates;
+        }
+        unreadCounterStore.addAll(unreadDeltas);
+        
+        List<NotificationDTO> failed = new ArrayList<>(failedIndexes.size());
+        List<Criteria> merged = new ArrayList<>(notificationDTOs.size());
+        for (int i = 0; i < notificationDTOs.size(); i++) {
+            NotificationDTO dto = notificationDTOs.get(i);
+            if (failedIndexes.contains(i)) {
+                failed.add(dto);
+            } else {
+                merged.add(Criteria.where("userId").is(dto.getUserId()).and("conversationKey").is(dto.getConversationKey()));
+            }
+        }
+        
+        // 读回累加后的通知再推送，前端看到的是会话内累计的未读条数
+        if (!merged.isEmpty()) {
+            Query query = new Query(new Criteria().orOperator(merged.toArray(new Criteria[0])))
+                    .addCriteria(Criteria.where("type").is(Notification.NotificationType.MESSAGE)
+                            .and("status").is(Notification.NotificationStatus.UNREAD)
+                            .and("digest").ne(true));
+            for (Notification notification : mongoTemplate.find(query, Notification.class)) {
+                messagingTemplate.convertAndSendToUser(
+                        String.valueOf(notification.getUserId()),
+                        "/queue/notifications",
+                        NotificationDTO.fromEntity(notification)
+                );
+            }
+        }
+        
+        log.info("合并写入 {} 条消息通知, 新建 {} 条", notificationDTOs.size() - failed.size(), created);
+        return failed;
+    }
+    
+    /**
+     * 用户在某个会话下尚未汇总的未读消息通知
+     */
+    private static Query unreadMessageQuery(Long userId, String conversationKey) {
+        return new Query(Criteria.where("userId").is(userId)
+                .and("conversationKey").is(conversationKey)
+                .and("type").is(Notification.NotificationType.MESSAGE)
+                .and("status").is(Notification.NotificationStatus.UNREAD)
+                .and("digest").ne(true));
     }
     
     @Override
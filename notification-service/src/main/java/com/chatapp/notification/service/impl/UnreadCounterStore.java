@@ -0,0 +1,156 @@
+package com.chatapp.notification.service.impl;
+
+import com.chatapp.notification.model.Notification;
+import com.chatapp.notification.model.UnreadCounter;
+import com.chatapp.notification.repository.NotificationRepository;
+import com.mongodb.client.result.UpdateResult;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 未读通知计数维护
+ * 计数文档不存在时（如计数上线前的历史数据）按未读通知重新统计一次，之后只做 $inc；
+ * 读取和调整都走同一个初始化逻辑，不会用裸 $inc 创建出只含增量的计数。
+ * 会改变未读数的写入先调用 {@link #ensureInitialised}，统计一定早于本次写入，
+ * 写入后的 $inc 不会和统计结果重复，多个线程同时初始化时也只有先插入的统计生效
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class UnreadCounterStore {
+
+    private final MongoTemplate mongoTemplate;
+    private final NotificationRepository notificationRepository;
+
+    /**
+     * 读取用户的未读数
+     */
+    public long get(Long userId) {
+        UnreadCounter counter = mongoTemplate.findById(userId, UnreadCounter.class);
+        if (counter == null) {
+            return initialise(userId).unread;
+        }
+        return Math.max(0, counter.getUnread());
+    }
+
+    /**
+     * 在写入会改变未读数的通知之前调用，计数文档不存在时按当前未读通知数初始化
+     */
+    public void ensureInitialised(Long userId) {
+        if (userId != null && !mongoTemplate.exists(new Query(Criteria.where("_id").is(userId)), UnreadCounter.class)) {
+            initialise(userId);
+        }
+    }
+
+    /**
+     * 批量版本的 {@link #ensureInitialised(Long)}，一次查询找出还没有计数文档的用户
+     */
+    public void ensureInitialised(Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        Set<Long> initialised = existingCounters(userIds);
+        for (Long userId : new HashSet<>(userIds)) {
+            if (!initialised.contains(userId)) {
+                initialise(userId);
+            }
+        }
+    }
+
+    /**
+     * 调整用户的未读数，需在通知写入之后调用，写入之前应已调用 {@link #ensureInitialised(Long)}
+     * 未初始化时按当前未读通知数兜底初始化，统计结果已包含本次变化，不再叠加增量
+     */
+    public void add(Long userId, long delta) {
+        if (userId == null || delta == 0) {
+            return;
+        }
+        UpdateResult result = mongoTemplate.updateFirst(
+                new Query(Criteria.where("_id").is(userId)),
+                new Update().inc("unread", delta).set("updateTime", LocalDateTime.now()),
+                UnreadCounter.class);
+        if (result.getMatchedCount() == 0) {
+            log.warn("用户 {} 的未读通知计数在写入前未初始化，按当前未读通知重新统计", userId);
+            initialise(userId);
+        }
+    }
+
+    /**
+     * 批量调整多个用户的未读数，需在通知写入之后调用，写入之前应已调用 {@link #ensureInitialised(Collection)}
+     */
+    public void addAll(Map<Long, Long> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        Set<Long> initialised = existingCounters(deltas.keySet());
+
+        LocalDateTime now = LocalDateTime.now();
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, UnreadCounter.class);
+        int updates = 0;
+        for (Map.Entry<Long, Long> entry : deltas.entrySet()) {
+            Long userId = entry.getKey();
+            if (entry.getValue() == 0) {
+                continue;
+            }
+            if (!initialised.contains(userId)) {
+                log.warn("用户 {} 的未读通知计数在写入前未初始化，按当前未读通知重新统计", userId);
+                initialise(userId);
+                continue;
+            }
+            bulkOps.updateOne(
+                    new Query(Criteria.where("_id").is(userId)),
+                    new Update().inc("unread", entry.getValue()).set("updateTime", now));
+            updates++;
+        }
+        if (updates > 0) {
+            bulkOps.execute();
+        }
+    }
+
+    private Set<Long> existingCounters(Collection<Long> userIds) {
+        Query existing = new Query(Criteria.where("_id").in(userIds));
+        existing.fields().include("_id");
+        return mongoTemplate.find(existing, UnreadCounter.class).stream()
+                .map(UnreadCounter::getUserId)
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * 按未读通知重新统计并创建计数文档，文档已被其他线程创建时不覆盖
+     */
+    private Initialisation initialise(Long userId) {
+        long unread = notificationRepository.countByUserIdAndStatus(userId, Notification.NotificationStatus.UNREAD);
+        UpdateResult result = mongoTemplate.upsert(
+                new Query(Criteria.where("_id").is(userId)),
+                new Update().setOnInsert("unread", unread).setOnInsert("updateTime", LocalDateTime.now()),
+                UnreadCounter.class);
+        boolean inserted = result.getUpsertedId() != null;
+        if (inserted) {
+            log.debug("初始化用户 {} 的未读通知计数: {}", userId, unread);
+        }
+        return new Initialisation(unread, inserted);
+    }
+
+    private static class Initialisation {
+        private final long unread;
+        private final boolean inserted;
+
+        Initialisation(long unread, boolean inserted) {
+            this.unread = unread;
+            this.inserted = inserted;
+        }
+    }
+}
@@ -3,15 +3,46 @@ package com.chatapp.relationship.client;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 
 @FeignClient(name = "user-service")
 public interface UserServiceClient {
 
+    // 与用户服务批量接口的单次上限保持一致
+    int BATCH_SIZE = 1000;
+
     @GetMapping("/api/v1/users/{userId}/basic")
     Map<String, Object> getUserBasicInfo(
         @PathVariable Long userId,
         @RequestHeader(value = "X-User-ID", required = false) Long requestUserId);
-} 
\ No newline at end of file
+
+    @PostMapping("/api/v1/users/basic:batch")
+    List<Map<String, Object>> getUserBasicInfoBatch(@RequestBody Collection<Long> userIds);
+
+    /**
+     * 批量获取用户基本信息并按用户ID索引，超过单次上限时分批请求，不存在的用户不在结果中
+     */
+    default Map<Long, Map<String, Object>> getUserBasicInfoMap(Collection<Long> userIds) {
+        List<Long> distinctIds = new ArrayList<>(new LinkedHashSet<>(userIds));
+        Map<Long, Map<String, Object>> result = new HashMap<>();
+        for (int from = 0; from < distinctIds.size(); from += BATCH_SIZE) {
+            List<Long> chunk = distinctIds.subList(from, Math.min(from + BATCH_SIZE, distinctIds.size()));
+            for (Map<String, Object> userInfo : getUserBasicInfoBatch(chunk)) {
+                Object id = userInfo.get("id");
+                if (id instanceof Number) {
+                    result.put(((Number) id).longValue(), userInfo);
+                }
+            }
+        }
+        return result;
+    }
+}
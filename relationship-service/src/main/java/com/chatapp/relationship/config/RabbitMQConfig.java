@@ -0,0 +1,47 @@
+package com.chatapp.relationship.config;
+
+import org.springframework.amqp.core.TopicExchange;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * RabbitMQ配置类
+ */
+@Configuration
+public class RabbitMQConfig {
+
+    // 群组事件交换机
+    public static final String GROUP_EXCHANGE = "group.exchange";
+
+    // 群成员变更路由键
+    public static final String GROUP_MEMBERSHIP_CHANGED_ROUTING_KEY = "group.membership.changed";
+
+    /**
+     * 声明群组事件主题交换机
+     */
+    @Bean
+    public TopicExchange groupExchange() {
+        return new TopicExchange(GROUP_EXCHANGE);
+    }
+
+    /**
+     * 配置消息转换器
+     */
+    @Bean
+    public Jackson2JsonMessageConverter messageConverter() {
+        return new Jackson2JsonMessageConverter();
+    }
+
+    /**
+     * 配置RabbitTemplate
+     */
+    @Bean
+    public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory) {
+        RabbitTemplate rabbitTemplate = new RabbitTemplate(connectionFactory);
+        rabbitTemplate.setMessageConverter(messageConverter());
+        return rabbitTemplate;
+    }
+}
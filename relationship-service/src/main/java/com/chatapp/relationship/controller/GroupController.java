@@ -63,6 +63,13 @@ public class GroupController {
         return ResponseEntity.ok(groups);
     }
 
+    @GetMapping("/users/{userId}/ids")
+    public ResponseEntity<List<Long>> getGroupIdsByUserId(@PathVariable Long userId) {
+        log.info("获取用户 {} 的群组ID列表", userId);
+        List<Long> groupIds = groupService.getGroupIdsByUserId(userId);
+        return ResponseEntity.ok(groupIds);
+    }
+
     @GetMapping("/search")
     public ResponseEntity<List<GroupDto>> searchGroupsByName(@RequestParam String name) {
         log.info("搜索群组: {}", name);
@@ -0,0 +1,32 @@
+package com.chatapp.relationship.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 群成员变更事件，供其他服务失效用户的群组缓存
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class GroupMembershipChangedEvent {
+
+    private Long groupId;
+
+    /**
+     * 群组成员关系发生变化的用户
+     */
+    private List<Long> userIds;
+
+    /**
+     * 变更类型：JOINED、LEFT、DISSOLVED
+     */
+    private String changeType;
+
+    private Long timestamp;
+}
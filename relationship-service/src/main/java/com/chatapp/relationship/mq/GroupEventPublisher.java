@@ -0,0 +1,62 @@
+package com.chatapp.relationship.mq;
+
+import com.chatapp.relationship.config.RabbitMQConfig;
+import com.chatapp.relationship.dto.GroupMembershipChangedEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+/**
+ * 群组事件发布者
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class GroupEventPublisher {
+
+    private final RabbitTemplate rabbitTemplate;
+
+    /**
+     * 发布群成员变更事件
+     * 在事务中调用时于提交后发布，避免其他服务在提交前重新加载到旧的成员关系
+     */
+    public void publishMembershipChanged(Long groupId, List<Long> userIds, String changeType) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        GroupMembershipChangedEvent event = GroupMembershipChangedEvent.builder()
+                .groupId(groupId)
+                .userIds(userIds)
+                .changeType(changeType)
+                .timestamp(System.currentTimeMillis())
+                .build();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    send(event);
+                }
+            });
+        } else {
+            send(event);
+        }
+    }
+
+    private void send(GroupMembershipChangedEvent event) {
+        try {
+            rabbitTemplate.convertAndSend(RabbitMQConfig.GROUP_EXCHANGE,
+                    RabbitMQConfig.GROUP_MEMBERSHIP_CHANGED_ROUTING_KEY, event);
+            log.debug("已发布群成员变更事件: {}", event);
+        } catch (AmqpException e) {
+            // 事件发布失败不影响业务，其他服务的缓存会在过期后刷新
+            log.warn("发布群成员变更事件失败: groupId={}, error={}", event.getGroupId(), e.getMessage());
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.chatapp.relationship.repository;
 
 import com.chatapp.relationship.model.GroupMember;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -13,6 +14,9 @@ public interface GroupMemberRepository extends JpaRepository<GroupMember, Long>
     
     List<GroupMember> findByUserId(Long userId);
     
+    @Query("SELECT gm.groupId FROM GroupMember gm WHERE gm.userId = ?1")
+    List<Long> findGroupIdsByUserId(Long userId);
+    
     List<GroupMember> findByGroupIdAndRole(Long groupId, GroupMember.MemberRole role);
     
     Optional<GroupMember> findByGroupIdAndUserId(Long groupId, Long userId);
@@ -32,6 +32,11 @@ public interface GroupService {
      */
     List<GroupDto> getGroupsByUserId(Long userId);
     
+    /**
+     * 获取用户所在的所有群组ID
+     */
+    List<Long> getGroupIdsByUserId(Long userId);
+    
     /**
      * 按名称搜索群组
      */
@@ -265,47 +265,19 @@ public class FriendshipServiceImpl implements FriendshipService {
                 .filter(f -> f.getStatus() == Friendship.FriendshipStatus.ACCEPTED)
                 .collect(Collectors.toList());
         
-        List<FriendshipDto> result = new ArrayList<>();
-        
+        // 当前用户和所有好友的信息一次批量获取
+        List<Long> userIds = new ArrayList<>();
+        userIds.add(userId);
+        friends.forEach(friendship -> userIds.add(friendIdOf(friendship, userId)));
+        Map<Long, Map<String, Object>> userInfos = fetchUserInfos(userIds);
+        Map<String, Object> currentUserInfo = userInfoOrDefault(userInfos, userId);
+        
+        List<FriendshipDto> result = new ArrayList<>(friends.size());
         for (Friendship friendship : friends) {
             FriendshipDto dto = FriendshipDto.fromEntity(friendship);
-            
-            try {
-                // 确定好友ID（可能是userId或friendId）
-                Long friendId = friendship.getUserId().equals(userId) ? friendship.getFriendId() : friendship.getUserId();
-                
-                // 获取发送者信息（当前用户）
-                log.debug("正在获取用户(ID={})信息", userId);
-                Map<String, Object> currentUserInfo = userServiceClient.getUserBasicInfo(userId, userId);
-                
-                // 获取好友信息
-                log.debug("正在获取好友(ID={})信息", friendId);
-                Map<String, Object> friendInfo = userServiceClient.getUserBasicInfo(friendId, userId);
-                
-                // 设置发送者和接收者（好友关系中没有真正的发送者/接收者，但我们需要提供数据给前端）
-                dto.setSender(currentUserInfo);
-                dto.setReceiver(friendInfo);
-            } catch (Exception e) {
-                log.error("获取用户信息失败: {}", e.getMessage(), e);
-                // 确保DTO中包含用户ID信息
-                Long friendId = friendship.getUserId().equals(userId) ? friendship.getFriendId() : friendship.getUserId();
-                
-                Map<String, Object> currentUserInfo = new HashMap<>();
-                currentUserInfo.put("id", userId);
-                currentUserInfo.put("nickname", "未知用户");
-                currentUserInfo.put("username", "unknown");
-                currentUserInfo.put("status", "OFFLINE");
-                
-                Map<String, Object> friendInfo = new HashMap<>();
-                friendInfo.put("id", friendId);
-                friendInfo.put("nickname", "未知用户");
-                friendInfo.put("username", "unknown");
-                friendInfo.put("status", "OFFLINE");
-                
-                dto.setSender(currentUserInfo);
-                dto.setReceiver(friendInfo);
-            }
-            
+            // 好友关系中没有真正的发送者/接收者，但我们需要提供数据给前端
+            dto.setSender(currentUserInfo);
+            dto.setReceiver(userInfoOrDefault(userInfos, friendIdOf(friendship, userId)));
             result.add(dto);
         }
         
@@ -317,39 +289,17 @@ public class FriendshipServiceImpl implements FriendshipService {
         // 获取发给当前用户的待处理请求
         List<Friendship> pendingRequests = friendshipRepository.findByFriendIdAndStatus(userId, Friendship.FriendshipStatus.PENDING);
         
-        List<FriendshipDto> result = new ArrayList<>();
+        List<Long> userIds = new ArrayList<>();
+        userIds.add(userId);
+        pendingRequests.forEach(request -> userIds.add(request.getUserId()));
+        Map<Long, Map<String, Object>> userInfos = fetchUserInfos(userIds);
+        Map<String, Object> receiver = userInfoOrDefault(userInfos, userId);
         
+        List<FriendshipDto> result = new ArrayList<>(pendingRequests.size());
         for (Friendship request : pendingRequests) {
             FriendshipDto dto = FriendshipDto.fromEntity(request);
-            
-            try {
-                // 获取发送者信息
-                log.debug("正在获取发送者(ID={})信息", request.getUserId());
-                Map<String, Object> sender = userServiceClient.getUserBasicInfo(request.getUserId(), userId);
-                dto.setSender(sender);
-                
-                // 获取接收者信息（当前用户）
-                log.debug("正在获取接收者(ID={})信息", userId);
-                Map<String, Object> receiver = userServiceClient.getUserBasicInfo(userId, userId);
-                dto.setReceiver(receiver);
-            } catch (Exception e) {
-                log.error("获取用户信息失败: {}", e.getMessage(), e);
-                // 确保DTO中包含用户ID信息
-                Map<String, Object> emptySender = new HashMap<>();
-                emptySender.put("id", request.getUserId());
-                emptySender.put("nickname", "未知用户");
-                emptySender.put("username", "unknown");
-                emptySender.put("status", "OFFLINE");
-                dto.setSender(emptySender);
-                
-                Map<String, Object> emptyReceiver = new HashMap<>();
-                emptyReceiver.put("id", userId);
-                emptyReceiver.put("nickname", "未知用户");
-                emptyReceiver.put("username", "unknown");
-                emptyReceiver.put("status", "OFFLINE");
-                dto.setReceiver(emptyReceiver);
-            }
-            
+            dto.setSender(userInfoOrDefault(userInfos, request.getUserId()));
+            dto.setReceiver(receiver);
             result.add(dto);
         }
         
@@ -360,53 +310,54 @@ public class FriendshipServiceImpl implements FriendshipService {
     public List<FriendshipDto> getSentRequests(Long userId) {
         // 获取当前用户发出的待处理请求
         List<Friendship> sentRequests = friendshipRepository.findByUserIdAndStatus(userId, Friendship.FriendshipStatus.PENDING);
-        log.info("【调试】获取到的发送请求数: {}", sentRequests.size());
+        log.debug("获取到的发送请求数: {}", sentRequests.size());
         
-        List<FriendshipDto> result = new ArrayList<>();
+        List<Long> userIds = new ArrayList<>();
+        userIds.add(userId);
+        sentRequests.forEach(request -> userIds.add(request.getFriendId()));
+        Map<Long, Map<String, Object>> userInfos = fetchUserInfos(userIds);
+        Map<String, Object> sender = userInfoOrDefault(userInfos, userId);
         
+        List<FriendshipDto> result = new ArrayList<>(sentRequests.size());
         for (Friendship request : sentRequests) {
             FriendshipDto dto = FriendshipDto.fromEntity(request);
-            log.info("【调试】处理发送请求: userId={}, friendId={}, status={}", 
-                    request.getUserId(), request.getFriendId(), request.getStatus());
-            
-            try {
-                // 获取发送者信息（当前用户）
-                log.info("【调试】正在获取发送者(ID={})信息", userId);
-                Map<String, Object> sender = userServiceClient.getUserBasicInfo(userId, userId);
-                log.info("【调试】获取到发送者信息: {}", sender);
-                dto.setSender(sender);
-                
-                // 获取接收者信息
-                log.info("【调试】正在获取接收者(ID={})信息", request.getFriendId());
-                Map<String, Object> receiver = userServiceClient.getUserBasicInfo(request.getFriendId(), userId);
-                log.info("【调试】获取到接收者信息: {}", receiver);
-                dto.setReceiver(receiver);
-            } catch (Exception e) {
-                log.error("【错误】获取用户信息失败: {}, 详细异常: ", e.getMessage(), e);
-                // 确保DTO中包含用户ID信息
-                Map<String, Object> emptySender = new HashMap<>();
-                emptySender.put("id", userId);
-                emptySender.put("nickname", "未知用户");
-                emptySender.put("username", "unknown");
-                emptySender.put("status", "OFFLINE");
-                dto.setSender(emptySender);
-                
-                Map<String, Object> emptyReceiver = new HashMap<>();
-                emptyReceiver.put("id", request.getFriendId());
-                emptyReceiver.put("nickname", "未知用户");
-                emptyReceiver.put("username", "unknown");
-                emptyReceiver.put("status", "OFFLINE");
-                dto.setReceiver(emptyReceiver);
-            }
-            
+            dto.setSender(sender);
+            dto.setReceiver(userInfoOrDefault(userInfos, request.getFriendId()));
             result.add(dto);
-            log.info("【调试】添加到结果列表的DTO: {}", dto);
         }
         
-        log.info("【调试】返回的结果数量: {}", result.size());
         return result;
     }
 
+    // 确定好友ID（可能是userId或friendId）
+    private Long friendIdOf(Friendship friendship, Long userId) {
+        return friendship.getUserId().equals(userId) ? friendship.getFriendId() : friendship.getUserId();
+    }
+
+    // 批量获取用户信息，失败时返回空结果，由调用方使用默认信息
+    private Map<Long, Map<String, Object>> fetchUserInfos(List<Long> userIds) {
+        try {
+            return userServiceClient.getUserBasicInfoMap(userIds);
+        } catch (Exception e) {
+            log.error("批量获取用户信息失败: {}", e.getMessage(), e);
+            return new HashMap<>();
+        }
+    }
+
+    private Map<String, Object> userInfoOrDefault(Map<Long, Map<String, Object>> userInfos, Long userId) {
+        Map<String, Object> userInfo = userInfos.get(userId);
+        if (userInfo != null) {
+            return userInfo;
+        }
+        // 确保DTO中包含用户ID信息
+        Map<String, Object> defaultInfo = new HashMap<>();
+        defaultInfo.put("id", userId);
+        defaultInfo.put("nickname", "未知用户");
+        defaultInfo.put("username", "unknown");
+        defaultInfo.put("status", "OFFLINE");
+        return defaultInfo;
+    }
+
     @Override
     public List<FriendshipDto> getBlockedUsers(Long userId) {
         List<Friendship> blockedUsers = friendshipRepository.findByUserIdAndStatus(userId, Friendship.FriendshipStatus.BLOCKED);
@@ -10,6 +10,7 @@ import com.chatapp.relationship.exception.ResourceNotFoundException;
 import com.chatapp.relationship.model.Group;
 import com.chatapp.relationship.model.GroupMember;
 import com.chatapp.relationship.model.GroupAnnouncement;
+import com.chatapp.relationship.mq.GroupEventPublisher;
 import com.chatapp.relationship.repository.GroupMemberRepository;
 import com.chatapp.relationship.repository.GroupRepository;
 import com.chatapp.relationship.repository.GroupAnnouncementRepository;
@@ -20,6 +21,8 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -34,6 +37,7 @@ public class GroupServiceImpl implements GroupService {
     private final GroupMemberRepository groupMemberRepository;
     private final GroupAnnouncementRepository groupAnnouncementRepository;
     private final UserServiceClient userServiceClient;
+    private final GroupEventPublisher groupEventPublisher;
 
     @Override
     @Transactional
@@ -61,6 +65,7 @@ public class GroupServiceImpl implements GroupService {
                 .build();
 
         groupMemberRepository.save(ownerMember);
+        groupEventPublisher.publishMembershipChanged(savedGroup.getId(), List.of(userId), "JOINED");
 
         // 返回带有成员数量的DTO
         GroupDto result = GroupDto.fromEntity(savedGroup);
@@ -119,6 +124,8 @@ public class GroupServiceImpl implements GroupService {
         // 先删除所有群成员记录
         List<GroupMember> members = groupMemberRepository.findByGroupId(groupId);
         groupMemberRepository.deleteAll(members);
+        groupEventPublisher.publishMembershipChanged(groupId,
+                members.stream().map(GroupMember::getUserId).collect(Collectors.toList()), "DISSOLVED");
         
         // 再删除群组
         groupRepository.delete(group);
@@ -156,29 +163,39 @@ public class GroupServiceImpl implements GroupService {
         // 获取用户所在的所有群组
         List<Group> groups = groupRepository.findGroupsByUserId(userId);
         
-        return groups.stream()
-                .map(group -> {
-                    GroupDto dto = GroupDto.fromEntity(group);
-                    dto.setMemberCount(groupMemberRepository.countByGroupId(group.getId()));
-                    
-                    // 获取创建者信息
-                    try {
-                        Map<String, Object> ownerInfo = userServiceClient.getUserBasicInfo(group.getOwnerId(), userId);
-                        if (ownerInfo != null && ownerInfo.containsKey("nickname")) {
-                            dto.setOwnerName(ownerInfo.get("nickname").toString());
-                        } else if (ownerInfo != null && ownerInfo.containsKey("username")) {
-                            dto.setOwnerName(ownerInfo.get("username").toString());
-                        } else {
-                            dto.setOwnerName("用户" + group.getOwnerId());
-                        }
-                    } catch (Exception e) {
-                        log.warn("获取群组创建者信息失败: {}, 群组ID: {}, 创建者ID: {}", e.getMessage(), group.getId(), group.getOwnerId());
-                        dto.setOwnerName("用户" + group.getOwnerId());
-                    }
-                    
-                    return dto;
-                })
-                .collect(Collectors.toList());
+        // 所有群组创建者的信息一次批量获取
+        Map<Long, Map<String, Object>> ownerInfos;
+        try {
+            ownerInfos = userServiceClient.getUserBasicInfoMap(
+                    groups.stream().map(Group::getOwnerId).collect(Collectors.toList()));
+        } catch (Exception e) {
+            log.warn("批量获取群组创建者信息失败: {}, 用户ID: {}", e.getMessage(), userId);
+            ownerInfos = Collections.emptyMap();
+        }
+        
+        List<GroupDto> result = new ArrayList<>(groups.size());
+        for (Group group : groups) {
+            GroupDto dto = GroupDto.fromEntity(group);
+            dto.setMemberCount(groupMemberRepository.countByGroupId(group.getId()));
+            dto.setOwnerName(ownerNameOf(ownerInfos.get(group.getOwnerId()), group.getOwnerId()));
+            result.add(dto);
+        }
+        return result;
+    }
+
+    // 优先使用昵称，其次用户名，都没有时使用默认名称
+    private String ownerNameOf(Map<String, Object> ownerInfo, Long ownerId) {
+        if (ownerInfo != null && ownerInfo.get("nickname") != null) {
+            return ownerInfo.get("nickname").toString();
+        } else if (ownerInfo != null && ownerInfo.get("username") != null) {
+            return ownerInfo.get("username").toString();
+        }
+        return "用户" + ownerId;
+    }
+
+    @Override
+    public List<Long> getGroupIdsByUserId(Long userId) {
+        return groupMemberRepository.findGroupIdsByUserId(userId);
     }
 
     @Override
@@ -224,6 +241,7 @@ public class GroupServiceImpl implements GroupService {
         
         GroupMember savedMember = groupMemberRepository.save(member);
         log.info("用户 {} 加入群组: {}", userId, group.getName());
+        groupEventPublisher.publishMembershipChanged(groupId, List.of(userId), "JOINED");
         
         return GroupMemberDto.fromEntity(savedMember);
     }
@@ -259,6 +277,7 @@ public class GroupServiceImpl implements GroupService {
         
         GroupMember savedMember = groupMemberRepository.save(member);
         log.info("用户 {} 邀请用户 {} 加入群组: {}", inviterId, userId, group.getName());
+        groupEventPublisher.publishMembershipChanged(groupId, List.of(userId), "JOINED");
         
         return GroupMemberDto.fromEntity(savedMember);
     }
@@ -278,6 +297,7 @@ public class GroupServiceImpl implements GroupService {
         // 退出群组
         groupMemberRepository.delete(member);
         log.info("用户 {} 退出群组", userId);
+        groupEventPublisher.publishMembershipChanged(groupId, List.of(userId), "LEFT");
     }
 
     @Override
@@ -299,6 +319,7 @@ public class GroupServiceImpl implements GroupService {
         // 移除成员
         groupMemberRepository.delete(memberToRemove);
         log.info("操作者 {} 将用户 {} 移出群组", operatorId, userId);
+        groupEventPublisher.publishMembershipChanged(groupId, List.of(userId), "LEFT");
     }
 
     @Override
@@ -0,0 +1,73 @@
+package com.chatapp.user.config;
+
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.amqp.core.TopicExchange;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * RabbitMQ配置类
+ */
+@Configuration
+public class RabbitMQConfig {
+
+    // 用户事件交换机
+    public static final String USER_EXCHANGE = "user.exchange";
+
+    // 用户资料变更路由键
+    public static final String USER_PROFILE_CHANGED_ROUTING_KEY = "user.profile.changed";
+
+    // 批量用户状态变更队列与路由键
+    public static final String USER_STATUS_QUEUE = "user.status.queue";
+    public static final String USER_STATUS_BATCH_ROUTING_KEY = "user.status.batch";
+
+    /**
+     * 声明用户事件主题交换机
+     */
+    @Bean
+    public TopicExchange userExchange() {
+        return new TopicExchange(USER_EXCHANGE);
+    }
+
+    /**
+     * 声明批量用户状态变更队列
+     */
+    @Bean
+    public Queue userStatusQueue() {
+        return QueueBuilder.durable(USER_STATUS_QUEUE).build();
+    }
+
+    /**
+     * 绑定批量用户状态变更队列到交换机
+     */
+    @Bean
+    public Binding userStatusBinding() {
+        return BindingBuilder.bind(userStatusQueue())
+                .to(userExchange())
+                .with(USER_STATUS_BATCH_ROUTING_KEY);
+    }
+
+    /**
+     * 配置消息转换器
+     */
+    @Bean
+    public Jackson2JsonMessageConverter messageConverter() {
+        return new Jackson2JsonMessageConverter();
+    }
+
+    /**
+     * 配置RabbitTemplate
+     */
+    @Bean
+    public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory) {
+        RabbitTemplate rabbitTemplate = new RabbitTemplate(connectionFactory);
+        rabbitTemplate.setMessageConverter(messageConverter());
+        return rabbitTemplate;
+    }
+}
@@ -6,6 +6,7 @@ import com.chatapp.user.security.service.UserDetailsServiceImpl;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -62,6 +63,7 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
                 .antMatchers("/api/v1/debug/**").permitAll() // 临时允许调试接口
                 .antMatchers("/actuator/**").permitAll()
                 .regexMatchers("/api/v1/users/\\d+/basic").permitAll() // 允许访问用户基本信息接口
+                .antMatchers(HttpMethod.POST, "/api/v1/users/basic:batch").permitAll() // 批量用户基本信息接口
                 .antMatchers("/api/v1/users/search").authenticated() // 用户搜索需要认证
                 .anyRequest().authenticated()
             .and()
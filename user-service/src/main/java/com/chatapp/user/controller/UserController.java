@@ -16,6 +16,8 @@ import java.util.Map;
 @RequiredArgsConstructor
 @Slf4j
 public class UserController {
+    private static final int MAX_BATCH_SIZE = 1000;
+
     private final UserService userService;
 
     @GetMapping
@@ -39,6 +41,16 @@ public class UserController {
         return ResponseEntity.ok(user);
     }
 
+    @PostMapping("/basic:batch")
+    public ResponseEntity<List<UserResponseDto>> getUserBasicInfoBatch(@RequestBody List<Long> userIds) {
+        log.info("批量获取用户基本信息, 数量: {}", userIds.size());
+        if (userIds.size() > MAX_BATCH_SIZE) {
+            log.warn("批量查询用户数量超过上限: {} > {}", userIds.size(), MAX_BATCH_SIZE);
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(userService.getUsersByIds(userIds));
+    }
+
     @GetMapping("/search")
     public ResponseEntity<List<UserResponseDto>> searchUsers(
             @RequestParam String query,
@@ -0,0 +1,25 @@
+package com.chatapp.user.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 用户资料变更事件，供其他服务失效本地缓存
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserProfileChangedEvent {
+
+    private Long userId;
+
+    /**
+     * 变更类型：PROFILE、STATUS、DELETED
+     */
+    private String changeType;
+
+    private Long timestamp;
+}
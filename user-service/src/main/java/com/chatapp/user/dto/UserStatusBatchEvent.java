@@ -0,0 +1,36 @@
+package com.chatapp.user.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 批量用户状态变更事件（由消息服务根据WebSocket连接情况发布）
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserStatusBatchEvent {
+
+    /**
+     * 目标状态：ONLINE、OFFLINE
+     */
+    private String status;
+
+    private List<Long> userIds;
+
+    /**
+     * 用户ID -> 状态变化发生的时间（毫秒）
+     */
+    private Map<Long, Long> changeTimes;
+
+    /**
+     * 批次发布时间，旧版本发布方没有 changeTimes 时作为每个用户的变化时间
+     */
+    private Long timestamp;
+}
@@ -40,6 +40,12 @@ public class User {
     @Enumerated(EnumType.STRING)
     private UserStatus status;
 
+    /**
+     * 当前状态对应的变化时间（毫秒），用于丢弃乱序到达的旧状态事件
+     */
+    @Column(name = "status_update_time")
+    private Long statusUpdateTime;
+
     @Column(name = "create_time")
     private LocalDateTime createTime;
 
@@ -0,0 +1,56 @@
+package com.chatapp.user.mq;
+
+import com.chatapp.user.config.RabbitMQConfig;
+import com.chatapp.user.dto.UserProfileChangedEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 用户事件发布者
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class UserEventPublisher {
+
+    private final RabbitTemplate rabbitTemplate;
+
+    /**
+     * 发布用户资料变更事件
+     * 在事务中调用时于提交后发布，避免其他服务在提交前重新加载到旧数据
+     */
+    public void publishProfileChanged(Long userId, String changeType) {
+        UserProfileChangedEvent event = UserProfileChangedEvent.builder()
+                .userId(userId)
+                .changeType(changeType)
+                .timestamp(System.currentTimeMillis())
+                .build();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    send(event);
+                }
+            });
+        } else {
+            send(event);
+        }
+    }
+
+    private void send(UserProfileChangedEvent event) {
+        try {
+            rabbitTemplate.convertAndSend(RabbitMQConfig.USER_EXCHANGE,
+                    RabbitMQConfig.USER_PROFILE_CHANGED_ROUTING_KEY, event);
+            log.debug("已发布用户资料变更事件: {}", event);
+        } catch (AmqpException e) {
+            // 事件发布失败不影响业务，其他服务的缓存会在过期后刷新
+            log.warn("发布用户资料变更事件失败: userId={}, error={}", event.getUserId(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.chatapp.user.mq;
+
+import com.chatapp.user.config.RabbitMQConfig;
+import com.chatapp.user.dto.UserStatusBatchEvent;
+import com.chatapp.user.model.User;
+import com.chatapp.user.service.UserService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 批量用户状态变更事件消费者
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class UserStatusEventConsumer {
+
+    private final UserService userService;
+
+    @RabbitListener(queues = RabbitMQConfig.USER_STATUS_QUEUE)
+    public void handleStatusBatch(UserStatusBatchEvent event) {
+        if (event.getUserIds() == null || event.getUserIds().isEmpty() || event.getStatus() == null) {
+            return;
+        }
+
+        User.UserStatus status;
+        try {
+            status = User.UserStatus.valueOf(event.getStatus().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            log.warn("忽略未知的用户状态: {}", event.getStatus());
+            return;
+        }
+
+        Map<Long, Long> changeTimes = new LinkedHashMap<>();
+        long fallback = event.getTimestamp() != null ? event.getTimestamp() : System.currentTimeMillis();
+        for (Long userId : event.getUserIds()) {
+            Long changeTime = event.getChangeTimes() != null ? event.getChangeTimes().get(userId) : null;
+            changeTimes.put(userId, changeTime != null ? changeTime : fallback);
+        }
+
+        int updated = userService.updateUsersStatus(changeTimes, status);
+        log.info("批量更新用户状态: 状态={}, 请求数={}, 更新数={}", status, event.getUserIds().size(), updated);
+    }
+}
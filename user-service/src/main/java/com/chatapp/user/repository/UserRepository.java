@@ -2,10 +2,13 @@ package com.chatapp.user.repository;
 
 import com.chatapp.user.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.LockModeType;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -18,4 +21,11 @@ public interface UserRepository extends JpaRepository<User, Long> {
     
     @Query("SELECT u FROM User u WHERE u.username LIKE %:query% OR u.nickname LIKE %:query%")
     List<User> searchUsers(@Param("query") String query);
+
+    /**
+     * 加行锁批量读取用户，避免多个实例并发更新状态时互相覆盖
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT u FROM User u WHERE u.id IN :ids")
+    List<User> findAllByIdForUpdate(@Param("ids") Collection<Long> ids);
 } 
\ No newline at end of file
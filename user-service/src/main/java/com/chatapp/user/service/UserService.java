@@ -6,16 +6,20 @@ import com.chatapp.user.dto.UserRegisterRequestDto;
 import com.chatapp.user.dto.UserResponseDto;
 import com.chatapp.user.model.User;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public interface UserService {
     UserResponseDto registerUser(UserRegisterRequestDto registerDto);
     JwtResponseDto authenticateUser(UserLoginRequestDto loginDto);
     UserResponseDto getUserById(Long id);
     UserResponseDto getUserByUsername(String username);
+    List<UserResponseDto> getUsersByIds(Collection<Long> ids);
     List<UserResponseDto> getAllUsers();
     UserResponseDto updateUser(Long id, UserResponseDto userDto);
     UserResponseDto updateUserStatus(Long id, User.UserStatus status);
+    int updateUsersStatus(Map<Long, Long> changeTimes, User.UserStatus status);
     void deleteUser(Long id);
     boolean existsByUsername(String username);
     List<UserResponseDto> searchUsers(String query);
@@ -8,6 +8,7 @@ import com.chatapp.user.dto.UserResponseDto;
 import com.chatapp.user.exception.ResourceNotFoundException;
 import com.chatapp.user.exception.UserAlreadyExistsException;
 import com.chatapp.user.model.User;
+import com.chatapp.user.mq.UserEventPublisher;
 import com.chatapp.user.repository.UserRepository;
 import com.chatapp.user.security.jwt.JwtUtils;
 import com.chatapp.user.service.UserService;
@@ -23,9 +24,12 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.client.HttpClientErrorException;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -38,6 +42,7 @@ public class UserServiceImpl implements UserService {
     private final AuthenticationManager authenticationManager;
     private final JwtUtils jwtUtils;
     private final RelationshipServiceClient relationshipServiceClient;
+    private final UserEventPublisher userEventPublisher;
 
     @Override
     @Transactional
@@ -105,6 +110,7 @@ public class UserServiceImpl implements UserService {
             user.setStatus(User.UserStatus.ONLINE);
             User updatedUser = userRepository.save(user);
             log.info("【调试】更新后的用户: {}", updatedUser);
+            userEventPublisher.publishProfileChanged(user.getId(), "STATUS");
             
             log.info("【调试】用户登录成功: {}", user.getUsername());
 
@@ -143,6 +149,21 @@ public class UserServiceImpl implements UserService {
         return responseDto;
     }
 
+    @Override
+    public List<UserResponseDto> getUsersByIds(Collection<Long> ids) {
+        // 去重后一次 IN 查询，不存在的ID直接忽略，由调用方自行补默认信息
+        Set<Long> distinctIds = new LinkedHashSet<>(ids);
+        distinctIds.remove(null);
+        if (distinctIds.isEmpty()) {
+            return List.of();
+        }
+        List<UserResponseDto> responseDtos = userRepository.findAllById(distinctIds).stream()
+                .map(UserResponseDto::fromUser)
+                .collect(Collectors.toList());
+        log.debug("批量查询用户: 请求 {} 个, 找到 {} 个", distinctIds.size(), responseDtos.size());
+        return responseDtos;
+    }
+
     @Override
     public List<UserResponseDto> getAllUsers() {
         log.info("【调试】查询所有用户");
@@ -217,6 +238,7 @@ public class UserServiceImpl implements UserService {
         
         User updatedUser = userRepository.save(user);
         log.info("【调试】用户信息已更新: {}", updatedUser);
+        userEventPublisher.publishProfileChanged(id, "PROFILE");
         
         UserResponseDto responseDto = UserResponseDto.fromUser(updatedUser);
         log.info("【调试】返回的用户DTO: {}", responseDto);
@@ -233,14 +255,39 @@ public class UserServiceImpl implements UserService {
         
         log.info("【调试】更新状态: {} -> {}", user.getStatus(), status);
         user.setStatus(status);
+        user.setStatusUpdateTime(System.currentTimeMillis());
         User updatedUser = userRepository.save(user);
         log.info("【调试】用户状态已更新: {}", updatedUser);
+        userEventPublisher.publishProfileChanged(id, "STATUS");
         
         UserResponseDto responseDto = UserResponseDto.fromUser(updatedUser);
         log.info("【调试】返回的用户DTO: {}", responseDto);
         return responseDto;
     }
 
+    @Override
+    @Transactional
+    public int updateUsersStatus(Map<Long, Long> changeTimes, User.UserStatus status) {
+        // 一次加锁的 IN 查询；只应用比库中状态更新的变化，乱序到达的旧事件直接丢弃
+        List<User> newer = userRepository.findAllByIdForUpdate(changeTimes.keySet()).stream()
+                .filter(user -> user.getStatusUpdateTime() == null
+                        || changeTimes.get(user.getId()) > user.getStatusUpdateTime())
+                .collect(Collectors.toList());
+        if (newer.isEmpty()) {
+            return 0;
+        }
+        List<User> changed = newer.stream()
+                .filter(user -> user.getStatus() != status)
+                .collect(Collectors.toList());
+        newer.forEach(user -> {
+            user.setStatus(status);
+            user.setStatusUpdateTime(changeTimes.get(user.getId()));
+        });
+        userRepository.saveAll(newer);
+        changed.forEach(user -> userEventPublisher.publishProfileChanged(user.getId(), "STATUS"));
+        return changed.size();
+    }
+
     @Override
     @Transactional
     public void deleteUser(Long id) {
@@ -255,6 +302,7 @@ public class UserServiceImpl implements UserService {
         
         userRepository.deleteById(id);
         log.info("【调试】用户已删除, ID: {}", id);
+        userEventPublisher.publishProfileChanged(id, "DELETED");
     }
 
     @Override